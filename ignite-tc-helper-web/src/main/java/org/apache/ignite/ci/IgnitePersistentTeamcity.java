@@ -25,6 +25,7 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -47,6 +48,7 @@ import org.apache.ignite.ci.tcmodel.mute.MuteInfo;
 import org.apache.ignite.ci.tcmodel.result.Build;
 import org.apache.ignite.ci.tcmodel.result.problems.ProblemOccurrences;
 import org.apache.ignite.ci.tcmodel.result.stat.Statistics;
+import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrenceFull;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrencesFull;
 import org.apache.ignite.ci.tcmodel.user.User;
 import org.apache.ignite.ci.util.ObjectInterner;
@@ -266,6 +268,11 @@ public class IgnitePersistentTeamcity implements IAnalyticsEnabledTeamcity, ITea
         return teamcity.getBuildRefsPage(fullUrl, nextPage);
     }
 
+    /** {@inheritDoc} */
+    @Override public List<BuildRef> getBuildRefsSincePage(int sinceBuildId, AtomicReference<String> nextPage) {
+        return teamcity.getBuildRefsSincePage(sinceBuildId, nextPage);
+    }
+
     /** {@inheritDoc} */
     @Override public SortedSet<MuteInfo> getMutesPage(String buildTypeId, String fullUrl, AtomicReference<String> nextPage) {
         return teamcity.getMutesPage(buildTypeId, fullUrl, nextPage);
@@ -275,4 +282,15 @@ public class IgnitePersistentTeamcity implements IAnalyticsEnabledTeamcity, ITea
     @Override public TestOccurrencesFull getTestsPage(int buildId, String href, boolean testDtls) {
         return teamcity.getTestsPage(buildId, href, testDtls);
     }
+
+    /** {@inheritDoc} */
+    @Override public TestOccurrencesFull getTestsPageFrom(int buildId, int start, boolean testDtls) {
+        return teamcity.getTestsPageFrom(buildId, start, testDtls);
+    }
+
+    /** {@inheritDoc} */
+    @Override public String streamTestsPage(int buildId, @Nullable String href, int start, boolean testDtls,
+        Consumer<TestOccurrenceFull> consumer) {
+        return teamcity.streamTestsPage(buildId, href, start, testDtls, consumer);
+    }
 }
@@ -38,12 +38,11 @@ import org.apache.ignite.ci.tcmodel.conf.Project;
 import org.apache.ignite.ci.tcmodel.conf.ProjectsList;
 import org.apache.ignite.ci.tcmodel.conf.bt.BuildTypeFull;
 import org.apache.ignite.ci.tcmodel.hist.BuildRef;
-import org.apache.ignite.ci.tcmodel.hist.Builds;
 import org.apache.ignite.ci.tcmodel.mute.MuteInfo;
-import org.apache.ignite.ci.tcmodel.mute.Mutes;
 import org.apache.ignite.ci.tcmodel.result.Build;
 import org.apache.ignite.ci.tcmodel.result.problems.ProblemOccurrences;
 import org.apache.ignite.ci.tcmodel.result.stat.Statistics;
+import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrenceFull;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrencesFull;
 import org.apache.ignite.ci.tcmodel.user.User;
 import org.apache.ignite.ci.tcmodel.user.Users;
@@ -61,11 +60,15 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.xml.bind.JAXBException;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.List;
+import java.util.TreeSet;
 import java.util.Properties;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
@@ -86,6 +89,10 @@ public class IgniteTeamcityConnection implements ITeamcity {
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(IgniteTeamcityConnection.class);
 
+    /** Fields of builds list: default fields and start date, which is saved during builds sync. */
+    private static final String BUILD_REFS_FIELDS = "&fields=count,href,nextHref,build(id,buildTypeId,number,status," +
+        "state,composite,failedToStart,branchName,defaultBranch,href,webUrl,startDate)";
+
     /** Executor. */
     private Executor executor;
 
@@ -349,6 +356,40 @@ public class IgniteTeamcityConnection implements ITeamcity {
         return XmlUtil.load(rootElem, reader);
     }
 
+    /**
+     * Requests XML document and parses it element by element, see {@link XmlUtil#loadElements}.
+     *
+     * @param url Url.
+     * @param elemName Name of root element children to parse.
+     * @param elemCls Class of element.
+     * @param intern Intern string fields of elements.
+     * @param consumer Consumer of elements.
+     * @return Attributes of root element.
+     */
+    private <E> Map<String, String> sendGetXmlParseElements(String url, String elemName, Class<E> elemCls,
+        boolean intern, Consumer<? super E> consumer) {
+        try {
+            try (InputStream inputStream = teamcityHttpConn.sendGet(basicAuthTok, url)) {
+                final InputStreamReader reader = new InputStreamReader(inputStream);
+
+                return loadXmlElements(reader, elemName, elemCls, intern, consumer);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        catch (JAXBException e) {
+            throw ExceptionUtil.propagateException(e);
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @AutoProfiling
+    protected <E> Map<String, String> loadXmlElements(InputStreamReader reader, String elemName, Class<E> elemCls,
+        boolean intern, Consumer<? super E> consumer) throws JAXBException {
+        return XmlUtil.loadElements(reader, elemName, elemCls, intern, consumer);
+    }
+
     /** {@inheritDoc} */
     @AutoProfiling
     @Override public BuildTypeFull getBuildType(String buildTypeId) {
@@ -441,14 +482,34 @@ public class IgniteTeamcityConnection implements ITeamcity {
     /** {@inheritDoc} */
     @AutoProfiling
     @Override public List<BuildRef> getBuildRefsPage(String fullUrl, AtomicReference<String> outNextPage) {
-        String relPath = "app/rest/latest/builds?locator=defaultFilter:false";
+        return getBuildRefsPage("app/rest/latest/builds?locator=defaultFilter:false" + BUILD_REFS_FIELDS, fullUrl,
+            outNextPage);
+    }
+
+    /** {@inheritDoc} */
+    @AutoProfiling
+    @Override public List<BuildRef> getBuildRefsSincePage(int sinceBuildId, AtomicReference<String> outNextPage) {
+        String relPath = "app/rest/latest/builds?locator=defaultFilter:false,sinceBuild:(id:" + sinceBuildId + ")"
+            + BUILD_REFS_FIELDS;
+
+        return getBuildRefsPage(relPath, null, outNextPage);
+    }
+
+    /**
+     * @param relPath Relative path of first page.
+     * @param fullUrl Full url of page, null for the first page.
+     * @param outNextPage Next page.
+     */
+    private List<BuildRef> getBuildRefsPage(String relPath, String fullUrl, AtomicReference<String> outNextPage) {
         String relPathSelected = Strings.isNullOrEmpty(fullUrl) ? relPath : fullUrl;
         String url = host() + (relPathSelected.startsWith("/") ? relPathSelected.substring(1) : relPathSelected);
-        Builds builds = sendGetXmlParseJaxb(url, Builds.class);
+        List<BuildRef> builds = new ArrayList<>();
+
+        Map<String, String> attrs = sendGetXmlParseElements(url, "build", BuildRef.class, true, builds::add);
 
-        outNextPage.set(Strings.emptyToNull(builds.nextHref()));
+        outNextPage.set(Strings.emptyToNull(attrs.get("nextHref")));
 
-        return builds.getBuildsNonNull();
+        return builds;
     }
 
     /** {@inheritDoc} */
@@ -457,27 +518,50 @@ public class IgniteTeamcityConnection implements ITeamcity {
         String relPathSelected = Strings.isNullOrEmpty(fullUrl) ? relPath : fullUrl;
         String url = host() + (relPathSelected.startsWith("/") ? relPathSelected.substring(1) : relPathSelected);
 
-        Mutes mutes = sendGetXmlParseJaxb(url, Mutes.class);
+        SortedSet<MuteInfo> mutes = new TreeSet<>();
 
-        nextPage.set(Strings.emptyToNull(mutes.nextHref()));
+        Map<String, String> attrs = sendGetXmlParseElements(url, "mute", MuteInfo.class, true, mutes::add);
 
-        return mutes.getMutesNonNull();
+        nextPage.set(Strings.emptyToNull(attrs.get("nextHref")));
+
+        return mutes;
     }
 
     /** {@inheritDoc} */
     @AutoProfiling
     @Override public TestOccurrencesFull getTestsPage(int buildId, @Nullable String href, boolean testDtls) {
-        String relPathSelected = Strings.isNullOrEmpty(href) ? testsStartHref(buildId, testDtls) : href;
+        String relPathSelected = Strings.isNullOrEmpty(href) ? testsStartHref(buildId, testDtls, 0) : href;
         String url = host() + (relPathSelected.startsWith("/") ? relPathSelected.substring(1) : relPathSelected);
         return sendGetXmlParseJaxb(url, TestOccurrencesFull.class);
     }
 
+    /** {@inheritDoc} */
+    @AutoProfiling
+    @Override public TestOccurrencesFull getTestsPageFrom(int buildId, int start, boolean testDtls) {
+        return sendGetXmlParseJaxb(host() + testsStartHref(buildId, testDtls, start), TestOccurrencesFull.class);
+    }
+
+    /** {@inheritDoc} */
+    @AutoProfiling
+    @Override public String streamTestsPage(int buildId, @Nullable String href, int start, boolean testDtls,
+        Consumer<TestOccurrenceFull> consumer) {
+        String relPathSelected = Strings.isNullOrEmpty(href) ? testsStartHref(buildId, testDtls, start) : href;
+        String url = host() + (relPathSelected.startsWith("/") ? relPathSelected.substring(1) : relPathSelected);
+
+        // Occurrences are compacted by consumer, so their strings are not interned here.
+        Map<String, String> attrs = sendGetXmlParseElements(url, "testOccurrence", TestOccurrenceFull.class,
+            false, consumer);
+
+        return Strings.emptyToNull(attrs.get("nextHref"));
+    }
+
     /**
      * @param buildId Build id.
      * @param testDtls request test details string
+     * @param start Count of test occurrences to skip.
      */
     @NotNull
-    private String testsStartHref(int buildId, boolean testDtls) {
+    private String testsStartHref(int buildId, boolean testDtls, int start) {
         String fieldList = "id,name," +
             (testDtls ? "details," : "") +
             "status,duration,muted,currentlyMuted,currentlyInvestigated,ignored,test(id),build(id)";
@@ -485,6 +569,7 @@ public class IgniteTeamcityConnection implements ITeamcity {
         return "app/rest/latest/testOccurrences?locator=build:(id:" +
             buildId + ")" +
             "&fields=testOccurrence(" + fieldList + ")" +
+            (start > 0 ? "&start=" + start : "") +
             "&count=1000)";
     }
 }
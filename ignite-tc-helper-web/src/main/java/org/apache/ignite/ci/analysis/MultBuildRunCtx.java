@@ -268,10 +268,36 @@ public class MultBuildRunCtx implements ISuiteResults {
     public Stream<? extends IMultTestOccurrence> getTopLongRunning() {
         Comparator<IMultTestOccurrence> comparing = Comparator.comparing(IMultTestOccurrence::getAvgDurationMs);
 
+        // Name string ID -> {sum of known durations, count of known durations}, collected from tests columns.
+        Map<Integer, long[]> durations = new HashMap<>();
+
+        builds.forEach(singleBuildRunCtx -> {
+            singleBuildRunCtx.visitTests((name, status, duration) -> {
+                long[] agg = durations.computeIfAbsent(name, k -> new long[2]);
+
+                if (duration >= 0) {
+                    agg[0] += duration;
+                    agg[1]++;
+                }
+            });
+        });
+
+        Comparator<Map.Entry<Integer, long[]>> byAvg = Comparator.comparingLong(e -> {
+            long[] agg = e.getValue();
+
+            return agg[1] == 0 ? 0 : (long)((double)agg[0] / agg[1]);
+        });
+
+        Set<Integer> topNames = CollectionUtil.top(durations.entrySet().stream(), 3, byAvg)
+            .stream()
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toSet());
+
+        // Only tests of top long running names are materialized.
         Map<Integer, TestCompactedMult> res = new HashMap<>();
 
         builds.forEach(singleBuildRunCtx -> {
-            saveToMap(res, singleBuildRunCtx.getAllTests());
+            saveToMap(res, singleBuildRunCtx, singleBuildRunCtx.getTests(topNames::contains));
         });
 
         return CollectionUtil.top(res.values().stream(), 3, comparing).stream();
@@ -281,16 +307,18 @@ public class MultBuildRunCtx implements ISuiteResults {
         Map<Integer, TestCompactedMult> res = new HashMap<>();
 
         builds.forEach(singleBuildRunCtx -> {
-            saveToMap(res, singleBuildRunCtx.getFailedNotMutedTests());
+            saveToMap(res, singleBuildRunCtx, singleBuildRunCtx.getFailedNotMutedTests());
         });
 
         return new ArrayList<>(res.values());
     }
 
-    public void saveToMap(Map<Integer, TestCompactedMult> res, Stream<TestCompacted> tests) {
+    public void saveToMap(Map<Integer, TestCompactedMult> res, SingleBuildRunCtx ctx, Stream<TestCompacted> tests) {
+        Integer buildId = ctx.buildId();
+
         tests.forEach(testCompacted -> {
             res.computeIfAbsent(testCompacted.testName(), k -> new TestCompactedMult(compactor))
-                .add(testCompacted);
+                .add(buildId == null ? 0 : buildId, testCompacted);
         });
     }
 
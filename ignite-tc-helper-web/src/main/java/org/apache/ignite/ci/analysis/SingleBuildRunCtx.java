@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.function.IntPredicate;
 import java.util.stream.Stream;
 import javax.annotation.Nonnull;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrenceFull;
@@ -196,6 +197,22 @@ public class SingleBuildRunCtx implements ISuiteResults {
         return isComposite() ? Stream.empty() : buildCompacted.getAllTests();
     }
 
+    /**
+     * @param nameFilter Filter of test name string IDs.
+     * @return Tests of non composite build having names accepted by filter.
+     */
+    public Stream<TestCompacted> getTests(IntPredicate nameFilter) {
+        return isComposite() ? Stream.empty() : buildCompacted.getTests(nameFilter);
+    }
+
+    /**
+     * @param visitor Visitor to be called for each test of non composite build.
+     */
+    public void visitTests(FatBuildCompacted.TestVisitor visitor) {
+        if (!isComposite())
+            buildCompacted.visitTests(visitor);
+    }
+
     public String suiteName() {
         return buildCompacted.buildTypeName(compactor);
     }
@@ -221,13 +238,13 @@ public class SingleBuildRunCtx implements ISuiteResults {
      * @return Full run time required to run tests.
      */
     public long testsDuration() {
-        return getAllTests()
-            .mapToLong(t -> {
-                Integer duration = t.getDuration();
-                if (duration == null)
-                    return 0;
-
-                return duration;
-            }).sum();
+        long[] duration = {0};
+
+        visitTests((name, status, testDuration) -> {
+            if (testDuration > 0)
+                duration[0] += testDuration;
+        });
+
+        return duration[0];
     }
 }
@@ -21,12 +21,15 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrenceFull;
 import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.TestCompacted;
 
 public class TestCompactedMult implements IMultTestOccurrence {
     private final List<TestCompacted> occurrences = new ArrayList<>();
+    /** Build IDs containing occurrences with the same index. */
+    private final List<Integer> buildIds = new ArrayList<>();
     private IStringCompactor compactor;
     private long avgDuration = -1;
 
@@ -72,12 +75,17 @@ public class TestCompactedMult implements IMultTestOccurrence {
 
     /** {@inheritDoc} */
     @Override public Iterable<TestOccurrenceFull> getOccurrences() {
-        return occurrences.stream()
-            .map(testCompacted -> testCompacted.toTestOccurrence(compactor, 0))
+        return IntStream.range(0, occurrences.size())
+            .mapToObj(i -> occurrences.get(i).toTestOccurrence(compactor, buildIds.get(i)))
             .collect(Collectors.toList());
     }
 
-    public void add(TestCompacted next) {
+    /**
+     * @param buildId Build containing test.
+     * @param next Test occurrence.
+     */
+    public void add(int buildId, TestCompacted next) {
         occurrences.add(next);
+        buildIds.add(buildId);
     }
 }
@@ -31,11 +31,18 @@ import org.apache.ignite.binary.BinaryObject;
 import org.apache.ignite.cache.CacheAtomicityMode;
 import org.apache.ignite.cache.CacheMode;
 import org.apache.ignite.ci.IgnitePersistentTeamcity;
+import org.apache.ignite.ci.github.ignited.GitHubConnIgnitedImpl;
 import org.apache.ignite.ci.issue.Issue;
 import org.apache.ignite.ci.issue.IssueKey;
 import org.apache.ignite.ci.issue.IssuesStorage;
+import org.apache.ignite.ci.jira.ignited.JiraTicketDao;
 import org.apache.ignite.ci.observer.CompactBuildsInfo;
 import org.apache.ignite.ci.tcmodel.result.Build;
+import org.apache.ignite.ci.teamcity.ignited.buildref.BuildRefDao;
+import org.apache.ignite.ci.teamcity.ignited.buildtype.BuildTypeDao;
+import org.apache.ignite.ci.teamcity.ignited.buildtype.BuildTypeRefDao;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildDao;
+import org.apache.ignite.ci.teamcity.ignited.mute.MuteDao;
 import org.apache.ignite.ci.web.model.CompactContributionKey;
 import org.apache.ignite.ci.web.model.CompactVisa;
 import org.apache.ignite.ci.web.model.CompactVisaRequest;
@@ -126,6 +133,15 @@ public class DbMigrations {
         String BUILDS_FAILURE_RUN_STAT = "buildsFailureRunStat";
 
         String TESTS_RUN_STAT = "testsRunStat";
+
+        /** Caches created without server affinity, replaced by caches with 'V2' name suffix. */
+        String BUILD_REFS = "teamcityBuildRef";
+        String FAT_BUILDS = "teamcityFatBuild";
+        String MUTES = "teamcityMute";
+        String JIRA_TICKETS = "jiraTickets";
+        String GITHUB_PRS = "gitHubPr";
+        String FAT_BUILD_TYPES = "teamcityFatBuildType";
+        String BUILD_TYPE_REFS = "teamcityBuildTypeRef";
     }
 
     private final Ignite ignite;
@@ -284,6 +300,61 @@ public class DbMigrations {
         applyDestroyIgnCacheMigration(Old.BUILD_RESULTS);
         applyDestroyIgnCacheMigration(Old.BUILDS_FAILURE_RUN_STAT);
         applyDestroyIgnCacheMigration(Old.TESTS_RUN_STAT);
+
+        applyServerAffinityMigration(Old.BUILD_REFS, BuildRefDao.getOrCreateCache(ignite));
+        applyServerAffinityMigration(Old.FAT_BUILDS, FatBuildDao.getOrCreateCache(ignite));
+        applyServerAffinityMigration(Old.MUTES, MuteDao.getOrCreateCache(ignite));
+        applyServerAffinityMigration(Old.JIRA_TICKETS, JiraTicketDao.getOrCreateCache(ignite));
+        applyServerAffinityMigration(Old.GITHUB_PRS, GitHubConnIgnitedImpl.getOrCreateCache(ignite));
+        applyServerAffinityMigration(Old.FAT_BUILD_TYPES, BuildTypeDao.getOrCreateCache(ignite));
+        applyServerAffinityMigration(Old.BUILD_TYPE_REFS, BuildTypeRefDao.getOrCreateCache(ignite));
+    }
+
+    /**
+     * Moves entries of cache created without server affinity to its replacement, keys are kept as is.
+     *
+     * @param prevCacheNme Previous cache name.
+     * @param cache Cache using {@link ServerAffinityFunction}.
+     */
+    private void applyServerAffinityMigration(String prevCacheNme, IgniteCache<Long, ?> cache) {
+        applyMigration(prevCacheNme + "-to-" + cache.getName(), () -> {
+            IgniteCache<Long, BinaryObject> prev = ignite.cache(prevCacheNme);
+
+            if (prev == null) {
+                System.err.println("Cache not found: " + prevCacheNme);
+
+                return;
+            }
+
+            IgniteCache<Long, BinaryObject> prevBinary = prev.withKeepBinary();
+            int size = prevBinary.size();
+
+            try (IgniteDataStreamer<Long, BinaryObject> streamer = ignite.dataStreamer(cache.getName())) {
+                streamer.keepBinary(true);
+
+                int i = 0;
+
+                Map<Long, BinaryObject> batch = new HashMap<>();
+
+                for (Cache.Entry<Long, BinaryObject> entry : prevBinary) {
+                    batch.put(entry.getKey(), entry.getValue());
+
+                    i++;
+
+                    if (batch.size() >= 300)
+                        saveOneBatch(prevCacheNme, size, i, batch, streamer);
+                }
+
+                if (!batch.isEmpty())
+                    saveOneBatch(prevCacheNme, size, i, batch, streamer);
+
+                streamer.flush();
+            }
+
+            System.err.println("Removing data from old cache " + prevCacheNme);
+
+            prev.destroy();
+        });
     }
 
     private void applyDestroyIgnCacheMigration(String cacheName) {
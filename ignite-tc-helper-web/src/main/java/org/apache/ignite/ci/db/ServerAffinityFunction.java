@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.db;
+
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.cache.Cache;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.affinity.AffinityFunction;
+import org.apache.ignite.cache.affinity.rendezvous.RendezvousAffinityFunction;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.cache.query.ScanQuery;
+import org.apache.ignite.configuration.CacheConfiguration;
+
+/**
+ * Affinity for caches with {@code Long} keys containing server ID in high 32 bits (e.g. {@code buildId | srvId <<
+ * 32}). Partitions are split into {@link #SRV_GROUPS} groups, all keys of a server are placed into partitions of one
+ * group, so entries of server can be iterated by scanning only a quarter of partitions. Data of one server is spread
+ * over fewer partitions than by rendezvous affinity, it is acceptable as only several servers are configured.
+ *
+ * Affinity of existing cache can't be changed, so caches are created by
+ * {@link TcHelperDb#getOrCreateServerCache(Ignite, CacheConfiguration)} with new name, and data of older cache is
+ * moved by {@link DbMigrations}.
+ */
+public class ServerAffinityFunction extends RendezvousAffinityFunction {
+    /** Serial version uid. */
+    private static final long serialVersionUID = 0L;
+
+    /** Count of partition groups, one group contains keys of a server. */
+    public static final int SRV_GROUPS = 4;
+
+    /**
+     * @param parts Partitions count, should be divisible by {@link #SRV_GROUPS}.
+     */
+    public ServerAffinityFunction(int parts) {
+        super(false, parts);
+
+        Preconditions.checkArgument(parts % SRV_GROUPS == 0,
+            "Partitions %s are not divisible by groups %s", parts, SRV_GROUPS);
+    }
+
+    /**
+     * @param cache Cache created by {@link TcHelperDb#getOrCreateServerCache(Ignite, CacheConfiguration)}.
+     * @return Affinity of cache.
+     */
+    @SuppressWarnings("unchecked")
+    public static ServerAffinityFunction of(IgniteCache<Long, ?> cache) {
+        AffinityFunction aff = cache.getConfiguration(CacheConfiguration.class).getAffinity();
+
+        Preconditions.checkState(aff instanceof ServerAffinityFunction,
+            "Cache %s was created without server affinity: %s", cache.getName(), aff);
+
+        return (ServerAffinityFunction)aff;
+    }
+
+    /** {@inheritDoc} */
+    @Override public int partition(Object key) {
+        // Only Long keys are expected, see TcHelperDb#getServerCacheConfig.
+        if (!(key instanceof Long))
+            return super.partition(key);
+
+        long k = (Long)key;
+
+        int grpSize = getPartitions() / SRV_GROUPS;
+        int low = (int)k;
+
+        // Spread sequential IDs over partitions of group.
+        int h = low ^ (low >>> 16);
+
+        return group((int)(k >> 32)) + SRV_GROUPS * Math.floorMod(h, grpSize);
+    }
+
+    /**
+     * @param srvId Server ID.
+     * @return Partitions which may contain keys of server.
+     */
+    public int[] serverPartitions(int srvId) {
+        int grpSize = getPartitions() / SRV_GROUPS;
+        int grp = group(srvId);
+        int[] res = new int[grpSize];
+
+        for (int i = 0; i < grpSize; i++)
+            res[i] = grp + SRV_GROUPS * i;
+
+        return res;
+    }
+
+    /**
+     * @param srvId Server ID.
+     */
+    private static int group(int srvId) {
+        return Math.floorMod(srvId ^ (srvId >>> 16), SRV_GROUPS);
+    }
+
+    /**
+     * Iterates over entries of one server, only partitions of server are scanned.
+     *
+     * @param cache Cache created with this affinity.
+     * @param srvId Server ID.
+     * @return Lazy stream of entries, should be consumed or closed to release query cursors.
+     */
+    public <V> Stream<Cache.Entry<Long, V>> entriesForServer(IgniteCache<Long, V> cache, int srvId) {
+        return Arrays.stream(serverPartitions(srvId))
+            .boxed()
+            .flatMap(part -> scan(new ScanQuery<Long, V>((k, v) -> k >> 32 == srvId).setPartition(part), cache));
+    }
+
+    /**
+     * @param qry Query.
+     * @param cache Cache.
+     */
+    private static <V> Stream<Cache.Entry<Long, V>> scan(ScanQuery<Long, V> qry, IgniteCache<Long, V> cache) {
+        QueryCursor<Cache.Entry<Long, V>> cursor = cache.query(qry);
+
+        return StreamSupport.stream(cursor.spliterator(), false).onClose(cursor::close);
+    }
+}
@@ -21,6 +21,7 @@ import java.net.InetSocketAddress;
 import java.util.Collection;
 import java.util.Collections;
 import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
 import org.apache.ignite.Ignition;
 import org.apache.ignite.cache.CacheAtomicityMode;
 import org.apache.ignite.cache.affinity.rendezvous.RendezvousAffinityFunction;
@@ -145,6 +146,32 @@ public class TcHelperDb {
         return ccfg;
     }
 
+    /**
+     * @param name Cache name.
+     * @param parts Partitions count.
+     * @return Config of cache with {@code Long} keys containing server ID in high 32 bits.
+     */
+    @NotNull
+    public static <V> CacheConfiguration<Long, V> getServerCacheConfig(String name, int parts) {
+        CacheConfiguration<Long, V> ccfg = new CacheConfiguration<>(name);
+
+        ccfg.setAffinity(new ServerAffinityFunction(parts));
+
+        return ccfg;
+    }
+
+    /**
+     * Gets or creates cache with {@link ServerAffinityFunction}. Affinity of existing cache can't be changed, so cache
+     * with server affinity has new name, entries of previous version of cache are moved by {@link DbMigrations}.
+     *
+     * @param ignite Ignite.
+     * @param ccfg Config created by {@link #getServerCacheConfig(String, int)}.
+     * @return Cache.
+     */
+    public static <V> IgniteCache<Long, V> getOrCreateServerCache(Ignite ignite, CacheConfiguration<Long, V> ccfg) {
+        return ignite.getOrCreateCache(ccfg);
+    }
+
     public static class LocalOnlyTcpDiscoveryIpFinder implements TcpDiscoveryIpFinder {
         /** Port. */
         private int port;
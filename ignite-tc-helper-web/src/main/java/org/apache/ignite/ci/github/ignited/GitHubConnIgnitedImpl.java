@@ -24,12 +24,12 @@ import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
+import org.apache.ignite.ci.db.ServerAffinityFunction;
 import org.apache.ignite.ci.db.TcHelperDb;
 import org.apache.ignite.ci.di.AutoProfiling;
 import org.apache.ignite.ci.di.MonitoredTask;
@@ -42,9 +42,10 @@ import org.jetbrains.annotations.NotNull;
 /**
  *
  */
-class GitHubConnIgnitedImpl implements IGitHubConnIgnited {
+public class GitHubConnIgnitedImpl implements IGitHubConnIgnited {
     /** Cache name. */
-    public static final String GIT_HUB_PR = "gitHubPr";
+    public static final String GIT_HUB_PR = "gitHubPrV2";
+
 
     /** Server id. */
     private String srvId;
@@ -64,13 +65,25 @@ class GitHubConnIgnitedImpl implements IGitHubConnIgnited {
     /** PPs cache. */
     private IgniteCache<Long, PullRequest> prCache;
 
+    /** Affinity of PRs cache. */
+    private ServerAffinityFunction prAff;
+
+    /**
+     * @param ignite Ignite.
+     * @return Pull requests cache.
+     */
+    public static IgniteCache<Long, PullRequest> getOrCreateCache(Ignite ignite) {
+        return TcHelperDb.getOrCreateServerCache(ignite, TcHelperDb.getServerCacheConfig(GIT_HUB_PR, 8));
+    }
+
     public void init(String srvId, IGitHubConnection conn) {
         this.srvId = srvId;
         this.conn = conn;
 
         srvIdMaskHigh = Math.abs(srvId.hashCode());
 
-        prCache = igniteProvider.get().getOrCreateCache(TcHelperDb.getCache8PartsConfig(GIT_HUB_PR));
+        prCache = getOrCreateCache(igniteProvider.get());
+        prAff = ServerAffinityFunction.of(prCache);
     }
 
     /** {@inheritDoc} */
@@ -100,8 +113,7 @@ class GitHubConnIgnitedImpl implements IGitHubConnIgnited {
     @Override public List<PullRequest> getPullRequests() {
         scheduler.sheduleNamed(taskName("actualizePrs"), this::actualizePrs, 2, TimeUnit.MINUTES);
 
-        return StreamSupport.stream(prCache.spliterator(), false)
-            .filter(entry -> entry.getKey() >> 32 == srvIdMaskHigh)
+        return prAff.entriesForServer(prCache, (int)srvIdMaskHigh)
             .filter(entry -> PullRequest.OPEN.equals(entry.getValue().getState()))
             .map(javax.cache.Cache.Entry::getValue)
             .collect(Collectors.toList());
@@ -176,8 +188,7 @@ class GitHubConnIgnitedImpl implements IGitHubConnIgnited {
     @SuppressWarnings({"WeakerAccess", "UnusedReturnValue"})
     @MonitoredTask(name = "Check Outdated PRs(srv)", nameExtArgsIndexes = {0})
     protected String refreshOutdatedPrs(String srvId, Set<Integer> actualPrs) {
-        final long cnt = StreamSupport.stream(prCache.spliterator(), false)
-            .filter(entry -> entry.getKey() >> 32 == srvIdMaskHigh)
+        final long cnt = prAff.entriesForServer(prCache, (int)srvIdMaskHigh)
             .filter(entry -> PullRequest.OPEN.equals(entry.getValue().getState()))
             .filter(entry -> !actualPrs.contains(entry.getValue().getNumber()))
             .peek(entry -> prCache.put(entry.getKey(), conn.getPullRequest(entry.getValue().getNumber())))
@@ -23,11 +23,11 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import javax.cache.Cache;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
+import org.apache.ignite.ci.db.ServerAffinityFunction;
 import org.apache.ignite.ci.db.TcHelperDb;
 import org.apache.ignite.ci.di.AutoProfiling;
 import org.apache.ignite.ci.di.cache.GuavaCached;
@@ -41,7 +41,8 @@ import org.apache.ignite.internal.util.typedef.internal.U;
  */
 public class JiraTicketDao {
     /** Cache name. */
-    public static final String TEAMCITY_JIRA_TICKET_CACHE_NAME = "jiraTickets";
+    public static final String TEAMCITY_JIRA_TICKET_CACHE_NAME = "jiraTicketsV2";
+
 
     /** Ignite provider. */
     @Inject private Provider<Ignite> igniteProvider;
@@ -49,14 +50,27 @@ public class JiraTicketDao {
     /** JIRA tickets cache : (srvId || ticketNuber) -> Ticket data compacted. */
     private IgniteCache<Long, TicketCompacted> jiraCache;
 
+    /** Affinity of JIRA tickets cache. */
+    private ServerAffinityFunction jiraAff;
+
     /** Compactor. */
     @Inject private IStringCompactor compactor;
 
+    /**
+     * @param ignite Ignite.
+     * @return Jira tickets cache.
+     */
+    public static IgniteCache<Long, TicketCompacted> getOrCreateCache(Ignite ignite) {
+        return TcHelperDb.getOrCreateServerCache(ignite,
+            TcHelperDb.getServerCacheConfig(TEAMCITY_JIRA_TICKET_CACHE_NAME, 8));
+    }
+
     /**
      *
      */
     public void init() {
-        jiraCache = igniteProvider.get().getOrCreateCache(TcHelperDb.getCache8PartsConfig(TEAMCITY_JIRA_TICKET_CACHE_NAME));
+        jiraCache = getOrCreateCache(igniteProvider.get());
+        jiraAff = ServerAffinityFunction.of(jiraCache);
     }
 
     /**
@@ -67,14 +81,10 @@ public class JiraTicketDao {
     @GuavaCached(expireAfterWriteSecs = 60, softValues = true)
     public Set<Ticket> getTickets(int srvIdMaskHigh, String projectCode) {
         Preconditions.checkNotNull(jiraCache, "init() was not called");
-        long srvId = (long)srvIdMaskHigh << 32;
-
         Set<Ticket> res = new HashSet<>();
 
-        for (Cache.Entry<Long, TicketCompacted> entry : jiraCache) {
-            if ((entry.getKey() & srvId) == srvId)
-                res.add(entry.getValue().toTicket(compactor, projectCode));
-        }
+        jiraAff.entriesForServer(jiraCache, srvIdMaskHigh)
+            .forEach(entry -> res.add(entry.getValue().toTicket(compactor, projectCode)));
 
         return res;
     }
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +33,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -53,6 +55,7 @@ import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
 import org.apache.ignite.ci.teamcity.ignited.ITeamcityIgnited;
 import org.apache.ignite.ci.teamcity.ignited.SyncMode;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildCompacted;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildProjection;
 import org.apache.ignite.ci.teamcity.ignited.runhist.RunHistSync;
 import org.apache.ignite.ci.util.FutureUtil;
 import org.apache.ignite.ci.web.TcUpdatePool;
@@ -95,7 +98,8 @@ public class BuildChainProcessor {
         if (entryPoints.isEmpty())
             return res;
 
-        Map<Integer, Future<FatBuildCompacted>> builds = loadAllBuildsInChains(entryPoints, mode, teamcityIgnited);
+        Map<Integer, Future<FatBuildCompacted>> builds = loadAllBuildsInChains(entryPoints, mode, teamcityIgnited,
+            proj -> !proj.isComposite());
 
         builds.values().stream().map(FutureUtil::getResult)
             .filter(b -> !b.isComposite() && b.getTestsCount() > 0)
@@ -155,11 +159,14 @@ public class BuildChainProcessor {
         if (entryPoints.isEmpty())
             return new FullChainRunCtx(Build.createFakeStub());
 
-        Map<Integer, Future<FatBuildCompacted>> builds = loadAllBuildsInChains(entryPoints, mode, tcIgn);
+        Map<Integer, Future<FatBuildProjection>> chainBuilds = loadChainsProjections(entryPoints, mode, tcIgn);
+
+        // Only builds remaining after replacement with recent rebuilds are loaded fully.
+        Map<Integer, Future<FatBuildCompacted>> builds = new ConcurrentHashMap<>();
 
         Map<String, List<Future<FatBuildCompacted>>> freshRebuilds = new ConcurrentHashMap<>();
 
-        groupByBuildType(builds).forEach(
+        groupByBuildType(chainBuilds).forEach(
             (k, buildsForBt) -> {
                 List<Future<FatBuildCompacted>> futures = replaceWithRecent(buildsForBt,
                     entryPoints.size(),
@@ -209,7 +216,7 @@ public class BuildChainProcessor {
         };
 
         Integer someEntryPnt = entryPoints.iterator().next();
-        Future<FatBuildCompacted> build = getOrLoadBuild(someEntryPnt, mode, builds, tcIgn);
+        Future<FatBuildCompacted> build = getOrLoadSyncedBuild(someEntryPnt, mode, builds, tcIgn);
         FullChainRunCtx fullChainRunCtx = new FullChainRunCtx(FutureUtil.getResult(build).toBuild(compactor));
 
         contexts.sort(Comparator.comparing(function).reversed());
@@ -219,15 +226,54 @@ public class BuildChainProcessor {
         return fullChainRunCtx;
     }
 
+    /**
+     * Traverses chains using projections of builds, then loads fat builds only for projections passed filter.
+     *
+     * @param entryPoints Entry point(s): Build(s) to start scan from.
+     * @param mode Sync mode.
+     * @param tcIgn Teamcity Ignited.
+     * @param filter Filter of builds to be loaded fully.
+     * @return Fat builds of chains passed filter by ID.
+     */
     @NotNull
     public Map<Integer, Future<FatBuildCompacted>> loadAllBuildsInChains(Collection<Integer> entryPoints,
         SyncMode mode,
-        ITeamcityIgnited tcIgn) {
+        ITeamcityIgnited tcIgn,
+        Predicate<FatBuildProjection> filter) {
+        Map<Integer, FatBuildProjection> projections = new HashMap<>();
+
+        // All projections are already requested by traversal, so these are awaited before fat builds are requested.
+        loadChainsProjections(entryPoints, mode, tcIgn)
+            .forEach((id, ref) -> projections.put(id, FutureUtil.getResult(ref)));
+
         Map<Integer, Future<FatBuildCompacted>> builds = new ConcurrentHashMap<>();
 
-        Stream<Future<FatBuildCompacted>> entryPointsFatBuilds = entryPoints.stream()
+        projections.forEach((id, proj) -> {
+            if (filter.test(proj))
+                builds.put(id, loadSyncedBuildAsync(id, proj, mode, tcIgn));
+        });
+
+        return builds;
+    }
+
+    /**
+     * Traverses snapshot dependencies of chains. Only projections of fat builds are read, so tests and other data of
+     * builds are not deserialized during traversal.
+     *
+     * @param entryPoints Entry point(s): Build(s) to start scan from.
+     * @param mode Sync mode.
+     * @param tcIgn Teamcity Ignited.
+     * @return Projections of builds of chains by ID.
+     */
+    @NotNull
+    public Map<Integer, Future<FatBuildProjection>> loadChainsProjections(Collection<Integer> entryPoints,
+        SyncMode mode,
+        ITeamcityIgnited tcIgn) {
+        Map<Integer, Future<FatBuildProjection>> builds = new ConcurrentHashMap<>();
+
+        Stream<Future<FatBuildProjection>> entryPointsFatBuilds = entryPoints.stream()
             .filter(Objects::nonNull)
-            .map(id -> getOrLoadBuild(id, mode, builds, tcIgn));
+            .map(id -> builds.computeIfAbsent(id, id0 -> loadProjectionAsync(id0, mode, tcIgn)));
 
         Set<Integer> remainedUnloadedDeps = entryPointsFatBuilds
             .flatMap(ref -> dependencies(ref, mode, builds, tcIgn).stream()).collect(Collectors.toSet());
@@ -251,10 +297,10 @@ public class BuildChainProcessor {
     }
 
     @NotNull
-    public Map<String, List<FatBuildCompacted>> groupByBuildType(Map<Integer, Future<FatBuildCompacted>> builds) {
-        Map<String, List<FatBuildCompacted>> buildsByBt = new ConcurrentHashMap<>();
+    public <T extends BuildRefCompacted> Map<String, List<T>> groupByBuildType(Map<Integer, Future<T>> builds) {
+        Map<String, List<T>> buildsByBt = new ConcurrentHashMap<>();
         builds.values().forEach(bFut -> {
-            FatBuildCompacted b = FutureUtil.getResult(bFut);
+            T b = FutureUtil.getResult(bFut);
 
             String buildTypeId = b.buildTypeId(compactor);
             if (buildTypeId == null)
@@ -270,6 +316,17 @@ public class BuildChainProcessor {
         return builds.computeIfAbsent(id, id0 -> loadBuildAsync(id0, mode, tcIgn));
     }
 
+    /**
+     * @param id Build ID, build was already synchronized during chain traversal.
+     * @param mode Sync mode used for traversal.
+     * @param builds Build futures map.
+     * @param tcIgn Teamcity Ignited.
+     */
+    private Future<FatBuildCompacted> getOrLoadSyncedBuild(Integer id, SyncMode mode,
+        Map<Integer, Future<FatBuildCompacted>> builds, ITeamcityIgnited tcIgn) {
+        return builds.computeIfAbsent(id, id0 -> loadSyncedBuildAsync(id0, null, mode, tcIgn));
+    }
+
     /**
      * Runs deep collection of all related statistics for particular build.
      *
@@ -289,22 +346,22 @@ public class BuildChainProcessor {
     @SuppressWarnings("WeakerAccess")
     @NotNull
     @AutoProfiling
-    protected List<Future<FatBuildCompacted>> replaceWithRecent(List<FatBuildCompacted> builds,
+    protected List<Future<FatBuildCompacted>> replaceWithRecent(List<? extends BuildRefCompacted> builds,
         int cntLimit,
         LatestRebuildMode includeLatestRebuild,
         Map<Integer, Future<FatBuildCompacted>> allBuildsMap,
         SyncMode syncMode,
         ITeamcityIgnited tcIgn) {
         if (includeLatestRebuild == LatestRebuildMode.NONE || builds.isEmpty())
-            return completed(builds);
+            return loadSynced(builds, allBuildsMap, syncMode, tcIgn);
 
-        Optional<FatBuildCompacted> maxIdBuildOpt = builds.stream()
+        Optional<? extends BuildRefCompacted> maxIdBuildOpt = builds.stream()
             .filter(b -> b.branchName() >= 0)
             .max(Comparator.comparing(BuildRefCompacted::id));
         if (!maxIdBuildOpt.isPresent())
-            return completed(builds);
+            return loadSynced(builds, allBuildsMap, syncMode, tcIgn);
 
-        FatBuildCompacted freshBuild = maxIdBuildOpt.get();
+        BuildRefCompacted freshBuild = maxIdBuildOpt.get();
 
         final String branch = freshBuild.branchName(compactor);
 
@@ -376,9 +433,9 @@ public class BuildChainProcessor {
      */
     @NotNull
     private Set<Integer> dependencies(
-        Future<FatBuildCompacted> buildFut,
+        Future<FatBuildProjection> buildFut,
         SyncMode mode,
-        Map<Integer, Future<FatBuildCompacted>> builds,
+        Map<Integer, Future<FatBuildProjection>> builds,
         ITeamcityIgnited teamcityIgnited) {
         Set<Integer> newBuilds = new HashSet<>();
 
@@ -386,12 +443,44 @@ public class BuildChainProcessor {
             .forEach(id -> builds.computeIfAbsent(id, id0 -> {
                 newBuilds.add(id0);
 
-                return loadBuildAsync(id0, mode, teamcityIgnited);
+                return loadProjectionAsync(id0, mode, teamcityIgnited);
             }));
 
         return newBuilds;
     }
 
+    /**
+     * @param id Build ID.
+     * @param mode Sync mode.
+     * @param teamcityIgnited Teamcity ignited.
+     */
+    private Future<FatBuildProjection> loadProjectionAsync(Integer id, SyncMode mode,
+        ITeamcityIgnited teamcityIgnited) {
+        if (mode == SyncMode.NONE)
+            return Futures.immediateFuture(teamcityIgnited.getFatBuildProjection(id, SyncMode.NONE));
+
+        return tcUpdatePool.getService().submit(() -> teamcityIgnited.getFatBuildProjection(id, mode));
+    }
+
+    /**
+     * @param id Build ID, build was already synchronized during chain traversal.
+     * @param proj Projection of build read during traversal, fat build loaded to get it is reused.
+     * @param mode Sync mode used for traversal.
+     * @param teamcityIgnited Teamcity ignited.
+     */
+    private Future<FatBuildCompacted> loadSyncedBuildAsync(Integer id, @Nullable FatBuildProjection proj,
+        SyncMode mode, ITeamcityIgnited teamcityIgnited) {
+        FatBuildCompacted loaded = proj == null ? null : proj.loadedBuild();
+
+        if (loaded != null)
+            return Futures.immediateFuture(loaded);
+
+        if (mode == SyncMode.NONE)
+            return Futures.immediateFuture(teamcityIgnited.getFatBuild(id, SyncMode.NONE));
+
+        return tcUpdatePool.getService().submit(() -> teamcityIgnited.getFatBuild(id, SyncMode.NONE));
+    }
+
     public Future<FatBuildCompacted> loadBuildAsync(Integer id, SyncMode mode, ITeamcityIgnited teamcityIgnited) {
         if (mode == SyncMode.NONE)
             return Futures.immediateFuture(teamcityIgnited.getFatBuild(id, SyncMode.NONE));
@@ -399,7 +488,19 @@ public class BuildChainProcessor {
         return tcUpdatePool.getService().submit(() -> teamcityIgnited.getFatBuild(id, mode));
     }
 
-    private List<Future<FatBuildCompacted>> completed(List<FatBuildCompacted> builds) {
-        return builds.stream().map(Futures::immediateFuture).collect(Collectors.toList());
+    /**
+     * @param builds Builds synchronized during chain traversal.
+     * @param allBuildsMap Build futures map.
+     * @param mode Sync mode used for traversal.
+     * @param tcIgn Teamcity Ignited.
+     */
+    private List<Future<FatBuildCompacted>> loadSynced(List<? extends BuildRefCompacted> builds,
+        Map<Integer, Future<FatBuildCompacted>> allBuildsMap,
+        SyncMode mode,
+        ITeamcityIgnited tcIgn) {
+        return builds.stream()
+            .map(b -> allBuildsMap.computeIfAbsent(b.id(), id -> loadSyncedBuildAsync(id,
+                b instanceof FatBuildProjection ? (FatBuildProjection)b : null, mode, tcIgn)))
+            .collect(Collectors.toList());
     }
 }
@@ -35,4 +35,19 @@ public interface ITcServerConfig {
     @NotNull public String host();
 
     @NotNull public String logsDirectory();
+
+    /**
+     * @return Count of build reference pages fetched ahead of saving during full reindex, null for default.
+     */
+    @Nullable public Integer buildRefPagesInFlight();
+
+    /**
+     * @return Max count of builds loaded concurrently from server by proactive sync, null for default.
+     */
+    @Nullable public Integer fatBuildsInFlight();
+
+    /**
+     * @return Max rate of requests to server during build loading, requests per second, null for default.
+     */
+    @Nullable public Integer fatBuildRequestsPerSecond();
 }
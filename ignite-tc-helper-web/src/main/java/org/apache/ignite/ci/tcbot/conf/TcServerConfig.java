@@ -44,6 +44,15 @@ public class TcServerConfig implements ITcServerConfig {
     /** Downloaded build logs relative path. */
     @Nullable private String logsDir;
 
+    /** Build reference pages fetched ahead of saving during full reindex. */
+    @Nullable private Integer buildRefPagesInFlight;
+
+    /** Max builds loaded concurrently by proactive sync. */
+    @Nullable private Integer fatBuildsInFlight;
+
+    /** Max requests per second during build loading. */
+    @Nullable private Integer fatBuildRequestsPerSecond;
+
     public TcServerConfig() {
 
     }
@@ -90,6 +99,21 @@ public class TcServerConfig implements ITcServerConfig {
 
     }
 
+    /** {@inheritDoc} */
+    @Nullable @Override public Integer buildRefPagesInFlight() {
+        return buildRefPagesInFlight;
+    }
+
+    /** {@inheritDoc} */
+    @Nullable @Override public Integer fatBuildsInFlight() {
+        return fatBuildsInFlight;
+    }
+
+    /** {@inheritDoc} */
+    @Nullable @Override public Integer fatBuildRequestsPerSecond() {
+        return fatBuildRequestsPerSecond;
+    }
+
     /**
      * Configured value for host.
      */
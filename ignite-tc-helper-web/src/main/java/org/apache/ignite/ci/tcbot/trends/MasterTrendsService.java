@@ -79,8 +79,9 @@ public class MasterTrendsService {
         if (s.isFakeStub)
             return;
 
+        // Only start date is required from composite builds, it is taken from the entry build loaded above.
         Map<Integer, Future<FatBuildCompacted>> builds = bcp.loadAllBuildsInChains(
-            Collections.singletonList(s.buildId), SyncMode.RELOAD_QUEUED, tcIgn);
+            Collections.singletonList(s.buildId), SyncMode.RELOAD_QUEUED, tcIgn, proj -> !proj.isComposite());
 
         List<FatBuildCompacted> chainBuilds = FutureUtil.getResults(builds.values()).collect(Collectors.toList());
 
@@ -89,7 +90,7 @@ public class MasterTrendsService {
             return;
         }
 
-        Date startDate = FutureUtil.getResult(builds.get(s.buildId)).getStartDate();
+        Date startDate = build.getStartDate();
 
         DateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy'T'HH:mm:ss");
 
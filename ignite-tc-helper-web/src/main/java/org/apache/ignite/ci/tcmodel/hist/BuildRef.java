@@ -18,11 +18,18 @@
 package org.apache.ignite.ci.tcmodel.hist;
 
 import com.google.common.base.MoreObjects;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.Objects;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
 import org.apache.ignite.ci.tcmodel.result.AbstractRef;
+import org.jetbrains.annotations.Nullable;
+
+import static org.apache.ignite.ci.util.ExceptionUtil.propagateException;
 
 /**
  * Actual result of build execution from build history,
@@ -34,6 +41,10 @@ public class BuildRef extends AbstractRef {
     public static final String STATUS_SUCCESS = "SUCCESS";
     public static final String STATUS_FAILURE = "FAILURE";
 
+    /** Format local. */
+    protected static final ThreadLocal<SimpleDateFormat> fmtLoc
+        = ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyyMMdd'T'HHmmssZ"));
+
     @XmlAttribute private Integer id;
 
     @XmlAttribute public String buildTypeId;
@@ -62,6 +73,28 @@ public class BuildRef extends AbstractRef {
     /** Build page URL. */
     @XmlAttribute public String webUrl;
 
+    /** Start date, absent for queued builds. Is present in builds list if it was requested in fields. */
+    @XmlElement protected String startDate;
+
+    /**
+     * @return Start date or null if build was not started.
+     */
+    @Nullable public Date getStartDate() {
+        try {
+            return startDate == null ? null : fmtLoc.get().parse(startDate);
+        }
+        catch (ParseException e) {
+            throw propagateException(e);
+        }
+    }
+
+    /**
+     * @param ts Timestamp.
+     */
+    public void setStartDateTs(long ts) {
+        startDate = ts < 0 ? null : fmtLoc.get().format(new Date(ts));
+    }
+
     /**
      * @return Build ID
      */
@@ -19,7 +19,6 @@ package org.apache.ignite.ci.tcmodel.result;
 
 import com.google.common.base.Strings;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -28,7 +27,6 @@ import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
-import javax.xml.bind.annotation.XmlTransient;
 import org.apache.ignite.ci.tcmodel.changes.ChangesListRef;
 import org.apache.ignite.ci.tcmodel.conf.BuildType;
 import org.apache.ignite.ci.tcmodel.hist.BuildRef;
@@ -45,14 +43,9 @@ import static org.apache.ignite.ci.util.ExceptionUtil.propagateException;
 @XmlRootElement(name = "build")
 @XmlAccessorType(XmlAccessType.FIELD)
 public class Build extends BuildRef {
-    /** Format local. */
-    @XmlTransient private static ThreadLocal<SimpleDateFormat> fmtLoc
-        = ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyyMMdd'T'HHmmssZ"));
-
     @XmlElement(name = "buildType") private BuildType buildType;
 
     @XmlElement public String queuedDate;
-    @XmlElement private String startDate;
     @XmlElement private String finishDate;
 
     @XmlElement(name = "build")
@@ -92,20 +85,6 @@ public class Build extends BuildRef {
         return getDate(finishDate);
     }
 
-    /**
-     *
-     */
-    public Date getStartDate() {
-        return getDate(startDate);
-    }
-
-    /**
-     * @param ts Timestamp.
-     */
-    public void setStartDateTs(long ts) {
-        startDate = ts < 0 ? null : fmtLoc.get().format(new Date(ts));
-    }
-
     /**
      * @param ts Timestamp.
      */
@@ -24,8 +24,6 @@ import org.apache.ignite.ci.tcmodel.hist.BuildRef;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import static org.apache.ignite.ci.tcmodel.hist.BuildRef.*;
-
 @Persisted
 public class BuildRefCompacted {
     /** Build Id without modifications, -1 if it is null. */
@@ -70,6 +68,21 @@ public class BuildRefCompacted {
         this.id = buildId == null ? -1 : buildId;
     }
 
+    /**
+     * @param id Build ID.
+     * @param buildTypeId Build type ID string ID.
+     * @param branchName Branch name string ID.
+     * @param status Status string ID.
+     * @param state State string ID.
+     */
+    protected BuildRefCompacted(int id, int buildTypeId, int branchName, int status, int state) {
+        this.id = id;
+        this.buildTypeId = buildTypeId;
+        this.branchName = branchName;
+        this.status = status;
+        this.state = state;
+    }
+
     /**
      * @param refCompacted Reference compacted.
      */
@@ -186,23 +199,23 @@ public class BuildRefCompacted {
     }
 
     private boolean hasUnknownStatus(IStringCompactor compactor) {
-        return compactor.getStringId(STATUS_UNKNOWN) == status();
+        return compactor.wellKnownIds().statusUnknown() == status();
     }
 
     public boolean isRunning(IStringCompactor compactor) {
-        return compactor.getStringId(STATE_RUNNING) == state();
+        return compactor.wellKnownIds().stateRunning() == state();
     }
 
     public boolean isFinished(IStringCompactor compactor) {
-        return compactor.getStringId(STATE_FINISHED) == state();
+        return compactor.wellKnownIds().stateFinished() == state();
     }
 
     public boolean isQueued(IStringCompactor compactor) {
-        return compactor.getStringId(STATE_QUEUED) == state();
+        return compactor.wellKnownIds().stateQueued() == state();
     }
 
     public boolean isSuccess(IStringCompactor compactor) {
-        return compactor.getStringId(STATUS_SUCCESS) == status();
+        return compactor.wellKnownIds().statusSuccess() == status();
     }
 
     @Override public String toString() {
@@ -16,6 +16,10 @@
  */
 package org.apache.ignite.ci.teamcity.ignited;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  *
  */
@@ -34,4 +38,26 @@ public interface IStringCompactor {
      * @param val Value to check in the compactor.
      */
     public Integer getStringIdIfPresent(String val);
+
+    /**
+     * @return Identifiers of strings used by build and test predicates, resolved once per compactor.
+     */
+    public WellKnownStringIds wellKnownIds();
+
+    /**
+     * Identifies several values at once, strings not yet known are saved.
+     *
+     * @param vals Values to be identified as integers.
+     * @return Mapping from value to its identifier, <code>null</code> values are skipped.
+     */
+    public default Map<String, Integer> getStringIds(Collection<String> vals) {
+        Map<String, Integer> res = new HashMap<>();
+
+        for (String val : vals) {
+            if (val != null)
+                res.computeIfAbsent(val, this::getStringId);
+        }
+
+        return res;
+    }
 }
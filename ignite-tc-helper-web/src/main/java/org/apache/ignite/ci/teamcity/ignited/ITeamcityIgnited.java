@@ -34,6 +34,7 @@ import org.apache.ignite.ci.teamcity.ignited.buildtype.BuildTypeRefCompacted;
 import org.apache.ignite.ci.teamcity.ignited.change.ChangeCompacted;
 import org.apache.ignite.ci.teamcity.ignited.change.RevisionCompacted;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildCompacted;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildProjection;
 import org.apache.ignite.ci.user.ICredentialsProv;
 import org.jetbrains.annotations.NotNull;
 
@@ -140,8 +141,26 @@ public interface ITeamcityIgnited {
      */
     public FatBuildCompacted getFatBuild(int id, SyncMode mode);
 
+    /**
+     * Provides fields of fat build required for chain traversal. Build is synchronized as in {@link
+     * #getFatBuild(int, SyncMode)}, but build actual in the DB is not deserialized.
+     *
+     * @param id Id.
+     * @param mode Refresh mode.
+     */
+    public FatBuildProjection getFatBuildProjection(int id, SyncMode mode);
+
     public Collection<ChangeCompacted> getAllChanges(int[] changeIds);
 
+    /**
+     * Loads details of test failure, which are not kept in fat build.
+     *
+     * @param buildId Build ID, where test was run.
+     * @param testId Test ID.
+     * @return Details text or null if there are no details saved.
+     */
+    @Nullable public String getTestDetails(int buildId, long testId);
+
     /**
      * Returns IDs of N. most recent builds in build history.
      *
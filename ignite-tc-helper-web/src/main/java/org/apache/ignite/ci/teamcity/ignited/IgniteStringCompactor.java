@@ -17,28 +17,50 @@
 package org.apache.ignite.ci.teamcity.ignited;
 
 import com.google.common.base.MoreObjects;
+import com.google.common.cache.CacheBuilder;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ObjIntConsumer;
 import javax.cache.Cache;
+import javax.cache.processor.EntryProcessorResult;
+import javax.cache.processor.MutableEntry;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteAtomicSequence;
 import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.CacheEntryProcessor;
 import org.apache.ignite.cache.QueryEntity;
 import org.apache.ignite.cache.affinity.rendezvous.RendezvousAffinityFunction;
 import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.cache.query.ScanQuery;
 import org.apache.ignite.cache.query.SqlQuery;
 import org.apache.ignite.cache.query.annotations.QuerySqlField;
+import org.apache.ignite.ci.HelperConfig;
 import org.apache.ignite.ci.db.Persisted;
 import org.apache.ignite.ci.di.AutoProfiling;
-import org.apache.ignite.ci.di.cache.GuavaCached;
 import org.apache.ignite.ci.util.ExceptionUtil;
-import org.apache.ignite.ci.util.ObjectInterner;
 import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.configuration.DataStorageConfiguration;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,6 +77,15 @@ public class IgniteStringCompactor implements IStringCompactor {
     /** Strings sequence. */
     public static final String STRINGS_SEQ = "stringsSeq";
 
+    /** Count of strings to compare with cache during validation of dictionary snapshot. */
+    private static final int SNAPSHOT_CHECK_SAMPLES = 16;
+
+    /** Max count of identifiers by string kept in heap. */
+    private static final int IDS_CACHE_SIZE = 200_000;
+
+    /** Bits count for index of ID inside chunk of {@link #usedIds}. */
+    private static final int USED_IDS_CHUNK_BITS = 16;
+
     /** Ignite provider. */
     @Inject private Provider<Ignite> igniteProvider;
 
@@ -64,6 +95,91 @@ public class IgniteStringCompactor implements IStringCompactor {
     /** Sequence. */
     private IgniteAtomicSequence seq;
 
+    /**
+     * Reverse dictionary: string by its ID. IDs are generated by {@link #seq}, so array is dense. Reference is
+     * replaced on growth, {@code null} element means ID is not known locally (yet).
+     */
+    private volatile String[] dictionary = new String[0];
+
+    /** Identifiers of well-known strings, initialized with cache. */
+    private volatile WellKnownStringIds wellKnownIds;
+
+    /** Memory-mapped copy of dictionary, null if strings are not persisted or snapshot failed. */
+    @Nullable private volatile StringsDictionarySnapshot snapshot;
+
+    /** Identifiers by string, resolved by this instance. Bounded: other strings are resolved from the strings cache. */
+    private final com.google.common.cache.Cache<String, Integer> idsCache
+        = CacheBuilder.newBuilder().maximumSize(IDS_CACHE_SIZE).build();
+
+    /**
+     * Bitmap chunks of IDs resolved by this instance. Such IDs may be kept in heap and saved later, so these strings
+     * are never removed by {@link #removeUnused(Map)}.
+     */
+    private final ConcurrentMap<Integer, AtomicLongArray> usedIds = new ConcurrentHashMap<>();
+
+    /** Held for read while IDs are resolved, held for write while unused strings are removed. */
+    private final ReadWriteLock gcLock = new ReentrantReadWriteLock();
+
+    /**
+     * Saves string with candidate identifier if string is not saved yet.
+     */
+    private static class SaveIfAbsentProcessor implements CacheEntryProcessor<String, CompactorEntity, Integer> {
+        /** Serial version uid. */
+        private static final long serialVersionUID = 0L;
+
+        /** Identifier to save string with. */
+        private final int candidate;
+
+        /**
+         * @param candidate Identifier to save string with.
+         */
+        SaveIfAbsentProcessor(int candidate) {
+            this.candidate = candidate;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Integer process(MutableEntry<String, CompactorEntity> entry, Object... args) {
+            CompactorEntity entity = entry.getValue();
+
+            if (entity != null)
+                return entity.id;
+
+            entry.setValue(new CompactorEntity(candidate, entry.getKey()));
+
+            return candidate;
+        }
+    }
+
+    /**
+     * Removes string if it is still saved with expected identifier.
+     */
+    private static class RemoveIfSameIdProcessor implements CacheEntryProcessor<String, CompactorEntity, Boolean> {
+        /** Serial version uid. */
+        private static final long serialVersionUID = 0L;
+
+        /** Expected identifier. */
+        private final int expectedId;
+
+        /**
+         * @param expectedId Expected identifier.
+         */
+        RemoveIfSameIdProcessor(int expectedId) {
+            this.expectedId = expectedId;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Boolean process(MutableEntry<String, CompactorEntity> entry, Object... args) {
+            CompactorEntity entity = entry.getValue();
+
+            if (entity == null || entity.id != expectedId)
+                return false;
+
+            entry.remove();
+
+            return true;
+        }
+    }
+
     @Persisted
     public static class CompactorEntity {
         @QuerySqlField
@@ -116,37 +232,331 @@ public class IgniteStringCompactor implements IStringCompactor {
         stringsCache = ignite.getOrCreateCache(cfg);
 
         seq = ignite.atomicSequence(STRINGS_SEQ, 0, true);
+
+        snapshot = openSnapshot(ignite);
+
+        loadDictionary();
+
+        warmUpIds();
+
+        wellKnownIds = new WellKnownStringIds(this::getOrCreateStringId);
+    }
+
+    /**
+     * Closes dictionary snapshot, strings are resolved using cache after stop.
+     */
+    public void stop() {
+        StringsDictionarySnapshot snapshot = this.snapshot;
+
+        if (snapshot == null)
+            return;
+
+        this.snapshot = null;
+
+        try {
+            snapshot.close();
+        }
+        catch (IOException e) {
+            logger.error("Unable to close strings dictionary snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Opens dictionary snapshot if strings are persisted. Snapshot is cleared if it doesn't match the cache.
+     *
+     * @param ignite Ignite.
+     */
+    @Nullable private StringsDictionarySnapshot openSnapshot(Ignite ignite) {
+        DataStorageConfiguration dsCfg = ignite.configuration().getDataStorageConfiguration();
+
+        if (dsCfg == null || !dsCfg.getDefaultDataRegionConfiguration().isPersistenceEnabled())
+            return null;
+
+        try {
+            StringsDictionarySnapshot snapshot = new StringsDictionarySnapshot(HelperConfig.resolveWorkDir());
+
+            if (!isSnapshotValid(snapshot)) {
+                logger.warn("Strings dictionary snapshot doesn't match " + STRINGS_CACHE + ", it will be rebuilt");
+
+                snapshot.clear();
+            }
+
+            return snapshot;
+        }
+        catch (IOException e) {
+            logger.error("Unable to open strings dictionary snapshot: " + e.getMessage(), e);
+
+            return null;
+        }
+    }
+
+    /**
+     * Checks snapshot is not ahead of {@link #STRINGS_SEQ} and sample of strings has the same IDs in the cache.
+     *
+     * @param snapshot Snapshot.
+     */
+    private boolean isSnapshotValid(StringsDictionarySnapshot snapshot) {
+        int maxId = snapshot.maxId();
+
+        if (maxId == 0)
+            return true;
+
+        if (maxId > seq.get())
+            return false;
+
+        int step = Math.max(1, maxId / SNAPSHOT_CHECK_SAMPLES);
+
+        for (int id = maxId; id > 0; id -= step) {
+            String val = snapshot.get(id);
+
+            if (val == null)
+                continue;
+
+            CompactorEntity entity = stringsCache.get(val);
+
+            if (entity == null || entity.id != id)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Fills in-heap reverse dictionary. If snapshot is available, only strings saved after it are queried, other
+     * strings are read from snapshot on demand. Otherwise all strings from the cache are loaded (and saved to
+     * snapshot).
+     */
+    private void loadDictionary() {
+        long maxId = seq.get();
+
+        dictionary = new String[(int)maxId + 1];
+
+        StringsDictionarySnapshot snapshot = this.snapshot;
+        int snapshotMaxId = snapshot == null ? 0 : snapshot.maxId();
+        int cnt = 0;
+
+        if (snapshotMaxId == 0) {
+            for (Cache.Entry<String, CompactorEntity> next : stringsCache) {
+                CompactorEntity entity = next.getValue();
+
+                addToDictionary(entity.id, entity.val);
+                cnt++;
+            }
+        }
+        else {
+            try (QueryCursor<Cache.Entry<String, CompactorEntity>> qryCursor = stringsCache.query(
+                new SqlQuery<String, CompactorEntity>(CompactorEntity.class, "id > ?").setArgs(snapshotMaxId))) {
+                for (Cache.Entry<String, CompactorEntity> next : qryCursor) {
+                    CompactorEntity entity = next.getValue();
+
+                    addToDictionary(entity.id, entity.val);
+                    cnt++;
+                }
+            }
+        }
+
+        logger.info("Strings dictionary loaded: " + cnt + " strings from cache, " + snapshotMaxId +
+            " max ID in snapshot, max ID " + maxId);
+    }
+
+    /**
+     * Fills {@link #idsCache} with newest strings from dictionary and its snapshot, so IDs of strings are resolved
+     * without cache queries just after restart.
+     */
+    private void warmUpIds() {
+        String[] arr = dictionary;
+        StringsDictionarySnapshot snapshot = this.snapshot;
+        int cnt = 0;
+
+        for (int id = arr.length - 1; id > 0 && cnt < IDS_CACHE_SIZE; id--) {
+            String val = arr[id];
+
+            if (val == null && snapshot != null)
+                val = snapshot.get(id);
+
+            if (val != null) {
+                idsCache.put(val, id);
+
+                cnt++;
+            }
+        }
+    }
+
+    /**
+     * @param id String ID.
+     * @param val String value.
+     */
+    private synchronized void addToDictionary(int id, String val) {
+        if (id < 0)
+            return;
+
+        String[] arr = dictionary;
+
+        if (id < arr.length && arr[id] != null)
+            return;
+
+        if (id >= arr.length)
+            arr = Arrays.copyOf(arr, Math.max(id + 1, arr.length + (arr.length >> 1)));
+
+        arr[id] = val;
+
+        dictionary = arr; // volatile write publishes the element.
+
+        StringsDictionarySnapshot snapshot = this.snapshot;
+
+        if (snapshot != null) {
+            try {
+                snapshot.append(id, val);
+            }
+            catch (IOException e) {
+                logger.error("Strings dictionary snapshot disabled, append failed: " + e.getMessage(), e);
+
+                this.snapshot = null;
+            }
+        }
     }
 
     /** {@inheritDoc} */
     @AutoProfiling
-    @GuavaCached(cacheNegativeNumbersRval = false)
     @Override public int getStringId(String val) {
         if (val == null)
             return -1;
 
         initIfNeeded();
 
+        Lock lock = gcLock.readLock();
+
+        lock.lock();
+
+        try {
+            Integer id = idsCache.getIfPresent(val);
+
+            if (id != null) {
+                markUsed(id);
+
+                return id;
+            }
+
+            return getOrCreateStringId(val);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param val Value, not null.
+     * @return existing or newly generated identifier of value.
+     */
+    private int getOrCreateStringId(String val) {
         CompactorEntity entity = stringsCache.get(val);
         if (entity != null)
-            return entity.id;
+            return onIdResolved(entity.id, entity.val);
 
         int codeCandidate = (int)seq.incrementAndGet();
 
         boolean valWasSet = stringsCache.putIfAbsent(val, new CompactorEntity(codeCandidate, val));
 
-        return valWasSet ? codeCandidate : stringsCache.get(val).id;
+        if (valWasSet)
+            return onIdResolved(codeCandidate, val);
+
+        entity = stringsCache.get(val);
+
+        return onIdResolved(entity.id, entity.val);
+    }
+
+    /**
+     * Registers ID given out by compactor.
+     *
+     * @param id String ID.
+     * @param val String value.
+     * @return String ID.
+     */
+    private int onIdResolved(int id, String val) {
+        addToDictionary(id, val);
+
+        idsCache.put(val, id);
+
+        markUsed(id);
+
+        return id;
+    }
+
+    /**
+     * @param id String ID.
+     */
+    private void markUsed(int id) {
+        if (id < 0)
+            return;
+
+        Integer chunkIdx = id >>> USED_IDS_CHUNK_BITS;
+
+        AtomicLongArray chunk = usedIds.get(chunkIdx);
+
+        if (chunk == null)
+            chunk = usedIds.computeIfAbsent(chunkIdx, k -> new AtomicLongArray(1 << (USED_IDS_CHUNK_BITS - 6)));
+
+        int wordIdx = (id & ((1 << USED_IDS_CHUNK_BITS) - 1)) >>> 6;
+        long mask = 1L << id; // Shift distance is taken modulo 64.
+
+        while (true) {
+            long word = chunk.get(wordIdx);
+
+            if ((word & mask) != 0 || chunk.compareAndSet(wordIdx, word, word | mask))
+                return;
+        }
+    }
+
+    /**
+     * @param id String ID.
+     * @return {@code True} if ID was given out by this instance.
+     */
+    private boolean isUsed(int id) {
+        AtomicLongArray chunk = usedIds.get(id >>> USED_IDS_CHUNK_BITS);
+
+        if (chunk == null)
+            return false;
+
+        return (chunk.get((id & ((1 << USED_IDS_CHUNK_BITS) - 1)) >>> 6) & (1L << id)) != 0;
     }
 
     /** {@inheritDoc} */
-    @AutoProfiling
-    @GuavaCached(cacheNullRval = false)
     @Override public String getStringFromId(int id) {
         if (id < 0)
             return null;
 
         initIfNeeded();
 
+        String[] arr = dictionary;
+
+        if (id < arr.length) {
+            String val = arr[id];
+
+            if (val != null)
+                return val;
+        }
+
+        StringsDictionarySnapshot snapshot = this.snapshot;
+
+        if (snapshot != null) {
+            String val = snapshot.get(id);
+
+            if (val != null) {
+                addToDictionary(id, val);
+
+                return val;
+            }
+        }
+
+        return loadStringFromId(id);
+    }
+
+    /**
+     * Slow path for {@link #getStringFromId(int)}: queries cache for string not found in the dictionary.
+     *
+     * @param id String ID.
+     */
+    @Nullable private String loadStringFromId(int id) {
         QueryCursor<Cache.Entry<String, CompactorEntity>> qryCursor
             = stringsCache.query(new SqlQuery<String, CompactorEntity>(CompactorEntity.class, "id = ?").setArgs(id));
 
@@ -162,24 +572,222 @@ public class IgniteStringCompactor implements IStringCompactor {
 
         qryCursor.close();
 
-        return ObjectInterner.internString(next.getValue().val);
+        String val = next.getValue().val;
+
+        addToDictionary(id, val);
+
+        return val;
     }
 
     /** {@inheritDoc} */
-    @GuavaCached(cacheNullRval = false, cacheNegativeNumbersRval = false)
     @Override public Integer getStringIdIfPresent(String val) {
         if (val == null)
             return -1;
 
         initIfNeeded();
 
-        CompactorEntity entity = stringsCache.get(val);
+        Lock lock = gcLock.readLock();
 
-        if (entity != null)
-            return entity.id;
+        lock.lock();
+
+        try {
+            Integer id = idsCache.getIfPresent(val);
+
+            if (id != null) {
+                markUsed(id);
+
+                return id;
+            }
+
+            CompactorEntity entity = stringsCache.get(val);
+
+            if (entity != null)
+                return onIdResolved(entity.id, entity.val);
+
+            return null;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public WellKnownStringIds wellKnownIds() {
+        WellKnownStringIds ids = wellKnownIds;
+
+        if (ids != null)
+            return ids;
+
+        initIfNeeded();
+
+        return wellKnownIds;
+    }
+
+    /** {@inheritDoc} */
+    @AutoProfiling
+    @Override public Map<String, Integer> getStringIds(Collection<String> vals) {
+        initIfNeeded();
+
+        Set<String> keys = new TreeSet<>(); // Sorted keys for batch operations to avoid deadlocks.
+
+        for (String val : vals) {
+            if (val != null)
+                keys.add(val);
+        }
+
+        Map<String, Integer> res = new HashMap<>();
+
+        if (keys.isEmpty())
+            return res;
+
+        Lock lock = gcLock.readLock();
+
+        lock.lock();
+
+        try {
+            for (Iterator<String> iter = keys.iterator(); iter.hasNext(); ) {
+                String val = iter.next();
+                Integer id = idsCache.getIfPresent(val);
+
+                if (id != null) {
+                    markUsed(id);
+
+                    res.put(val, id);
+
+                    iter.remove();
+                }
+            }
+
+            if (!keys.isEmpty())
+                saveStringIds(keys, res);
+        }
+        finally {
+            lock.unlock();
+        }
+
+        return res;
+    }
+
+    /**
+     * Resolves or generates IDs for strings not found in {@link #idsCache}.
+     *
+     * @param keys Sorted strings, modified by this method.
+     * @param res Resulting map to fill.
+     */
+    private void saveStringIds(Set<String> keys, Map<String, Integer> res) {
+        Map<String, CompactorEntity> existing = stringsCache.getAll(keys);
+
+        existing.forEach((val, entity) -> res.put(val, onIdResolved(entity.id, entity.val)));
+
+        keys.removeAll(existing.keySet());
+
+        if (keys.isEmpty())
+            return;
+
+        // Reserve continuous block of identifiers for all missing strings.
+        int nextId = (int)seq.getAndAdd(keys.size()) + 1;
+
+        Map<String, SaveIfAbsentProcessor> candidates = new TreeMap<>(); // Sorted keys to avoid deadlocks.
+
+        for (String val : keys)
+            candidates.put(val, new SaveIfAbsentProcessor(nextId++));
+
+        // Put if absent semantics is required: same string may be saved concurrently by getStringId().
+        Map<String, EntryProcessorResult<Integer>> saved = stringsCache.invokeAll(candidates);
+
+        saved.forEach((val, procRes) -> res.put(val, onIdResolved(procRes.get(), val)));
+    }
+
+    /**
+     * @return Maximal string ID generated so far.
+     */
+    int maxStringId() {
+        initIfNeeded();
+
+        return (int)seq.get();
+    }
+
+    /**
+     * Iterates over all saved strings.
+     *
+     * @param consumer Consumer of string and its ID.
+     */
+    void forEachString(ObjIntConsumer<String> consumer) {
+        initIfNeeded();
+
+        try (QueryCursor<Cache.Entry<String, CompactorEntity>> cursor = stringsCache.query(new ScanQuery<>())) {
+            for (Cache.Entry<String, CompactorEntity> next : cursor)
+                consumer.accept(next.getKey(), next.getValue().id);
+        }
+    }
+
+    /**
+     * Removes strings which are not referenced. Strings given out by this compactor instance are kept because its
+     * IDs may be saved later.
+     *
+     * @param candidates Unreferenced strings found by caller, mapped to its IDs.
+     * @return Strings removed.
+     */
+    Collection<String> removeUnused(Map<String, Integer> candidates) {
+        initIfNeeded();
+
+        Lock lock = gcLock.writeLock();
+
+        lock.lock();
+
+        try {
+            Map<String, Integer> unused = new HashMap<>();
+
+            candidates.forEach((val, id) -> {
+                if (!isUsed(id))
+                    unused.put(val, id);
+            });
+
+            if (unused.isEmpty())
+                return Collections.emptyList();
+
+            Map<String, RemoveIfSameIdProcessor> procs = new TreeMap<>(); // Sorted keys to avoid deadlocks.
+
+            unused.forEach((val, id) -> procs.put(val, new RemoveIfSameIdProcessor(id)));
+
+            Map<String, EntryProcessorResult<Boolean>> removed = stringsCache.invokeAll(procs);
+
+            Collection<String> res = new ArrayList<>();
+
+            removed.forEach((val, procRes) -> {
+                if (!procRes.get())
+                    return;
+
+                idsCache.invalidate(val);
+
+                removeFromDictionary(unused.get(val));
+
+                res.add(val);
+            });
+
+            return res;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param id String ID.
+     */
+    private synchronized void removeFromDictionary(int id) {
+        String[] arr = dictionary;
+
+        if (id >= 0 && id < arr.length && arr[id] != null) {
+            arr[id] = null;
+
+            dictionary = arr;
+        }
 
-        return null;
+        StringsDictionarySnapshot snapshot = this.snapshot;
 
+        if (snapshot != null)
+            snapshot.remove(id);
     }
 
     @NotNull
@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.cache.Cache;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.ignite.binary.BinaryType;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.cache.query.ScanQuery;
+import org.apache.ignite.ci.di.AutoProfiling;
+import org.apache.ignite.ci.di.MonitoredTask;
+import org.apache.ignite.ci.di.scheduler.IScheduler;
+import org.apache.ignite.ci.teamcity.ignited.buildtype.BuildTypeDao;
+import org.apache.ignite.ci.util.ExceptionUtil;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Removes strings which are not referenced from {@link IgniteStringCompactor#STRINGS_CACHE}.
+ * <p>
+ * Mark phase scans all caches (build refs, fat builds, run history, mutes, Jira tickets, GitHub PRs, etc.) in binary
+ * form. Every int found in keys and values (including nested objects, arrays and collections) is considered as live
+ * string ID. So marking is conservative: it doesn't depend on entities layout and may only keep some garbage.
+ * <p>
+ * Long keys and values are marked by their lower 32 bits: string IDs are packed this way into cache keys with server ID
+ * in higher bits, see {@link BuildTypeDao#buildTypeStringIdToCacheKey(int, int)}. String IDs saved in other forms
+ * (e.g. long arrays or strings) are not marked, such strings would be removed.
+ * <p>
+ * Sweep phase removes unreferenced strings in batches with pauses between them.
+ */
+public class StringsDictionaryGc {
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(StringsDictionaryGc.class);
+
+    /** Delay of the first collection after bot start. */
+    private static final long FIRST_RUN_DELAY_MS = TimeUnit.HOURS.toMillis(1);
+
+    /** Strings removed in one batch. */
+    private static final int SWEEP_BATCH_SIZE = 500;
+
+    /** Pause between sweep batches. */
+    private static final long SWEEP_PAUSE_MS = 100;
+
+    /** Ignite provider. */
+    @Inject private Provider<Ignite> igniteProvider;
+
+    /** Compactor. */
+    @Inject private IStringCompactor compactor;
+
+    /** Scheduler. */
+    @Inject private IScheduler scheduler;
+
+    /** Creation timestamp. */
+    private final long createdTs = System.currentTimeMillis();
+
+    /** Strings removed since start. */
+    private final AtomicLong reclaimedStrings = new AtomicLong();
+
+    /** Estimated bytes reclaimed since start. */
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+
+    /**
+     * Requests collection of unused strings once a day.
+     */
+    public void ensureGcRequested() {
+        if (System.currentTimeMillis() - createdTs < FIRST_RUN_DELAY_MS)
+            return;
+
+        scheduler.sheduleNamed(StringsDictionaryGc.class.getSimpleName() + ".collectGarbage", this::collectGarbage,
+            24, TimeUnit.HOURS);
+    }
+
+    /**
+     * @return Strings removed since start.
+     */
+    public long reclaimedStrings() {
+        return reclaimedStrings.get();
+    }
+
+    /**
+     * @return Estimated bytes reclaimed since start.
+     */
+    public long reclaimedBytes() {
+        return reclaimedBytes.get();
+    }
+
+    /**
+     * Marks string IDs referenced from caches and removes other strings.
+     *
+     * @return Message with collection result.
+     */
+    @AutoProfiling
+    @MonitoredTask(name = "Strings Dictionary GC")
+    public String collectGarbage() {
+        if (!(compactor instanceof IgniteStringCompactor))
+            return "Skipped for " + compactor.getClass().getSimpleName();
+
+        IgniteStringCompactor strCompactor = (IgniteStringCompactor)compactor;
+
+        // Only strings existing before marking may be removed.
+        int maxId = strCompactor.maxStringId();
+
+        BitSet live = new BitSet(maxId + 1);
+
+        Ignite ignite = igniteProvider.get();
+        Collection<String> cacheNames = ignite.cacheNames();
+        long entries = 0;
+
+        for (String cacheName : cacheNames) {
+            if (IgniteStringCompactor.STRINGS_CACHE.equals(cacheName))
+                continue;
+
+            IgniteCache<Object, Object> cache = ignite.cache(cacheName).withKeepBinary();
+
+            try (QueryCursor<Cache.Entry<Object, Object>> cursor = cache.query(new ScanQuery<>())) {
+                for (Cache.Entry<Object, Object> next : cursor) {
+                    mark(next.getKey(), live, maxId);
+                    mark(next.getValue(), live, maxId);
+
+                    entries++;
+                }
+            }
+        }
+
+        Map<String, Integer> unreferenced = new HashMap<>();
+
+        strCompactor.forEachString((val, id) -> {
+            if (id > 0 && id <= maxId && !live.get(id))
+                unreferenced.put(val, id);
+        });
+
+        long strings = 0;
+        long bytes = 0;
+        Map<String, Integer> batch = new HashMap<>();
+
+        for (Map.Entry<String, Integer> e : unreferenced.entrySet()) {
+            batch.put(e.getKey(), e.getValue());
+
+            if (batch.size() < SWEEP_BATCH_SIZE)
+                continue;
+
+            Collection<String> removed = strCompactor.removeUnused(batch);
+
+            strings += removed.size();
+            bytes += reclaimed(removed);
+
+            batch.clear();
+
+            pause();
+        }
+
+        if (!batch.isEmpty()) {
+            Collection<String> removed = strCompactor.removeUnused(batch);
+
+            strings += removed.size();
+            bytes += reclaimed(removed);
+        }
+
+        String res = "Strings dictionary GC: " + entries + " entries marked, " + live.cardinality() +
+            " live IDs of " + maxId + ", " + unreferenced.size() + " strings unreferenced, " + strings +
+            " removed, " + bytes + " bytes reclaimed; since start: " + reclaimedStrings.get() + " strings, " +
+            reclaimedBytes.get() + " bytes";
+
+        logger.info(res);
+
+        return res;
+    }
+
+    /**
+     * Updates metrics.
+     *
+     * @param removed Strings removed.
+     * @return Estimated bytes reclaimed: string is saved both as key and in value of strings cache.
+     */
+    private long reclaimed(Collection<String> removed) {
+        long bytes = 0;
+
+        for (String val : removed)
+            bytes += 2L * val.getBytes(StandardCharsets.UTF_8).length + 4;
+
+        reclaimedStrings.addAndGet(removed.size());
+        reclaimedBytes.addAndGet(bytes);
+
+        return bytes;
+    }
+
+    /**
+     *
+     */
+    private static void pause() {
+        try {
+            Thread.sleep(SWEEP_PAUSE_MS);
+        }
+        catch (InterruptedException e) {
+            throw ExceptionUtil.propagateException(e);
+        }
+    }
+
+    /**
+     * Marks all integers found in object.
+     *
+     * @param obj Cache key, value or its field in binary form.
+     * @param live Live IDs.
+     * @param maxId Max ID to be marked.
+     */
+    private static void mark(@Nullable Object obj, BitSet live, int maxId) {
+        if (obj == null)
+            return;
+
+        if (obj instanceof Integer) {
+            int id = (Integer)obj;
+
+            if (id > 0 && id <= maxId)
+                live.set(id);
+        }
+        else if (obj instanceof Long) {
+            // Lower half of key may be string ID, e.g. build type key.
+            int id = (int)(long)(Long)obj;
+
+            if (id > 0 && id <= maxId)
+                live.set(id);
+        }
+        else if (obj instanceof int[]) {
+            for (int id : (int[])obj) {
+                if (id > 0 && id <= maxId)
+                    live.set(id);
+            }
+        }
+        else if (obj instanceof BinaryObject) {
+            BinaryObject binObj = (BinaryObject)obj;
+            BinaryType type = binObj.type();
+
+            if (type.isEnum())
+                return;
+
+            for (String field : type.fieldNames())
+                mark(binObj.field(field), live, maxId);
+        }
+        else if (obj instanceof Object[]) {
+            for (Object el : (Object[])obj)
+                mark(el, live, maxId);
+        }
+        else if (obj instanceof Collection) {
+            for (Object el : (Collection<?>)obj)
+                mark(el, live, maxId);
+        }
+        else if (obj instanceof Map) {
+            for (Map.Entry<?, ?> e : ((Map<?, ?>)obj).entrySet()) {
+                mark(e.getKey(), live, maxId);
+                mark(e.getValue(), live, maxId);
+            }
+        }
+    }
+}
@@ -0,0 +1,454 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import javax.annotation.concurrent.GuardedBy;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Append-only memory-mapped copy of strings dictionary. Allows to resolve strings by ID just after bot restart without
+ * scanning strings cache.
+ * <p>
+ * Index file contains header and data offset for each string ID, data file contains UTF-8 values prefixed with
+ * ID, length and checksum. Zero offset means string is not saved or was removed.
+ * <p>
+ * Files are not forced on each append, so after OS crash tail of data may be lost while index referring to it is
+ * saved. Entries are appended sequentially, so on open entries are checked from the beginning and the first entry
+ * having wrong checksum and all entries after it are dropped.
+ * <p>
+ * Reads are not synchronized: mapped regions are published through volatile reference, data is published by volatile
+ * {@link #dataEnd} written before offset of string. Regions replaced on growth are forced and released by GC, these
+ * are not unmapped explicitly because concurrent readers may still use it.
+ */
+public class StringsDictionarySnapshot implements Closeable {
+    /** Index file name. */
+    public static final String IDX_FILE = "stringsDictionary.idx";
+
+    /** Data file name. */
+    public static final String DATA_FILE = "stringsDictionary.dat";
+
+    /** File format marker. */
+    private static final int MAGIC = 0x53444943;
+
+    /** Format version. */
+    private static final int VERSION = 2;
+
+    /** Index header: magic, version, data end offset, max ID saved. */
+    private static final int IDX_HEADER_SIZE = 16;
+
+    /** Data end offset position in the index header. */
+    private static final int DATA_END_POS = 8;
+
+    /** Max ID position in the index header. */
+    private static final int MAX_ID_POS = 12;
+
+    /** Data file starts with magic, so valid offset is never 0. */
+    private static final int DATA_HEADER_SIZE = 4;
+
+    /** Data entry header: string ID, length of value, checksum of ID, length and value. */
+    private static final int ENTRY_HEADER_SIZE = 12;
+
+    /** Minimal mapped region size. */
+    private static final int MIN_MAPPED_SIZE = 1 << 20;
+
+    /** Index file. */
+    private final RandomAccessFile idxFile;
+
+    /** Data file. */
+    private final RandomAccessFile dataFile;
+
+    /** Mapped regions, null if snapshot is closed. */
+    @Nullable private volatile Regions regions;
+
+    /** End of data written, strings are readable only if these are below this offset. */
+    private volatile int dataEnd;
+
+    /** Maximal string ID saved. */
+    private volatile int maxId;
+
+    /**
+     * @param dir Directory to keep files.
+     */
+    public StringsDictionarySnapshot(File dir) throws IOException {
+        idxFile = new RandomAccessFile(new File(dir, IDX_FILE), "rw");
+        dataFile = new RandomAccessFile(new File(dir, DATA_FILE), "rw");
+
+        boolean valid = idxFile.length() >= IDX_HEADER_SIZE && dataFile.length() >= DATA_HEADER_SIZE;
+
+        Regions r = new Regions(
+            map(idxFile, Math.max(idxFile.length(), MIN_MAPPED_SIZE)),
+            map(dataFile, Math.max(dataFile.length(), MIN_MAPPED_SIZE)));
+
+        if (valid) {
+            int end = r.idx.getInt(DATA_END_POS);
+            int max = r.idx.getInt(MAX_ID_POS);
+
+            valid = r.idx.getInt(0) == MAGIC
+                && r.idx.getInt(4) == VERSION
+                && r.data.getInt(0) == MAGIC
+                && end >= DATA_HEADER_SIZE
+                && end <= r.data.capacity()
+                && max >= 0
+                && idxPosition(max) + 4 <= r.idx.capacity();
+
+            if (valid) {
+                int validEnd = validDataEnd(r.data, end);
+
+                dataEnd = validEnd;
+                maxId = dropEntriesAfter(r, validEnd, max);
+            }
+        }
+
+        regions = r;
+
+        if (!valid)
+            clear();
+    }
+
+    /**
+     * Removes all strings saved.
+     */
+    public synchronized void clear() {
+        Regions r = regions;
+
+        if (r == null)
+            return;
+
+        dataEnd = DATA_HEADER_SIZE;
+        maxId = 0;
+
+        for (int i = 0; i < r.idx.capacity(); i += 4)
+            r.idx.putInt(i, 0);
+
+        r.idx.putInt(0, MAGIC);
+        r.idx.putInt(4, VERSION);
+        r.idx.putInt(DATA_END_POS, DATA_HEADER_SIZE);
+        r.idx.putInt(MAX_ID_POS, 0);
+
+        r.data.putInt(0, MAGIC);
+    }
+
+    /**
+     * @return Maximal string ID saved, 0 if snapshot is empty.
+     */
+    public int maxId() {
+        return maxId;
+    }
+
+    /**
+     * @param id String ID.
+     */
+    public boolean contains(int id) {
+        Regions r = regions;
+
+        return r != null && offset(r, id) > 0;
+    }
+
+    /**
+     * @param id String ID.
+     * @return Saved string or null if it is absent in snapshot.
+     */
+    @Nullable public String get(int id) {
+        Regions r = regions;
+
+        if (r == null)
+            return null;
+
+        int off = offset(r, id);
+
+        if (off <= 0)
+            return null;
+
+        // Volatile read: data written before end was published is visible.
+        int end = dataEnd;
+
+        if (off + ENTRY_HEADER_SIZE > end || off + ENTRY_HEADER_SIZE > r.data.capacity())
+            return null;
+
+        int len = r.data.getInt(off + 4);
+
+        if (r.data.getInt(off) != id || len < 0 || (long)off + ENTRY_HEADER_SIZE + len > end)
+            return null;
+
+        byte[] bytes = new byte[len];
+
+        ByteBuffer buf = r.data.duplicate();
+        buf.position(off + ENTRY_HEADER_SIZE);
+        buf.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends string to snapshot. Entry is written before its offset is published to readers. Files are not forced,
+     * entry torn by OS crash is detected by checksum and dropped on next open.
+     *
+     * @param id String ID.
+     * @param val Value.
+     */
+    public synchronized void append(int id, String val) throws IOException {
+        Regions r = regions;
+
+        if (r == null || id <= 0 || offset(r, id) > 0)
+            return;
+
+        byte[] bytes = val.getBytes(StandardCharsets.UTF_8);
+
+        int off = dataEnd;
+        long newEnd = (long)off + ENTRY_HEADER_SIZE + bytes.length;
+
+        if (newEnd > Integer.MAX_VALUE)
+            throw new IOException("Strings dictionary snapshot is too big: " + newEnd);
+
+        long idxPos = idxPosition(id);
+
+        if (idxPos + 4 > Integer.MAX_VALUE)
+            throw new IOException("String ID is too big for snapshot: " + id);
+
+        if (newEnd > r.data.capacity() || idxPos + 4 > r.idx.capacity())
+            r = remap(r, newEnd, idxPos + 4);
+
+        r.data.putInt(off, id);
+        r.data.putInt(off + 4, bytes.length);
+
+        ByteBuffer buf = r.data.duplicate();
+        buf.position(off + ENTRY_HEADER_SIZE);
+        buf.put(bytes);
+
+        r.data.putInt(off + 8, checksum(r.data, off, bytes.length));
+
+        r.idx.putInt(DATA_END_POS, (int)newEnd);
+
+        dataEnd = (int)newEnd;
+
+        r.idx.putInt((int)idxPos, off);
+
+        if (id > maxId) {
+            r.idx.putInt(MAX_ID_POS, id);
+
+            maxId = id;
+        }
+    }
+
+    /**
+     * Forgets string. Data of string is not reclaimed until snapshot is cleared.
+     *
+     * @param id String ID.
+     */
+    public synchronized void remove(int id) {
+        Regions r = regions;
+
+        if (r != null && offset(r, id) > 0)
+            r.idx.putInt((int)idxPosition(id), 0);
+    }
+
+    /**
+     * Writes changes to disk and closes files. Strings are not available after close.
+     */
+    @Override public synchronized void close() throws IOException {
+        Regions r = regions;
+
+        if (r == null)
+            return;
+
+        regions = null;
+
+        r.force();
+
+        try {
+            idxFile.close();
+        }
+        finally {
+            dataFile.close();
+        }
+    }
+
+    /**
+     * Maps bigger regions and publishes these, previous regions are forced to disk.
+     *
+     * @param cur Current regions.
+     * @param dataRequired Required data size.
+     * @param idxRequired Required index size.
+     * @return New regions.
+     */
+    @GuardedBy("this")
+    private Regions remap(Regions cur, long dataRequired, long idxRequired) throws IOException {
+        cur.force();
+
+        MappedByteBuffer data = dataRequired > cur.data.capacity()
+            ? map(dataFile, grow(cur.data.capacity(), dataRequired))
+            : cur.data;
+
+        MappedByteBuffer idx = idxRequired > cur.idx.capacity()
+            ? map(idxFile, grow(cur.idx.capacity(), idxRequired))
+            : cur.idx;
+
+        Regions r = new Regions(idx, data);
+
+        regions = r;
+
+        return r;
+    }
+
+    /**
+     * @param data Data region.
+     * @param end Data end saved in index.
+     * @return End of entries fully written before {@code end}.
+     */
+    private static int validDataEnd(ByteBuffer data, int end) {
+        int off = DATA_HEADER_SIZE;
+
+        while (off + ENTRY_HEADER_SIZE <= end) {
+            int id = data.getInt(off);
+            int len = data.getInt(off + 4);
+
+            if (id <= 0 || len < 0 || (long)off + ENTRY_HEADER_SIZE + len > end)
+                break;
+
+            if (data.getInt(off + 8) != checksum(data, off, len))
+                break;
+
+            off += ENTRY_HEADER_SIZE + len;
+        }
+
+        return off;
+    }
+
+    /**
+     * Removes offsets beyond valid data from index: these may be saved while data was lost.
+     *
+     * @param r Regions.
+     * @param end Valid data end.
+     * @param max Max ID saved in index.
+     * @return Max ID of entries remained.
+     */
+    private static int dropEntriesAfter(Regions r, int end, int max) {
+        int newMax = 0;
+
+        for (int id = 1; id <= max; id++) {
+            int off = offset(r, id);
+
+            if (off >= end)
+                r.idx.putInt((int)idxPosition(id), 0);
+            else if (off > 0)
+                newMax = id;
+        }
+
+        r.idx.putInt(DATA_END_POS, end);
+        r.idx.putInt(MAX_ID_POS, newMax);
+
+        return newMax;
+    }
+
+    /**
+     * @param data Data region.
+     * @param off Entry offset.
+     * @param len Value length.
+     * @return Checksum of entry ID, length and value.
+     */
+    private static int checksum(ByteBuffer data, int off, int len) {
+        CRC32 crc = new CRC32();
+
+        ByteBuffer buf = data.duplicate();
+
+        buf.position(off);
+        buf.limit(off + 8);
+        crc.update(buf);
+
+        buf.limit(off + ENTRY_HEADER_SIZE + len);
+        buf.position(off + ENTRY_HEADER_SIZE);
+        crc.update(buf);
+
+        return (int)crc.getValue();
+    }
+
+    /**
+     * @param r Regions.
+     * @param id String ID.
+     */
+    private static int offset(Regions r, int id) {
+        if (id <= 0)
+            return 0;
+
+        long pos = idxPosition(id);
+
+        if (pos + 4 > r.idx.capacity())
+            return 0;
+
+        return r.idx.getInt((int)pos);
+    }
+
+    /**
+     * @param id String ID.
+     */
+    private static long idxPosition(int id) {
+        return IDX_HEADER_SIZE + id * 4L;
+    }
+
+    /**
+     * @param cur Current size.
+     * @param required Required size.
+     */
+    private static long grow(long cur, long required) {
+        return Math.min(Integer.MAX_VALUE, Math.max(required, cur * 2));
+    }
+
+    /**
+     * @param file File.
+     * @param size Size of region, file is extended if needed.
+     */
+    private static MappedByteBuffer map(RandomAccessFile file, long size) throws IOException {
+        return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Index and data regions mapped together.
+     */
+    private static class Regions {
+        /** Index. */
+        private final MappedByteBuffer idx;
+
+        /** Data. */
+        private final MappedByteBuffer data;
+
+        /**
+         * @param idx Index.
+         * @param data Data.
+         */
+        Regions(MappedByteBuffer idx, MappedByteBuffer data) {
+            this.idx = idx;
+            this.data = data;
+        }
+
+        /**
+         * Writes changes to disk.
+         */
+        void force() {
+            idx.force();
+            data.force();
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package org.apache.ignite.ci.teamcity.ignited;
 
 
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import java.util.Collection;
@@ -25,13 +26,15 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.OptionalInt;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -42,10 +45,8 @@ import org.apache.ignite.ci.di.AutoProfiling;
 import org.apache.ignite.ci.di.MonitoredTask;
 import org.apache.ignite.ci.di.cache.GuavaCached;
 import org.apache.ignite.ci.di.scheduler.IScheduler;
-import org.apache.ignite.ci.tcbot.trends.MasterTrendsService;
 import org.apache.ignite.ci.tcmodel.agent.Agent;
 import org.apache.ignite.ci.tcmodel.conf.Project;
-import org.apache.ignite.ci.tcmodel.hist.BuildRef;
 import org.apache.ignite.ci.tcmodel.mute.MuteInfo;
 import org.apache.ignite.ci.tcmodel.result.Build;
 import org.apache.ignite.ci.teamcity.ignited.buildcondition.BuildCondition;
@@ -62,6 +63,7 @@ import org.apache.ignite.ci.teamcity.ignited.change.ChangeDao;
 import org.apache.ignite.ci.teamcity.ignited.change.ChangeSync;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildCompacted;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildDao;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildProjection;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.ProactiveFatBuildSync;
 import org.apache.ignite.ci.teamcity.ignited.mute.MuteDao;
 import org.apache.ignite.ci.teamcity.ignited.mute.MuteSync;
@@ -73,8 +75,6 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static org.apache.ignite.ci.tcmodel.hist.BuildRef.STATUS_UNKNOWN;
-
 /**
  *
  */
@@ -89,6 +89,9 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
     /** Max build id diff to enforce reload during incremental refresh. */
     public static final int MAX_ID_DIFF_TO_ENFORCE_CONTINUE_SCAN = 3000;
 
+    /** Count of builds, which start times are checked and saved by one batch during backfill. */
+    public static final int START_TIMES_BACKFILL_BATCH = 1000;
+
     /** Server id. */
     private String srvName;
 
@@ -143,6 +146,9 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
     /** Strings compactor. */
     @Inject private IStringCompactor compactor;
 
+    /** Strings dictionary GC. */
+    @Inject private StringsDictionaryGc stringsGc;
+
     /** Server ID mask for cache Entries. */
     private int srvIdMaskHigh;
 
@@ -157,6 +163,8 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
         changesDao.init();
         runHistCompactedDao.init();
         muteDao.init();
+        buildTypeRefDao.init();
+        buildTypeDao.init();
     }
 
     /**
@@ -184,10 +192,7 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
         @Nullable String branchName,
         @Nullable Date sinceDate,
         @Nullable Date untilDate) {
-        final int allDatesOutOfBounds = -1;
-        final int someDatesOutOfBounds = -2;
-        final int invalidVal = -3;
-        final int unknownStatus = compactor.getStringId(STATUS_UNKNOWN);
+        final int unknownStatus = compactor.wellKnownIds().statusUnknown();
 
         List<BuildRefCompacted> buildRefs = getAllBuildsCompacted(buildTypeId, branchName)
             .stream()
@@ -195,138 +200,86 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
             .filter(b -> b.status() != unknownStatus)
             .collect(Collectors.toList());
 
-        if (buildRefs.isEmpty())
-            return Collections.emptyList();
+        if (buildRefs.isEmpty() || (sinceDate == null && untilDate == null))
+            return buildRefs;
 
-        int idSince = 0;
-        int idUntil = buildRefs.size() - 1;
+        // Start times are read locally, builds synced before start times were saved are skipped until backfilled.
+        Map<Integer, Long> startTimes = buildRefDao.getBuildStartTimes(srvIdMaskHigh,
+            buildRefs.stream().map(BuildRefCompacted::id).collect(Collectors.toList()));
 
-        if (sinceDate != null) {
-            idSince = binarySearchDate(buildRefs, 0, buildRefs.size(), sinceDate, true);
-            idSince = (idSince == someDatesOutOfBounds) ? 0 : idSince;
+        if (startTimes.size() < buildRefs.size()) {
+            scheduler.sheduleNamed(taskName("backfillBuildStartTimes"),
+                () -> backfillBuildStartTimes(srvName), 60, TimeUnit.MINUTES);
+
+            buildRefs = buildRefs.stream()
+                .filter(b -> startTimes.containsKey(b.id()))
+                .collect(Collectors.toList());
         }
 
-        if (untilDate != null) {
-            idUntil = (idSince < 0) ? allDatesOutOfBounds :
-                binarySearchDate(buildRefs, idSince, buildRefs.size(), untilDate, false);
-            idUntil = (idUntil == someDatesOutOfBounds) ? buildRefs.size() - 1 : idUntil;
+        long[] times = buildRefs.stream().mapToLong(b -> startTimes.get(b.id())).toArray();
+
+        int idSince = sinceDate == null ? 0 : firstNotBefore(times, sinceDate.getTime());
+        int idUntil = untilDate == null ? times.length : firstNotBefore(times, untilDate.getTime() + 1);
+
+        return idSince < idUntil ? buildRefs.subList(idSince, idUntil) : Collections.emptyList();
+    }
+
+    /**
+     * @param times Start timestamps of builds ordered by build ID.
+     * @param ts Timestamp.
+     * @return Index of first build started at {@code ts} or later, length of {@code times} if there is no such build.
+     */
+    private static int firstNotBefore(long[] times, long ts) {
+        int low = 0;
+        int high = times.length;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (times[mid] < ts)
+                low = mid + 1;
+            else
+                high = mid;
         }
 
-        if (idSince == invalidVal || idUntil == invalidVal) {
-            AtomicBoolean stopFilter = new AtomicBoolean();
-            AtomicBoolean addBuild = new AtomicBoolean();
-
-            return buildRefs.stream()
-                .filter(b -> {
-                    if (stopFilter.get())
-                        return addBuild.get();
-
-                    Date date = getBuildStartDate(b.id());
-
-                    if (date == null)
-                        return false;
-
-                    if (sinceDate != null && untilDate != null)
-                        if ((date.after(sinceDate) || date.equals(sinceDate)) &&
-                            (date.before(untilDate) || date.equals(untilDate)))
-                            return true;
-                        else {
-                            if (date.after(untilDate)) {
-                                stopFilter.set(true);
-                                addBuild.set(false);
-                            }
-
-                            return false;
-                        }
-                    else if (sinceDate != null) {
-                        if (date.after(sinceDate) || date.equals(sinceDate)) {
-                            stopFilter.set(true);
-                            addBuild.set(true);
-
-                            return true;
-                        }
-
-                        return false;
-                    }
-                    else {
-                        if (date.after(untilDate)) {
-                            stopFilter.set(true);
-                            addBuild.set(false);
-
-                            return false;
-                        }
-
-                        return true;
-                    }
-                })
-                .collect(Collectors.toList());
-        } else if (idSince == allDatesOutOfBounds || idUntil == allDatesOutOfBounds)
-            return Collections.emptyList();
-        else
-            return buildRefs.subList(idSince, idUntil + 1);
+        return low;
     }
 
     /**
-     * @param buildRefs Build refs list.
-     * @param fromIdx From index.
-     * @param toIdx To index.
-     * @param key Key.
-     * @param since {@code true} If key is sinceDate, {@code false} is untilDate.
+     * Saves start times of builds referenced before start times were saved with build references. Start times are
+     * taken from stored fat builds, builds not stored yet get start time when they are loaded.
      *
-     * @return {@value >= 0} Build id from list with min interval between key. If since {@code true}, min interval
-     * between key and same day or later. If since {@code false}, min interval between key and same day or earlier;
-     * {@value -1} All dates out of bounds. If sinceDate after last list element date or untilDate before first list
-     * element;
-     * {@value -2} Some dates out of bounds. If sinceDate before first list element or untilDate after last list
-     * element;
-     * {@value -3} Invalid value. If method get null or fake stub build.
+     * @param srvNme Server name.
      */
-    private int binarySearchDate(List<BuildRefCompacted> buildRefs, int fromIdx, int toIdx, Date key, boolean since) {
-        final int allDatesOutOfBounds = -1;
-        final int someDatesOutOfBounds = -2;
-        final int invalidVal = -3;
-
-        int low = fromIdx;
-        int high = toIdx - 1;
-        long minDiff = key.getTime();
-        int minDiffId = since ? low : high;
-        long temp;
-
-        Date highBuildStartDate = getBuildStartDate(buildRefs.get(high).id());
-        Date lowBuildStartDate = getBuildStartDate(buildRefs.get(low).id());
-
-        if (highBuildStartDate != null) {
-            if (highBuildStartDate.before(key))
-                return since ? allDatesOutOfBounds : someDatesOutOfBounds;
-        }
+    @SuppressWarnings("WeakerAccess")
+    @MonitoredTask(name = "Backfill Build Start Times", nameExtArgsIndexes = {0})
+    @AutoProfiling
+    protected String backfillBuildStartTimes(String srvNme) {
+        AtomicInteger missing = new AtomicInteger();
+        AtomicInteger saved = new AtomicInteger();
 
-        if (lowBuildStartDate != null) {
-            if (lowBuildStartDate.after(key))
-                return since ? someDatesOutOfBounds : allDatesOutOfBounds;
-        }
+        Iterator<Integer> buildIds = buildRefDao.compactedBuildsForServer(srvIdMaskHigh)
+            .map(BuildRefCompacted::getId)
+            .filter(Objects::nonNull)
+            .iterator();
 
-        while (low <= high) {
-            int mid = (low + high) >>> 1;
-            Date midValStartDate = getBuildStartDate(buildRefs.get(mid).id());
+        Iterators.partition(buildIds, START_TIMES_BACKFILL_BATCH).forEachRemaining(batch -> {
+            Set<Integer> known = buildRefDao.getBuildStartTimes(srvIdMaskHigh, batch).keySet();
 
-            if (midValStartDate != null) {
-                if (midValStartDate.after(key))
-                    high = mid - 1;
-                else if (midValStartDate.before(key))
-                    low = mid + 1;
-                else
-                    return mid;
+            List<Integer> unknown = batch.stream().filter(id -> !known.contains(id)).collect(Collectors.toList());
 
-                temp = midValStartDate.getTime() - key.getTime();
+            if (unknown.isEmpty())
+                return;
 
-                if ((temp > 0 == since) && (Math.abs(temp) < minDiff)) {
-                    minDiff = Math.abs(temp);
-                    minDiffId = mid;
-                }
-            } else
-                return invalidVal;
-        }
-        return minDiffId;
+            Map<Integer, Long> startTimes = fatBuildDao.getStartTimes(srvIdMaskHigh, unknown);
+
+            buildRefDao.putStartTimes(srvIdMaskHigh, startTimes);
+
+            missing.addAndGet(unknown.size());
+            saved.addAndGet(startTimes.size());
+        });
+
+        return "Start times saved for " + saved.get() + " builds from " + missing.get() + " missing";
     }
 
     /** {@inheritDoc} */
@@ -345,13 +298,19 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
         @Nullable String branchName) {
         ensureActualizeRequested();
 
-        Integer stateQueuedId = compactor.getStringIdIfPresent(BuildRef.STATE_QUEUED);
-        if (stateQueuedId == null)
-            return Collections.emptyList();
+        int stateQueuedId = compactor.wellKnownIds().stateQueued();
+
+        Set<Integer> branchIds = branchForQuery(branchName).stream()
+            .map(compactor::getStringIdIfPresent)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet());
 
-        List<BuildRefCompacted> builds = buildRefDao.getBuildsForBranch(srvIdMaskHigh, branchForQuery(branchName));
+        if (branchIds.isEmpty())
+            return Collections.emptyList();
 
-        return builds.stream().filter(b -> b.state() == stateQueuedId).collect(Collectors.toList());
+        return buildRefDao.getQueuedAndRunning(srvIdMaskHigh).stream()
+            .filter(b -> b.state() == stateQueuedId && branchIds.contains(b.branchName()))
+            .collect(Collectors.toList());
     }
 
 
@@ -464,6 +423,8 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
         fatBuildSync.ensureActualizationRequested(srvName, conn);
 
         runHistSync.invokeLaterFindMissingHistory(srvName);
+
+        stringsGc.ensureGcRequested();
     }
 
     /** {@inheritDoc} */
@@ -488,32 +449,6 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
         return buildConditionDao.setBuildCondition(srvIdMaskHigh, cond);
     }
 
-    /**
-     * @param buildId Build id.
-     * @return build start date or null if build is fake stub or start date is not specified.
-     */
-    @SuppressWarnings("WeakerAccess")
-    @GuavaCached(maximumSize = 2000, cacheNullRval = false)
-    @AutoProfiling
-    @Nullable public Date getBuildStartDate(int buildId) {
-        final Long buildStartTime = runHistCompactedDao.getBuildStartTime(srvIdMaskHigh, buildId);
-        if (buildStartTime != null)
-            return new Date(buildStartTime);
-
-        String msg = "Loading build [" + buildId + "] start date";
-
-        if (MasterTrendsService.DEBUG)
-            System.out.println(msg);
-
-        logger.info(msg);
-
-        FatBuildCompacted highBuild = getFatBuild(buildId, SyncMode.LOAD_NEW);
-        if (highBuild == null || highBuild.isFakeStub())
-            return null;
-
-        return highBuild.getStartDate();
-    }
-
     /** {@inheritDoc} */
     @GuavaCached(maximumSize = 500, expireAfterAccessSecs = 30, softValues = true)
     @Override public FatBuildCompacted getFatBuild(int buildId, SyncMode mode) {
@@ -533,6 +468,27 @@ public class TeamcityIgnitedImpl implements ITeamcityIgnited {
         return savedVer;
     }
 
+    /** {@inheritDoc} */
+    @AutoProfiling
+    @Override public FatBuildProjection getFatBuildProjection(int buildId, SyncMode mode) {
+        ensureActualizeRequested();
+
+        FatBuildProjection existing = fatBuildDao.getFatBuildProjection(srvIdMaskHigh, buildId);
+
+        if (existing != null && existing.isActual(compactor, mode))
+            return existing;
+
+        if (mode == SyncMode.NONE && existing == null)
+            return new FatBuildProjection(new FatBuildCompacted().setFakeStub(true));
+
+        return new FatBuildProjection(getFatBuild(buildId, mode));
+    }
+
+    /** {@inheritDoc} */
+    @Nullable @Override public String getTestDetails(int buildId, long testId) {
+        return fatBuildDao.getTestDetails(srvIdMaskHigh, buildId, testId);
+    }
+
     protected FatBuildCompacted getFatBuildFromIgnite(int buildId) {
         ensureActualizeRequested();
 
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited;
+
+import java.util.function.ToIntFunction;
+import org.apache.ignite.ci.tcmodel.hist.BuildRef;
+import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrence;
+
+/**
+ * Identifiers of constant strings used by build and test predicates. Resolved once per compactor, so checks like
+ * {@link BuildRefCompacted#isRunning(IStringCompactor)} are just integer comparisons.
+ */
+public class WellKnownStringIds {
+    /** Id of {@link BuildRef#STATE_QUEUED}. */
+    private final int stateQueued;
+
+    /** Id of {@link BuildRef#STATE_RUNNING}. */
+    private final int stateRunning;
+
+    /** Id of {@link BuildRef#STATE_FINISHED}. */
+    private final int stateFinished;
+
+    /** Id of {@link BuildRef#STATUS_UNKNOWN}. */
+    private final int statusUnknown;
+
+    /** Id of {@link BuildRef#STATUS_SUCCESS}. */
+    private final int statusSuccess;
+
+    /** Id of {@link TestOccurrence#STATUS_SUCCESS}. */
+    private final int testStatusSuccess;
+
+    /**
+     * @param strToId Function to get (or create) identifier of string.
+     */
+    public WellKnownStringIds(ToIntFunction<String> strToId) {
+        stateQueued = strToId.applyAsInt(BuildRef.STATE_QUEUED);
+        stateRunning = strToId.applyAsInt(BuildRef.STATE_RUNNING);
+        stateFinished = strToId.applyAsInt(BuildRef.STATE_FINISHED);
+        statusUnknown = strToId.applyAsInt(BuildRef.STATUS_UNKNOWN);
+        statusSuccess = strToId.applyAsInt(BuildRef.STATUS_SUCCESS);
+        testStatusSuccess = strToId.applyAsInt(TestOccurrence.STATUS_SUCCESS);
+    }
+
+    /** */
+    public int stateQueued() {
+        return stateQueued;
+    }
+
+    /** */
+    public int stateRunning() {
+        return stateRunning;
+    }
+
+    /** */
+    public int stateFinished() {
+        return stateFinished;
+    }
+
+    /** */
+    public int statusUnknown() {
+        return statusUnknown;
+    }
+
+    /** */
+    public int statusSuccess() {
+        return statusSuccess;
+    }
+
+    /** */
+    public int testStatusSuccess() {
+        return testStatusSuccess;
+    }
+}
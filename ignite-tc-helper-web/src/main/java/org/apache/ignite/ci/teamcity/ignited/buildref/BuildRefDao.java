@@ -18,9 +18,10 @@
 package org.apache.ignite.ci.teamcity.ignited.buildref;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 import javax.annotation.Nullable;
 import javax.cache.Cache;
 import javax.inject.Inject;
@@ -30,6 +31,7 @@ import org.apache.ignite.IgniteCache;
 import org.apache.ignite.cache.QueryEntity;
 import org.apache.ignite.cache.query.QueryCursor;
 import org.apache.ignite.cache.query.SqlQuery;
+import org.apache.ignite.ci.db.ServerAffinityFunction;
 import org.apache.ignite.ci.db.TcHelperDb;
 import org.apache.ignite.ci.di.AutoProfiling;
 import org.apache.ignite.ci.di.cache.GuavaCached;
@@ -45,7 +47,14 @@ import org.jetbrains.annotations.NotNull;
  */
 public class BuildRefDao {
     /** Cache name */
-    public static final String TEAMCITY_BUILD_CACHE_NAME = "teamcityBuildRef";
+    public static final String TEAMCITY_BUILD_CACHE_NAME = "teamcityBuildRefV2";
+
+
+    /** Build start time cache name. */
+    public static final String TEAMCITY_BUILD_START_TIME_CACHE_NAME = "teamcityBuildRefStartTime";
+
+    /** Sync watermarks cache name. */
+    public static final String TEAMCITY_BUILD_REF_WATERMARK_CACHE_NAME = "teamcityBuildRefWatermark";
 
     /** Ignite provider. */
     @Inject private Provider<Ignite> igniteProvider;
@@ -53,16 +62,54 @@ public class BuildRefDao {
     /** Builds cache. */
     private IgniteCache<Long, BuildRefCompacted> buildRefsCache;
 
+    /** Affinity of builds cache. */
+    private ServerAffinityFunction buildRefsAff;
+
+    /** Build start timestamps, saved during builds sync and when fat build is loaded. */
+    private IgniteCache<Long, Long> startTimeCache;
+
+    /** Sync watermarks by server ID. */
+    private IgniteCache<Integer, BuildRefsWatermark> watermarkCache;
+
     /** Compactor. */
     @Inject private IStringCompactor compactor;
 
-    /** */
-    public BuildRefDao init() {
-        CacheConfiguration<Long, BuildRefCompacted> cfg = TcHelperDb.getCacheV2Config(TEAMCITY_BUILD_CACHE_NAME);
+    /** Build IDs by server, build type and branch, active builds. Loaded once by first {@link #init()}. */
+    private volatile BuildRefsIndex idx;
+
+    /** Locks by server ID: reference is compared with saved one, saved and indexed atomically. */
+    private final ConcurrentMap<Integer, Object> srvLocks = new ConcurrentHashMap<>();
+
+    /**
+     * @param ignite Ignite.
+     * @return Build references cache.
+     */
+    public static IgniteCache<Long, BuildRefCompacted> getOrCreateCache(Ignite ignite) {
+        CacheConfiguration<Long, BuildRefCompacted> cfg = TcHelperDb.getServerCacheConfig(TEAMCITY_BUILD_CACHE_NAME, 32);
 
         cfg.setQueryEntities(Collections.singletonList(new QueryEntity(Long.class, BuildRefCompacted.class)));
 
-        buildRefsCache = igniteProvider.get().getOrCreateCache(cfg);
+        return TcHelperDb.getOrCreateServerCache(ignite, cfg);
+    }
+
+    /** */
+    public synchronized BuildRefDao init() {
+        buildRefsCache = getOrCreateCache(igniteProvider.get());
+        buildRefsAff = ServerAffinityFunction.of(buildRefsCache);
+
+        startTimeCache = igniteProvider.get().getOrCreateCache(
+            TcHelperDb.getCacheV2Config(TEAMCITY_BUILD_START_TIME_CACHE_NAME));
+
+        watermarkCache = igniteProvider.get().getOrCreateCache(
+            TcHelperDb.getCache8PartsConfig(TEAMCITY_BUILD_REF_WATERMARK_CACHE_NAME));
+
+        if (idx == null) {
+            BuildRefsIndex newIdx = new BuildRefsIndex(compactor.wellKnownIds());
+
+            newIdx.load(buildRefsCache);
+
+            idx = newIdx;
+        }
 
         return this;
     }
@@ -72,9 +119,7 @@ public class BuildRefDao {
      * @return all builds for a server, full scan.
      */
     @NotNull public Stream<BuildRefCompacted> compactedBuildsForServer(int srvId) {
-        return StreamSupport.stream(buildRefsCache.spliterator(), false)
-            .filter(entry -> isKeyForServer(entry.getKey(), srvId))
-            .map(javax.cache.Cache.Entry::getValue);
+        return getAllBuildRefs(srvId).map(javax.cache.Cache.Entry::getValue);
     }
 
     /**
@@ -96,28 +141,61 @@ public class BuildRefDao {
             .map(buildId -> buildIdToCacheKey(srvId, buildId))
             .collect(Collectors.toSet());
 
-        Map<Long, BuildRefCompacted> existingEntries = buildRefsCache.getAll(ids);
-        Map<Long, BuildRefCompacted> entriesToPut = new TreeMap<>();
-
         List<BuildRefCompacted> collect = ghData.stream()
             .map(ref -> new BuildRefCompacted(compactor, ref))
             .collect(Collectors.toList());
 
-        for (BuildRefCompacted next : collect) {
-            long cacheKey = buildIdToCacheKey(srvId, next.id());
-            BuildRefCompacted buildPersisted = existingEntries.get(cacheKey);
+        Map<Long, BuildRefCompacted> entriesToPut = new TreeMap<>();
+
+        synchronized (srvLock(srvId)) {
+            Map<Long, BuildRefCompacted> existingEntries = buildRefsCache.getAll(ids);
+
+            for (BuildRefCompacted next : collect) {
+                long cacheKey = buildIdToCacheKey(srvId, next.id());
+                BuildRefCompacted buildPersisted = existingEntries.get(cacheKey);
 
-            if (buildPersisted == null || !buildPersisted.equals(next))
-                entriesToPut.put(cacheKey, next);
+                if (buildPersisted == null || !buildPersisted.equals(next))
+                    entriesToPut.put(cacheKey, next);
+            }
+
+            int size = entriesToPut.size();
+            if (size != 0) {
+                buildRefsCache.putAll(entriesToPut);
+
+                idx.update(srvId, existingEntries, entriesToPut);
+            }
         }
 
-        int size = entriesToPut.size();
-        if (size != 0)
-            buildRefsCache.putAll(entriesToPut);
+        saveStartTimes(srvId, ghData);
 
         return entriesToPut.keySet();
     }
 
+    /**
+     * Saves start times of builds, which were not saved before.
+     *
+     * @param srvId Server id mask high.
+     * @param ghData References of builds, start date is present if it was requested from TC.
+     */
+    private void saveStartTimes(int srvId, List<BuildRef> ghData) {
+        Map<Long, Long> startTimes = new TreeMap<>();
+
+        for (BuildRef ref : ghData) {
+            Date startDate = ref.getId() == null ? null : ref.getStartDate();
+
+            if (startDate != null)
+                startTimes.put(buildIdToCacheKey(srvId, ref.getId()), startDate.getTime());
+        }
+
+        if (startTimes.isEmpty())
+            return;
+
+        startTimes.keySet().removeAll(startTimeCache.getAll(startTimes.keySet()).keySet());
+
+        if (!startTimes.isEmpty())
+            startTimeCache.putAll(startTimes);
+    }
+
     /**
      * @param srvId Server id mask high.
      * @param buildId Build id.
@@ -148,11 +226,30 @@ public class BuildRefDao {
         if (buildTypeIdId == null)
             return Collections.emptyList();
 
-        if (bracnhNameQry.stream().map(str -> compactor.getStringIdIfPresent(str)).allMatch(Objects::isNull))
+        Set<Long> keys = new TreeSet<>();
+        Set<Integer> branchIds = new HashSet<>();
+
+        for (String branch : bracnhNameQry) {
+            Integer branchId = compactor.getStringIdIfPresent(branch);
+
+            if (branchId == null || !branchIds.add(branchId))
+                continue;
+
+            for (int buildId : idx.buildIds(srvId, buildTypeIdId, branchId))
+                keys.add(buildIdToCacheKey(srvId, buildId));
+        }
+
+        if (keys.isEmpty())
             return Collections.emptyList();
 
-        return getBuildsForBranch(srvId, bracnhNameQry).stream()
-            .filter(e -> e.buildTypeId() == buildTypeIdId)
+        Map<Long, BuildRefCompacted> refs = buildRefsCache.getAll(keys);
+
+        // Index may be stale for concurrently updated reference, so build type and branch are checked.
+        return keys.stream()
+            .map(refs::get)
+            .filter(ref -> ref != null
+                && ref.buildTypeId() == buildTypeIdId
+                && branchIds.contains(ref.branchName()))
             .collect(Collectors.toList());
     }
 
@@ -161,18 +258,19 @@ public class BuildRefDao {
      */
     @AutoProfiling
     public List<BuildRefCompacted> getQueuedAndRunning(int srvId) {
-        GridIntList list = new GridIntList(2);
-        Integer stateQueuedId = compactor.getStringIdIfPresent(BuildRef.STATE_QUEUED);
-        if (stateQueuedId != null)
-            list.add(stateQueuedId);
+        Set<Long> keys = new TreeSet<>();
+
+        for (Integer buildId : idx.activeBuildIds(srvId))
+            keys.add(buildIdToCacheKey(srvId, buildId));
 
-        Integer stateRunningId = compactor.getStringIdIfPresent(BuildRef.STATE_RUNNING);
-        if (stateRunningId != null)
-            list.add(stateRunningId);
+        if (keys.isEmpty())
+            return Collections.emptyList();
 
+        Map<Long, BuildRefCompacted> refs = buildRefsCache.getAll(keys);
 
-        return compactedBuildsForServer(srvId)
-            .filter(e ->  list.contains(e.state()) )
+        return keys.stream()
+            .map(refs::get)
+            .filter(ref -> ref != null && idx.isActive(ref))
             .collect(Collectors.toList());
     }
 
@@ -217,17 +315,109 @@ public class BuildRefDao {
     @AutoProfiling
     public boolean save(int srvId, BuildRefCompacted refCompacted) {
         long cacheKey = buildIdToCacheKey(srvId, refCompacted.id());
-        BuildRefCompacted buildPersisted = buildRefsCache.get(cacheKey);
 
-        if (buildPersisted == null || !buildPersisted.equals(refCompacted)) {
-            buildRefsCache.put(cacheKey, refCompacted);
+        synchronized (srvLock(srvId)) {
+            BuildRefCompacted buildPersisted = buildRefsCache.get(cacheKey);
+
+            if (buildPersisted == null || !buildPersisted.equals(refCompacted)) {
+                buildRefsCache.put(cacheKey, refCompacted);
+
+                idx.update(srvId, Collections.singletonMap(cacheKey, buildPersisted),
+                    Collections.singletonMap(cacheKey, refCompacted));
 
-            return true;
+                return true;
+            }
         }
 
         return false;
     }
 
+    /**
+     * @param srvId Server id.
+     * @return Lock for updates of references of server.
+     */
+    private Object srvLock(int srvId) {
+        return srvLocks.computeIfAbsent(srvId, k -> new Object());
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param buildId Build id.
+     * @param startTs Build start timestamp, non-positive value means build was not started.
+     */
+    public void saveStartTime(int srvId, int buildId, long startTs) {
+        if (startTs <= 0)
+            return;
+
+        long cacheKey = buildIdToCacheKey(srvId, buildId);
+        Long persisted = startTimeCache.get(cacheKey);
+
+        if (persisted == null || persisted != startTs)
+            startTimeCache.put(cacheKey, startTs);
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param buildId Build id.
+     * @return Build start timestamp or null if it is not known yet.
+     */
+    @Nullable public Long getBuildStartTime(int srvId, int buildId) {
+        return startTimeCache.get(buildIdToCacheKey(srvId, buildId));
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param buildIds Build IDs.
+     * @return Build start timestamps by build ID, builds having unknown start time are absent.
+     */
+    @AutoProfiling
+    public Map<Integer, Long> getBuildStartTimes(int srvId, Collection<Integer> buildIds) {
+        Set<Long> keys = buildIds.stream()
+            .map(buildId -> buildIdToCacheKey(srvId, buildId))
+            .collect(Collectors.toSet());
+
+        Map<Integer, Long> res = new HashMap<>();
+
+        startTimeCache.getAll(keys).forEach((key, ts) -> res.put(cacheKeyToBuildId(key), ts));
+
+        return res;
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param startTimes Build start timestamps by build ID.
+     */
+    @AutoProfiling
+    public void putStartTimes(int srvId, Map<Integer, Long> startTimes) {
+        if (startTimes.isEmpty())
+            return;
+
+        Map<Long, Long> entries = new TreeMap<>();
+
+        startTimes.forEach((buildId, ts) -> entries.put(buildIdToCacheKey(srvId, buildId), ts));
+
+        startTimeCache.putAll(entries);
+    }
+
+    /**
+     * @param srvId Server id.
+     * @return Watermark of last successful sync or null if builds were never synced.
+     */
+    @Nullable public BuildRefsWatermark getWatermark(int srvId) {
+        return watermarkCache.get(srvId);
+    }
+
+    /**
+     * @param srvId Server id.
+     * @param watermark Watermark, null to remove it and enforce sync without watermark.
+     */
+    public void saveWatermark(int srvId, @Nullable BuildRefsWatermark watermark) {
+        if (watermark == null)
+            watermarkCache.remove(srvId);
+        else
+            watermarkCache.put(srvId, watermark);
+    }
+
     @AutoProfiling
     public int[] getAllIds(int srvId) {
         GridIntList res = new GridIntList(buildRefsCache.size());
@@ -241,7 +431,6 @@ public class BuildRefDao {
     }
 
     @NotNull public Stream<Cache.Entry<Long, BuildRefCompacted>> getAllBuildRefs(int srvId) {
-        return StreamSupport.stream(buildRefsCache.spliterator(), false)
-                .filter(entry -> isKeyForServer(entry.getKey(), srvId));
+        return buildRefsAff.entriesForServer(buildRefsCache, srvId);
     }
 }
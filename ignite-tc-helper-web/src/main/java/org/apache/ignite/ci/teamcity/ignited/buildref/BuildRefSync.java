@@ -18,17 +18,32 @@ package org.apache.ignite.ci.teamcity.ignited.buildref;
 
 import org.apache.ignite.ci.di.AutoProfiling;
 import org.apache.ignite.ci.di.MonitoredTask;
+import org.apache.ignite.ci.tcbot.conf.ITcBotConfig;
+import org.apache.ignite.ci.tcbot.conf.ITcServerConfig;
 import org.apache.ignite.ci.tcmodel.hist.BuildRef;
 import org.apache.ignite.ci.teamcity.ignited.ITeamcityIgnited;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.ProactiveFatBuildSync;
 import org.apache.ignite.ci.teamcity.pure.ITeamcityConn;
+import org.apache.ignite.ci.util.ExceptionUtil;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
@@ -44,14 +59,67 @@ public class BuildRefSync {
      */
     public static final int MAX_INCREMENTAL_BUILDS_TO_CHECK = 5000;
 
+    /**
+     * Time after sync listing recent builds without watermark, during which incremental sync lists only builds after
+     * watermark. Known queued and running builds are found using {@code mandatoryToReload}, but build unknown to bot
+     * may have ID less than watermark, so all recent builds are checked from time to time.
+     */
+    public static final long WATERMARK_TTL_MS = TimeUnit.MINUTES.toMillis(30);
+
+    /** Default count of pages fetched ahead of saving during full reindex. */
+    public static final int DFLT_PAGES_IN_FLIGHT = 4;
+
+    /** Threads fetching pages during full reindex, shared by all servers. */
+    public static final int PAGES_FETCH_THREADS = 4;
+
+    /** Marker of end of pages. */
+    private static final List<BuildRef> LAST_PAGE = new ArrayList<>();
+
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(BuildRefSync.class);
+
     /** Build reference DAO. */
     @Inject private BuildRefDao buildRefDao;
 
     /** Build Sync. */
     @Inject private ProactiveFatBuildSync fatBuildSync;
 
+    /** Config. */
+    @Inject private ITcBotConfig config;
+
+    /** Counter to name fetch pool threads. */
+    private static final AtomicInteger FETCH_THREAD_NUM = new AtomicInteger();
+
+    /**
+     * Pool to fetch pages during full reindex. Fetch tasks never wait for other tasks of the pool, so pool can be
+     * bounded without deadlocks.
+     */
+    private final ExecutorService pagesFetchPool = Executors.newFixedThreadPool(PAGES_FETCH_THREADS, r -> {
+        Thread thread = new Thread(r, "build-ref-fetch-" + FETCH_THREAD_NUM.incrementAndGet());
+
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
     /**
-     * List all builds (first pages or all available).
+     * Stops pages fetching pool.
+     */
+    public void stop() {
+        pagesFetchPool.shutdownNow();
+
+        try {
+            pagesFetchPool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * List all builds (first pages or all available). Incremental sync lists only builds after watermark of previous
+     * sync, watermark expires in {@link #WATERMARK_TTL_MS} to list recent builds without it. Full reindex fetches next
+     * pages while previous are saved.
      *
      * @param srvId Server id.
      * @param fullReindex Reindex all builds from TC history.
@@ -63,15 +131,42 @@ public class BuildRefSync {
     @AutoProfiling
     public String runActualizeBuildRefs(String srvId, boolean fullReindex,
                                         @Nullable Set<Integer> mandatoryToReload, ITeamcityConn conn) {
-        AtomicReference<String> outLinkNext = new AtomicReference<>();
-        List<BuildRef> tcDataFirstPage = conn.getBuildRefsPage(null, outLinkNext);
+        if (fullReindex)
+            return runFullReindex(srvId, conn);
 
         final int srvIdMaskHigh = ITeamcityIgnited.serverIdToInt(srvId);
+        final long syncStartTs = System.currentTimeMillis();
+        final BuildRefsWatermark watermark = buildRefDao.getWatermark(srvIdMaskHigh);
+
+        Integer sinceBuildId = sinceBuildId(watermark, syncStartTs, mandatoryToReload);
+
+        AtomicReference<String> outLinkNext = new AtomicReference<>();
+        List<BuildRef> tcDataFirstPage = null;
+
+        if (sinceBuildId != null) {
+            try {
+                int since = sinceBuildId;
+
+                tcDataFirstPage = conn.getBuildRefsSincePage(since, outLinkNext);
+            }
+            catch (RuntimeException e) {
+                // Build of watermark may be already removed from TC history.
+                logger.warn("Unable to list builds since " + sinceBuildId + ", builds will be listed without " +
+                    "watermark: " + e.getMessage());
+
+                sinceBuildId = null;
+            }
+        }
+
+        if (tcDataFirstPage == null)
+            tcDataFirstPage = conn.getBuildRefsPage(null, outLinkNext);
+
         Set<Long> buildsUpdated = buildRefDao.saveChunk(srvIdMaskHigh, tcDataFirstPage);
         int totalUpdated = buildsUpdated.size();
         fatBuildSync.scheduleBuildsLoad(conn, cacheKeysToBuildIds(buildsUpdated));
 
         int totalChecked = tcDataFirstPage.size();
+        int maxBuildId = maxBuildId(tcDataFirstPage);
         int neededToFind = 0;
         if (mandatoryToReload != null) {
             neededToFind = mandatoryToReload.size();
@@ -90,26 +185,200 @@ public class BuildRefSync {
             int savedCurChunk = curChunkBuildsSaved.size();
 
             totalChecked += tcDataNextPage.size();
+            maxBuildId = Math.max(maxBuildId, maxBuildId(tcDataNextPage));
 
-            if (!fullReindex) {
-                if (mandatoryToReload != null && !mandatoryToReload.isEmpty())
-                    tcDataNextPage.stream().map(BuildRef::getId).forEach(mandatoryToReload::remove);
+            if (mandatoryToReload != null && !mandatoryToReload.isEmpty())
+                tcDataNextPage.stream().map(BuildRef::getId).forEach(mandatoryToReload::remove);
 
-                if (savedCurChunk == 0 &&
-                        (mandatoryToReload == null
-                                || mandatoryToReload.isEmpty()
-                                || totalChecked > MAX_INCREMENTAL_BUILDS_TO_CHECK)
-                ) {
-                    // There are no modification at current page, hopefully no modifications at all
-                    break;
-                }
+            if (savedCurChunk == 0 &&
+                    (mandatoryToReload == null
+                            || mandatoryToReload.isEmpty()
+                            || totalChecked > MAX_INCREMENTAL_BUILDS_TO_CHECK)
+            ) {
+                // There are no modification at current page, hopefully no modifications at all
+                break;
             }
         }
 
+        if (watermark != null)
+            maxBuildId = Math.max(maxBuildId, watermark.buildId());
+
+        // Timestamp is moved only by sync without watermark, so watermark expires.
+        long watermarkTs = sinceBuildId == null ? syncStartTs : watermark.timestamp();
+
+        if (maxBuildId > 0)
+            buildRefDao.saveWatermark(srvIdMaskHigh, new BuildRefsWatermark(maxBuildId, watermarkTs));
+
         int leftToFind = mandatoryToReload == null ? 0 : mandatoryToReload.size();
-        return "Entries saved " + totalUpdated + " Builds checked " + totalChecked + " Needed to find " + neededToFind + " remained to find " + leftToFind;
+        return "Entries saved " + totalUpdated + " Builds checked " + totalChecked + " Needed to find " + neededToFind
+            + " remained to find " + leftToFind + (sinceBuildId == null ? "" : " Since build " + sinceBuildId);
     }
 
+    /**
+     * Lists all builds. Pages are fetched in separate thread, up to {@link ITcServerConfig#buildRefPagesInFlight()}
+     * pages may wait for saving. Pages are linked by next page reference, so only one page of sync is requested at a
+     * time.
+     *
+     * @param srvId Server id.
+     * @param conn Teamcity to check builds
+     */
+    private String runFullReindex(String srvId, ITeamcityConn conn) {
+        final int srvIdMaskHigh = ITeamcityIgnited.serverIdToInt(srvId);
+        final long syncStartTs = System.currentTimeMillis();
+
+        ITcServerConfig tcCfg = config.getTeamcityConfig(srvId);
+        int pagesInFlight = positiveOrDefault(tcCfg == null ? null : tcCfg.buildRefPagesInFlight(),
+            DFLT_PAGES_IN_FLIGHT);
+
+        BlockingQueue<List<BuildRef>> pages = new ArrayBlockingQueue<>(pagesInFlight);
+        AtomicReference<Exception> fetchErr = new AtomicReference<>();
+        AtomicBoolean stopped = new AtomicBoolean();
+
+        Future<?> fetch = pagesFetchPool.submit(() -> fetchAllPages(conn, pages, fetchErr, stopped));
+
+        int totalUpdated = 0;
+        int totalChecked = 0;
+        int maxBuildId = 0;
+
+        try {
+            while (true) {
+                List<BuildRef> page = pages.poll(1, TimeUnit.SECONDS);
+
+                if (page == null) {
+                    if (fetch.isDone() && pages.isEmpty())
+                        throw new IllegalStateException("Fetching of build references was stopped");
+
+                    continue;
+                }
+
+                if (page == LAST_PAGE)
+                    break;
+
+                Set<Long> buildsUpdated = buildRefDao.saveChunk(srvIdMaskHigh, page);
+                totalUpdated += buildsUpdated.size();
+                fatBuildSync.scheduleBuildsLoad(conn, cacheKeysToBuildIds(buildsUpdated));
+
+                totalChecked += page.size();
+                maxBuildId = Math.max(maxBuildId, maxBuildId(page));
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw ExceptionUtil.propagateException(e);
+        }
+        finally {
+            stopped.set(true);
+
+            fetch.cancel(true);
+        }
+
+        Exception err = fetchErr.get();
+
+        if (err != null)
+            throw ExceptionUtil.propagateException(err);
+
+        if (maxBuildId > 0)
+            buildRefDao.saveWatermark(srvIdMaskHigh, new BuildRefsWatermark(maxBuildId, syncStartTs));
+
+        return "Entries saved " + totalUpdated + " Builds checked " + totalChecked
+            + " Pages in flight " + pagesInFlight;
+    }
+
+    /**
+     * Fetches pages until last one or until consumer is stopped. {@link #LAST_PAGE} is added after all pages.
+     *
+     * @param conn Teamcity to check builds
+     * @param pages Queue of pages fetched.
+     * @param fetchErr Error of fetching.
+     * @param stopped Pages consumer stopped flag.
+     */
+    private void fetchAllPages(ITeamcityConn conn, BlockingQueue<List<BuildRef>> pages,
+        AtomicReference<Exception> fetchErr, AtomicBoolean stopped) {
+        try {
+            AtomicReference<String> outLinkNext = new AtomicReference<>();
+            String nextPageUrl = null;
+
+            do {
+                String pageUrl = nextPageUrl;
+                List<BuildRef> page = conn.getBuildRefsPage(pageUrl, outLinkNext);
+
+                if (!offer(pages, page, stopped))
+                    return;
+
+                nextPageUrl = outLinkNext.getAndSet(null);
+            }
+            while (nextPageUrl != null);
+        }
+        catch (Exception e) {
+            fetchErr.set(e);
+        }
+        finally {
+            offer(pages, LAST_PAGE, stopped);
+        }
+    }
+
+    /**
+     * @param pages Pages queue.
+     * @param page Page.
+     * @param stopped Pages consumer stopped flag.
+     * @return {@code False} if consumer was stopped or thread was interrupted.
+     */
+    private static boolean offer(BlockingQueue<List<BuildRef>> pages, List<BuildRef> page, AtomicBoolean stopped) {
+        try {
+            while (!stopped.get()) {
+                if (pages.offer(page, 1, TimeUnit.SECONDS))
+                    return true;
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return false;
+    }
+
+    /**
+     * @param val Configured value.
+     * @param dflt Default value.
+     */
+    private static int positiveOrDefault(@Nullable Integer val, int dflt) {
+        return val != null && val > 0 ? val : dflt;
+    }
+
+    /**
+     * @param watermark Watermark of previous sync.
+     * @param now Current timestamp.
+     * @param mandatoryToReload Build IDs should be found during sync.
+     * @return Build ID to list builds after it or null if all recent builds should be listed.
+     */
+    @Nullable private static Integer sinceBuildId(@Nullable BuildRefsWatermark watermark, long now,
+        @Nullable Set<Integer> mandatoryToReload) {
+        if (watermark == null || now - watermark.timestamp() > WATERMARK_TTL_MS)
+            return null;
+
+        int sinceBuildId = watermark.buildId();
+
+        if (mandatoryToReload != null) {
+            for (Integer buildId : mandatoryToReload)
+                sinceBuildId = Math.min(sinceBuildId, buildId - 1);
+        }
+
+        return sinceBuildId;
+    }
+
+    /**
+     * @param refs Build references.
+     * @return Max build ID or 0 if there are no builds.
+     */
+    private static int maxBuildId(List<BuildRef> refs) {
+        return refs.stream()
+            .map(BuildRef::getId)
+            .filter(Objects::nonNull)
+            .mapToInt(Integer::intValue)
+            .max()
+            .orElse(0);
+    }
 
     @NotNull
     private List<Integer> cacheKeysToBuildIds(Collection<Long> cacheKeysUpdated) {
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.buildref;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.cache.Cache;
+import org.apache.ignite.ci.teamcity.ignited.BuildRefCompacted;
+import org.apache.ignite.ci.teamcity.ignited.WellKnownStringIds;
+import org.apache.ignite.internal.util.GridIntList;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * In-memory indexes of build references:
+ * <ul>
+ *     <li>build IDs by server, build type and branch. Each array of IDs is sorted and is replaced on update, so
+ *     arrays returned are never modified;</li>
+ *     <li>IDs of queued and running builds by server.</li>
+ * </ul>
+ */
+class BuildRefsIndex {
+    /** Empty array. */
+    private static final int[] EMPTY = new int[0];
+
+    /** Build IDs by key. */
+    private final ConcurrentMap<Key, int[]> builds = new ConcurrentHashMap<>();
+
+    /** Queued and running build IDs by server ID. */
+    private final ConcurrentMap<Integer, Set<Integer>> activeBuilds = new ConcurrentHashMap<>();
+
+    /** Queued state ID. */
+    private final int stateQueued;
+
+    /** Running state ID. */
+    private final int stateRunning;
+
+    /**
+     * @param ids Well-known string IDs.
+     */
+    BuildRefsIndex(WellKnownStringIds ids) {
+        stateQueued = ids.stateQueued();
+        stateRunning = ids.stateRunning();
+    }
+
+    /**
+     * Fills index with references loaded from cache.
+     *
+     * @param entries Cache entries.
+     */
+    void load(Iterable<Cache.Entry<Long, BuildRefCompacted>> entries) {
+        Map<Key, GridIntList> ids = new HashMap<>();
+
+        for (Cache.Entry<Long, BuildRefCompacted> entry : entries) {
+            BuildRefCompacted ref = entry.getValue();
+            int srvId = (int)(entry.getKey() >> 32);
+
+            ids.computeIfAbsent(key(srvId, ref), k -> new GridIntList()).add(ref.id());
+
+            if (isActive(ref))
+                activeBuilds(srvId).add(ref.id());
+        }
+
+        ids.forEach((key, list) -> {
+            int[] arr = list.array();
+
+            Arrays.sort(arr);
+
+            builds.put(key, arr);
+        });
+    }
+
+    /**
+     * Updates index on references save. IDs of chunk are merged to each array of IDs once. Caller should not update
+     * references of the same server concurrently.
+     *
+     * @param srvId Server ID.
+     * @param prevRefs Previous versions of references by cache key, reference is absent if it is new.
+     * @param refs References saved by cache key.
+     */
+    void update(int srvId, Map<Long, BuildRefCompacted> prevRefs, Map<Long, BuildRefCompacted> refs) {
+        Map<Key, GridIntList> added = new HashMap<>();
+        Map<Key, GridIntList> removed = new HashMap<>();
+
+        refs.forEach((cacheKey, ref) -> {
+            if (isActive(ref))
+                activeBuilds(srvId).add(ref.id());
+            else
+                activeBuilds(srvId).remove(ref.id());
+
+            Key key = key(srvId, ref);
+            BuildRefCompacted prev = prevRefs.get(cacheKey);
+
+            if (prev != null) {
+                Key prevKey = key(srvId, prev);
+
+                if (prevKey.equals(key))
+                    return;
+
+                removed.computeIfAbsent(prevKey, k -> new GridIntList()).add(prev.id());
+            }
+
+            added.computeIfAbsent(key, k -> new GridIntList()).add(ref.id());
+        });
+
+        removed.forEach((key, ids) -> builds.computeIfPresent(key, (k, arr) -> remove(arr, sorted(ids))));
+        added.forEach((key, ids) -> builds.compute(key, (k, arr) -> insert(arr, sorted(ids))));
+    }
+
+    /**
+     * @param srvId Server ID.
+     * @return IDs of builds which were queued or running when saved.
+     */
+    Collection<Integer> activeBuildIds(int srvId) {
+        Set<Integer> ids = activeBuilds.get(srvId);
+
+        return ids == null ? Collections.emptyList() : new ArrayList<>(ids);
+    }
+
+    /**
+     * @param ref Reference.
+     */
+    boolean isActive(BuildRefCompacted ref) {
+        return ref.state() == stateQueued || ref.state() == stateRunning;
+    }
+
+    /**
+     * @param srvId Server ID.
+     */
+    private Set<Integer> activeBuilds(int srvId) {
+        return activeBuilds.computeIfAbsent(srvId, k -> ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * @param srvId Server ID.
+     * @param buildTypeId Build type ID.
+     * @param branchName Branch name ID.
+     * @return Sorted build IDs, should not be modified.
+     */
+    int[] buildIds(int srvId, int buildTypeId, int branchName) {
+        int[] arr = builds.get(new Key(srvId, buildTypeId, branchName));
+
+        return arr == null ? EMPTY : arr;
+    }
+
+    /**
+     * @param ids Build IDs.
+     * @return Sorted array of distinct IDs.
+     */
+    private static int[] sorted(GridIntList ids) {
+        return Arrays.stream(ids.array()).sorted().distinct().toArray();
+    }
+
+    /**
+     * @param arr Sorted array or null.
+     * @param ids Sorted build IDs.
+     * @return Sorted array with IDs merged.
+     */
+    private static int[] insert(@Nullable int[] arr, int[] ids) {
+        if (arr == null)
+            return ids;
+
+        int[] res = new int[arr.length + ids.length];
+        int i = 0;
+        int j = 0;
+        int cnt = 0;
+
+        while (i < arr.length || j < ids.length) {
+            if (j == ids.length || (i < arr.length && arr[i] < ids[j]))
+                res[cnt++] = arr[i++];
+            else if (i == arr.length || ids[j] < arr[i])
+                res[cnt++] = ids[j++];
+            else {
+                res[cnt++] = arr[i++];
+                j++;
+            }
+        }
+
+        if (cnt == arr.length)
+            return arr;
+
+        return cnt == res.length ? res : Arrays.copyOf(res, cnt);
+    }
+
+    /**
+     * @param arr Sorted array.
+     * @param ids Sorted build IDs.
+     * @return Sorted array without IDs or null if array became empty.
+     */
+    @Nullable private static int[] remove(int[] arr, int[] ids) {
+        int[] res = new int[arr.length];
+        int cnt = 0;
+
+        for (int id : arr) {
+            if (Arrays.binarySearch(ids, id) < 0)
+                res[cnt++] = id;
+        }
+
+        if (cnt == 0)
+            return null;
+
+        return cnt == arr.length ? arr : Arrays.copyOf(res, cnt);
+    }
+
+    /**
+     * @param srvId Server ID.
+     * @param ref Reference.
+     */
+    private static Key key(int srvId, BuildRefCompacted ref) {
+        return new Key(srvId, ref.buildTypeId(), ref.branchName());
+    }
+
+    /**
+     * Server, build type and branch.
+     */
+    private static class Key {
+        /** Server ID. */
+        private final int srvId;
+
+        /** Build type ID. */
+        private final int buildTypeId;
+
+        /** Branch name ID. */
+        private final int branchName;
+
+        /**
+         * @param srvId Server ID.
+         * @param buildTypeId Build type ID.
+         * @param branchName Branch name ID.
+         */
+        Key(int srvId, int buildTypeId, int branchName) {
+            this.srvId = srvId;
+            this.buildTypeId = buildTypeId;
+            this.branchName = branchName;
+        }
+
+        /** {@inheritDoc} */
+        @Override public boolean equals(Object o) {
+            if (this == o)
+                return true;
+
+            if (o == null || getClass() != o.getClass())
+                return false;
+
+            Key key = (Key)o;
+
+            return srvId == key.srvId && buildTypeId == key.buildTypeId && branchName == key.branchName;
+        }
+
+        /** {@inheritDoc} */
+        @Override public int hashCode() {
+            return 31 * (31 * srvId + buildTypeId) + branchName;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.buildref;
+
+import org.apache.ignite.ci.db.Persisted;
+
+/**
+ * High-watermark of build references sync for one server: all builds up to {@link #buildId()} were listed from
+ * TeamCity. Only build ID is used in incremental query ({@code sinceBuild} locator). {@link #timestamp()} is time of
+ * last sync listed recent builds without watermark, it is used only to expire watermark. {@code sinceDate} locator is
+ * not used because TeamCity applies it to build start date, so it would skip builds changed state after start.
+ */
+@Persisted
+public class BuildRefsWatermark {
+    /** Max build ID listed. */
+    private int buildId;
+
+    /** Timestamp of last sync without watermark, watermark expires after it. */
+    private long ts;
+
+    /**
+     * @param buildId Max build ID listed.
+     * @param ts Timestamp of last sync without watermark.
+     */
+    public BuildRefsWatermark(int buildId, long ts) {
+        this.buildId = buildId;
+        this.ts = ts;
+    }
+
+    /**
+     * @return Max build ID listed.
+     */
+    public int buildId() {
+        return buildId;
+    }
+
+    /**
+     * @return Timestamp of last sync without watermark.
+     */
+    public long timestamp() {
+        return ts;
+    }
+
+    /** {@inheritDoc} */
+    @Override public String toString() {
+        return "BuildRefsWatermark{buildId=" + buildId + ", ts=" + ts + '}';
+    }
+}
@@ -23,21 +23,21 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 import javax.inject.Inject;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
+import org.apache.ignite.ci.db.ServerAffinityFunction;
+import org.apache.ignite.ci.db.TcHelperDb;
 import org.apache.ignite.ci.di.AutoProfiling;
 import org.apache.ignite.ci.tcmodel.conf.bt.BuildTypeFull;
 import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
 import javax.validation.constraints.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import static org.apache.ignite.ci.teamcity.ignited.IgniteStringCompactor.getCache8PartsConfig;
-
 public class BuildTypeDao {
     /** Cache name*/
-    public static final String TEAMCITY_FAT_BUILD_TYPES_CACHE_NAME = "teamcityFatBuildType";
+    public static final String TEAMCITY_FAT_BUILD_TYPES_CACHE_NAME = "teamcityFatBuildTypeV2";
+
 
     /** Ignite. */
     @Inject private Ignite ignite;
@@ -45,11 +45,34 @@ public class BuildTypeDao {
     /** Compactor. */
     @Inject private IStringCompactor compactor;
 
+    /** BuildTypes cache. */
+    private IgniteCache<Long, BuildTypeCompacted> buildTypesCache;
+
+    /** Affinity of BuildTypes cache. */
+    private ServerAffinityFunction buildTypesAff;
+
+    /**
+     * @param ignite Ignite.
+     * @return Build types cache.
+     */
+    public static IgniteCache<Long, BuildTypeCompacted> getOrCreateCache(Ignite ignite) {
+        return TcHelperDb.getOrCreateServerCache(ignite,
+            TcHelperDb.getServerCacheConfig(TEAMCITY_FAT_BUILD_TYPES_CACHE_NAME, 8));
+    }
+
+    /**
+     *
+     */
+    public void init() {
+        buildTypesCache = getOrCreateCache(ignite);
+        buildTypesAff = ServerAffinityFunction.of(buildTypesCache);
+    }
+
     /**
      * BuildTypes cache.
      */
     private IgniteCache<Long, BuildTypeCompacted> buildTypesCache() {
-        return ignite.getOrCreateCache(getCache8PartsConfig(TEAMCITY_FAT_BUILD_TYPES_CACHE_NAME));
+        return Preconditions.checkNotNull(buildTypesCache, "init() was not called");
     }
 
     /**
@@ -182,19 +205,10 @@ public class BuildTypeDao {
      * @return All buildTypes for a server, full scan.
      */
     @NotNull protected Stream<BuildTypeCompacted> compactedFatBuildTypesStreamForServer(int srvIdMaskHigh) {
-        return StreamSupport.stream(buildTypesCache().spliterator(), false)
-            .filter(entry -> isKeyForServer(entry.getKey(), srvIdMaskHigh))
+        return buildTypesAff.entriesForServer(buildTypesCache(), srvIdMaskHigh)
             .map(javax.cache.Cache.Entry::getValue);
     }
 
-    /**
-     * @param key Key.
-     * @param srvIdMaskHigh Server id mask high.
-     */
-    private boolean isKeyForServer(Long key, int srvIdMaskHigh) {
-        return key!=null && key >> 32 == srvIdMaskHigh;
-    }
-
     /**
      * @param srvIdMaskHigh Server id mask high.
      * @param buildTypeId Build type id.
@@ -206,6 +220,9 @@ public class BuildTypeDao {
     }
 
     /**
+     * String ID is kept in lower 32 bits of key: {@link org.apache.ignite.ci.teamcity.ignited.StringsDictionaryGc}
+     * relies on this to mark it as live.
+     *
      * @param srvIdMaskHigh Server id mask high.
      * @param buildTypeStrId BuildType stringId.
      */
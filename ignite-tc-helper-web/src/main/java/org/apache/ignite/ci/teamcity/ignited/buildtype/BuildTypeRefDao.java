@@ -27,22 +27,23 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 import javax.cache.Cache;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
+import org.apache.ignite.ci.db.ServerAffinityFunction;
+import org.apache.ignite.ci.db.TcHelperDb;
 import org.apache.ignite.ci.tcmodel.conf.BuildType;
 import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
 import org.jetbrains.annotations.Nullable;
 
-import static org.apache.ignite.ci.teamcity.ignited.IgniteStringCompactor.getCache8PartsConfig;
 import static org.apache.ignite.ci.teamcity.ignited.buildtype.BuildTypeDao.buildTypeStringIdToCacheKey;
 
 public class BuildTypeRefDao {
     /** Cache name*/
-    public static final String TEAMCITY_BUILD_TYPES_CACHE_NAME = "teamcityBuildTypeRef";
+    public static final String TEAMCITY_BUILD_TYPES_CACHE_NAME = "teamcityBuildTypeRefV2";
+
 
     /** Ignite. */
     @Inject private Ignite ignite;
@@ -50,11 +51,34 @@ public class BuildTypeRefDao {
     /** Compactor. */
     @Inject private IStringCompactor compactor;
 
+    /** References to BuildTypes cache. */
+    private IgniteCache<Long, BuildTypeRefCompacted> buildTypesCache;
+
+    /** Affinity of references to BuildTypes cache. */
+    private ServerAffinityFunction buildTypesAff;
+
+    /**
+     * @param ignite Ignite.
+     * @return References to build types cache.
+     */
+    public static IgniteCache<Long, BuildTypeRefCompacted> getOrCreateCache(Ignite ignite) {
+        return TcHelperDb.getOrCreateServerCache(ignite,
+            TcHelperDb.getServerCacheConfig(TEAMCITY_BUILD_TYPES_CACHE_NAME, 8));
+    }
+
+    /**
+     *
+     */
+    public void init() {
+        buildTypesCache = getOrCreateCache(ignite);
+        buildTypesAff = ServerAffinityFunction.of(buildTypesCache);
+    }
+
     /**
      * References to BuildTypes cache.
      */
     private IgniteCache<Long, BuildTypeRefCompacted> buildTypesCache() {
-        return ignite.getOrCreateCache(getCache8PartsConfig(TEAMCITY_BUILD_TYPES_CACHE_NAME));
+        return Preconditions.checkNotNull(buildTypesCache, "init() was not called");
     }
 
     /**
@@ -130,8 +154,8 @@ public class BuildTypeRefDao {
 
         Set<String> rmvBuildTypes = new TreeSet<>();
 
-        Map<Long, BuildTypeRefCompacted> rmvEntries = StreamSupport.stream(buildTypesCache().spliterator(), false)
-            .filter(entry -> isKeyForServer(entry.getKey(), srvIdMaskHigh))
+        Map<Long, BuildTypeRefCompacted> rmvEntries = buildTypesAff
+            .entriesForServer(buildTypesCache(), srvIdMaskHigh)
             .filter(entry -> entry.getValue().projectId() == projectStrId)
             .filter(entry -> !ids.containsKey(entry.getKey()))
             .collect(Collectors.toMap(Cache.Entry::getKey, entry -> {
@@ -217,19 +241,10 @@ public class BuildTypeRefDao {
      * @return all buildTypes for a server, full scan.
      */
     @NotNull protected Stream<BuildTypeRefCompacted> compactedBuildTypeRefsStreamForServer(int srvIdMaskHigh) {
-        return StreamSupport.stream(buildTypesCache().spliterator(), false)
-            .filter(entry -> isKeyForServer(entry.getKey(), srvIdMaskHigh))
+        return buildTypesAff.entriesForServer(buildTypesCache(), srvIdMaskHigh)
             .map(javax.cache.Cache.Entry::getValue);
     }
 
-    /**
-     * @param key Key.
-     * @param srvIdMaskHigh Server id mask high.
-     */
-    private boolean isKeyForServer(Long key, int srvIdMaskHigh) {
-        return key!=null && key >> 32 == srvIdMaskHigh;
-    }
-
     /**
      * @param srvIdMaskHigh Server id mask high.
      * @param buildTypeId BuildType id.
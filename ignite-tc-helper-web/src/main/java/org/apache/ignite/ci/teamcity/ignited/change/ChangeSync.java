@@ -29,6 +29,8 @@ import org.xml.sax.SAXParseException;
 
 import javax.inject.Inject;
 import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.Map;
 
 public class ChangeSync {
     /** Logger. */
@@ -48,6 +50,21 @@ public class ChangeSync {
         return reloadChange(srvId, changeId, conn);
     }
 
+    /**
+     * @param srvId Server id.
+     * @param changeIds Change IDs.
+     * @return IDs of changes not saved or saved in outdated version, which should be loaded from TC.
+     */
+    public int[] changesToLoad(int srvId, int[] changeIds) {
+        Map<Long, ChangeCompacted> saved = changeDao.getAll(srvId, changeIds);
+
+        return Arrays.stream(changeIds).filter(changeId -> {
+            ChangeCompacted change = saved.get(changeDao.changeIdToCacheKey(srvId, changeId));
+
+            return change == null || change.isOutdatedEntityVersion();
+        }).toArray();
+    }
+
     @NotNull
     @AutoProfiling
     public ChangeCompacted reloadChange(int srvId, int changeId, ITeamcityConn conn) {
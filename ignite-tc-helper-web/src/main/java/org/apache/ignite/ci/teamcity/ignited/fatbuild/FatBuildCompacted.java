@@ -22,10 +22,15 @@ import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import org.apache.ignite.ci.analysis.IVersionedEntity;
 import org.apache.ignite.ci.db.Persisted;
@@ -44,6 +49,7 @@ import org.apache.ignite.ci.tcmodel.vcs.Revisions;
 import org.apache.ignite.ci.tcmodel.vcs.VcsRootInstance;
 import org.apache.ignite.ci.teamcity.ignited.BuildRefCompacted;
 import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
+import org.apache.ignite.ci.teamcity.ignited.WellKnownStringIds;
 import org.apache.ignite.ci.teamcity.ignited.change.RevisionCompacted;
 import org.apache.ignite.ci.teamcity.ignited.runhist.Invocation;
 import org.apache.ignite.ci.teamcity.ignited.runhist.InvocationData;
@@ -56,7 +62,10 @@ import org.jetbrains.annotations.Nullable;
 @Persisted
 public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEntity {
     /** Latest version. */
-    public static final short LATEST_VERSION = 6;
+    public static final short LATEST_VERSION = 7;
+
+    /** Version with build ID checked, tests are stored as list of objects. */
+    public static final short VER_TESTS_AS_OBJECTS = 6;
 
     /** Latest version. */
     public static final short VER_FULL_DATA_BUT_ID_CONFLICTS_POSSIBLE = 5;
@@ -79,8 +88,9 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
      * Entity fields version.
      * <ul>
      * <li>{@link #VER_FULL_DATA_BUT_ID_CONFLICTS_POSSIBLE} - fully supported field set, tests, problems. </li>
-     * <li>6 - done double check if build ID is consistent with a key. If this check passes, version is set to 6, if
-     * not-build is deleted.</li>
+     * <li>{@link #VER_TESTS_AS_OBJECTS} - done double check if build ID is consistent with a key. If this check passes,
+     * version is set to 6, if not-build is deleted.</li>
+     * <li>7 - tests are stored as columns. Builds of older versions are loaded from TC again.</li>
      * </ul>
      */
     private short _ver = LATEST_VERSION;
@@ -100,7 +110,35 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
     /** Suite Name for this builds. */
     private int name = -1;
 
-    @Nullable private List<TestCompacted> tests;
+    /** Tests columns: ID in build. Test with index {@code i} is stored at {@code i}-th position of all columns. */
+    @Nullable private int[] testIdsInBuild;
+
+    /** Tests columns: name string ID. */
+    @Nullable private int[] testNames;
+
+    /** Tests columns: status string ID. */
+    @Nullable private int[] testStatuses;
+
+    /** Tests columns: duration. */
+    @Nullable private int[] testDurations;
+
+    /** Tests columns: flags, see {@link TestCompacted#packedFlags()}. */
+    @Nullable private long[] testFlags;
+
+    /** Tests columns: test global ID. */
+    @Nullable private long[] testIds;
+
+    /** Tests columns: actual build ID. */
+    @Nullable private int[] testActualBuildIds;
+
+    /**
+     * Tests columns: details saved before details were moved to {@link TestDetailsDao}, null if there are no inline
+     * details for all tests.
+     */
+    @Nullable private byte[][] testDetails;
+
+    /** Tests with details added, but not yet saved to {@link TestDetailsDao}. Not persisted in fat build. */
+    @Nullable private transient List<TestCompacted> detachedDetails;
 
     @Nullable private int snapshotDeps[];
 
@@ -258,10 +296,10 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
         type.setProjectId(projectId(compactor));
         res.setBuildType(type);
 
-        if (tests != null) {
+        if (testNames != null) {
             TestOccurrencesRef testOccurrencesRef = new TestOccurrencesRef();
             testOccurrencesRef.href = "/app/rest/latest/testOccurrences?locator=build:(id:" + id() + ")";
-            testOccurrencesRef.count = tests.size();
+            testOccurrencesRef.count = getTestsCount();
             res.testOccurrences = testOccurrencesRef;
         }
 
@@ -329,18 +367,154 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
      * @param page Page.
      */
     public FatBuildCompacted addTests(IStringCompactor compactor, List<TestOccurrenceFull> page) {
+        Set<String> strings = new HashSet<>();
+
+        for (TestOccurrenceFull next : page) {
+            strings.add(next.name);
+            strings.add(next.status);
+        }
+
+        Map<String, Integer> strIds = compactor.getStringIds(strings);
+
+        List<TestCompacted> compacted = new ArrayList<>(page.size());
+
         for (TestOccurrenceFull next : page) {
-            TestCompacted compacted = new TestCompacted(compactor, next);
+            TestCompacted test = new TestCompacted(compactor, strIds, next);
 
-            if (tests == null)
-                tests = new ArrayList<>();
+            if (test.details() != null && test.testId() != 0) {
+                if (detachedDetails == null)
+                    detachedDetails = new ArrayList<>();
 
-            tests.add(compacted);
+                detachedDetails.add(test);
+
+                // Only a copy without details is kept in fat build.
+                test = test.withoutDetails();
+            }
+            else
+                test.compressDetailsInline();
+
+            compacted.add(test);
         }
 
+        appendTests(compacted);
+
         return this;
     }
 
+    /**
+     * Adds tests already saved for other version of this build. Details detached from {@code src} and not saved yet
+     * are moved to this build.
+     *
+     * @param src Build to copy tests from.
+     */
+    public FatBuildCompacted addTests(FatBuildCompacted src) {
+        if (src.detachedDetails != null) {
+            if (detachedDetails == null)
+                detachedDetails = new ArrayList<>();
+
+            detachedDetails.addAll(src.takeDetachedDetails());
+        }
+
+        if (src.getTestsCount() == 0)
+            return this;
+
+        if (getTestsCount() > 0) {
+            appendTests(src.getAllTests().collect(Collectors.toList()));
+
+            return this;
+        }
+
+        testIdsInBuild = src.testIdsInBuild.clone();
+        testNames = src.testNames.clone();
+        testStatuses = src.testStatuses.clone();
+        testDurations = src.testDurations.clone();
+        testFlags = src.testFlags.clone();
+        testIds = src.testIds.clone();
+        testActualBuildIds = src.testActualBuildIds.clone();
+        testDetails = src.testDetails == null ? null : src.testDetails.clone();
+
+        return this;
+    }
+
+    /**
+     * Build loaded from TC may be shared by concurrent callers, so details are taken by only one of them.
+     *
+     * @return Tests with details to be saved separately from this build, list is cleared.
+     */
+    public synchronized List<TestCompacted> takeDetachedDetails() {
+        List<TestCompacted> res = detachedDetails;
+
+        detachedDetails = null;
+
+        return res == null ? Collections.emptyList() : res;
+    }
+
+    /**
+     * Appends tests to the end of tests columns.
+     *
+     * @param page Tests to append.
+     */
+    private void appendTests(List<TestCompacted> page) {
+        if (page.isEmpty())
+            return;
+
+        int off = testNames == null ? 0 : testNames.length;
+        int len = off + page.size();
+
+        testIdsInBuild = grow(testIdsInBuild, len);
+        testNames = grow(testNames, len);
+        testStatuses = grow(testStatuses, len);
+        testDurations = grow(testDurations, len);
+        testFlags = grow(testFlags, len);
+        testIds = grow(testIds, len);
+        testActualBuildIds = grow(testActualBuildIds, len);
+
+        if (testDetails != null || page.stream().anyMatch(t -> t.details() != null))
+            testDetails = testDetails == null ? new byte[len][] : Arrays.copyOf(testDetails, len);
+
+        for (int i = 0; i < page.size(); i++) {
+            TestCompacted t = page.get(i);
+            int idx = off + i;
+
+            testIdsInBuild[idx] = t.idInBuild();
+            testNames[idx] = t.testName();
+            testStatuses[idx] = t.status();
+            testDurations[idx] = t.duration();
+            testFlags[idx] = t.packedFlags();
+            testIds[idx] = t.testId();
+            testActualBuildIds[idx] = t.actualBuildId();
+
+            if (testDetails != null)
+                testDetails[idx] = t.details();
+        }
+    }
+
+    /**
+     * @param arr Array or null.
+     * @param len New length.
+     */
+    private static int[] grow(@Nullable int[] arr, int len) {
+        return arr == null ? new int[len] : Arrays.copyOf(arr, len);
+    }
+
+    /**
+     * @param arr Array or null.
+     * @param len New length.
+     */
+    private static long[] grow(@Nullable long[] arr, int len) {
+        return arr == null ? new long[len] : Arrays.copyOf(arr, len);
+    }
+
+    /**
+     * Materializes test from columns.
+     *
+     * @param idx Index of test in columns.
+     */
+    private TestCompacted testAt(int idx) {
+        return new TestCompacted(testIdsInBuild[idx], testNames[idx], testStatuses[idx], testDurations[idx],
+            testFlags[idx], testIds[idx], testActualBuildIds[idx], testDetails == null ? null : testDetails[idx]);
+    }
+
     /**
      * @param off Offset.
      * @param val Value.
@@ -370,13 +544,12 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
      * @param compactor Compactor.
      */
     public TestOccurrencesFull getTestOcurrences(IStringCompactor compactor) {
-        if (tests == null)
+        if (getTestsCount() == 0)
             return new TestOccurrencesFull();
 
-        List<TestOccurrenceFull> res = new ArrayList<>();
-
-        for (TestCompacted compacted : tests)
-            res.add(compacted.toTestOccurrence(compactor, id()));
+        List<TestOccurrenceFull> res = getAllTests()
+            .map(compacted -> compacted.toTestOccurrence(compactor, id()))
+            .collect(Collectors.toList());
 
         TestOccurrencesFull testOccurrences = new TestOccurrencesFull();
 
@@ -410,7 +583,14 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
             queuedDate == that.queuedDate &&
             projectId == that.projectId &&
             name == that.name &&
-            Objects.equals(tests, that.tests) &&
+            Arrays.equals(testIdsInBuild, that.testIdsInBuild) &&
+            Arrays.equals(testNames, that.testNames) &&
+            Arrays.equals(testStatuses, that.testStatuses) &&
+            Arrays.equals(testDurations, that.testDurations) &&
+            Arrays.equals(testFlags, that.testFlags) &&
+            Arrays.equals(testIds, that.testIds) &&
+            Arrays.equals(testActualBuildIds, that.testActualBuildIds) &&
+            Arrays.deepEquals(testDetails, that.testDetails) &&
             Arrays.equals(snapshotDeps, that.snapshotDeps) &&
             Objects.equals(flags, that.flags) &&
             Objects.equals(problems, that.problems) &&
@@ -422,7 +602,10 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
 
     /** {@inheritDoc} */
     @Override public int hashCode() {
-        int res = Objects.hash(super.hashCode(), _ver, startDate, finishDate, queuedDate, projectId, name, tests, flags, problems, statistics, triggered);
+        int res = Objects.hash(super.hashCode(), _ver, startDate, finishDate, queuedDate, projectId, name, flags, problems, statistics, triggered);
+        res = 31 * res + Arrays.hashCode(testNames);
+        res = 31 * res + Arrays.hashCode(testStatuses);
+        res = 31 * res + Arrays.hashCode(testIds);
         res = 31 * res + Arrays.hashCode(snapshotDeps);
         res = 31 * res + Arrays.hashCode(changesIds);
         res = 31 * res + Arrays.hashCode(revisions);
@@ -460,11 +643,17 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
     }
 
     public Stream<TestCompacted> getFailedNotMutedTests(IStringCompactor compactor) {
-        if (tests == null)
+        if (testNames == null)
             return Stream.of();
 
-        return tests.stream()
-                .filter(t -> t.isFailedButNotMuted(compactor));
+        int success = compactor.wellKnownIds().testStatusSuccess();
+
+        // Only failed tests are materialized.
+        return IntStream.range(0, testNames.length)
+            .filter(i -> testStatuses[i] != success
+                && !TestCompacted.isPackedFlagSet(testFlags[i], TestCompacted.MUTED_F)
+                && !TestCompacted.isPackedFlagSet(testFlags[i], TestCompacted.IGNORED_F))
+            .mapToObj(this::testAt);
     }
 
     public Stream<String> getFailedNotMutedTestNames(IStringCompactor compactor) {
@@ -472,18 +661,60 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
     }
 
     public Stream<TestCompacted> getAllTests() {
-        if (tests == null)
+        if (testNames == null)
             return Stream.of();
 
-        return tests.stream();
+        return IntStream.range(0, testNames.length).mapToObj(this::testAt);
+    }
+
+    /**
+     * @param nameFilter Filter of test name string IDs, checked before test is materialized.
+     * @return Tests having names accepted by filter.
+     */
+    public Stream<TestCompacted> getTests(IntPredicate nameFilter) {
+        if (testNames == null)
+            return Stream.of();
+
+        return IntStream.range(0, testNames.length)
+            .filter(i -> nameFilter.test(testNames[i]))
+            .mapToObj(this::testAt);
+    }
+
+    /**
+     * Visits tests columns without materializing {@link TestCompacted} for each test.
+     *
+     * @param visitor Visitor to be called for each test of this build.
+     */
+    public void visitTests(TestVisitor visitor) {
+        if (testNames == null)
+            return;
+
+        for (int i = 0; i < testNames.length; i++)
+            visitor.visit(testNames[i], testStatuses[i], testDurations[i]);
+    }
+
+    /**
+     * Visitor of tests columns.
+     */
+    @FunctionalInterface
+    public interface TestVisitor {
+        /**
+         * @param name Test name string ID.
+         * @param status Test status string ID.
+         * @param duration Test duration in milliseconds, negative if duration is unknown.
+         */
+        public void visit(int name, int status, int duration);
     }
 
     public int getTestsCount() {
-        return tests != null ? tests.size() : 0;
+        return testNames != null ? testNames.length : 0;
     }
 
     public Stream<String> getAllTestNames(IStringCompactor compactor) {
-        return getAllTests().map(t -> t.testName(compactor));
+        if (testNames == null)
+            return Stream.of();
+
+        return Arrays.stream(testNames).mapToObj(compactor::getStringFromId);
     }
 
     public String buildTypeName(IStringCompactor compactor) {
@@ -564,7 +795,13 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
             .add("queuedDate", queuedDate)
             .add("projectId", projectId)
             .add("name", name)
-            .add("tests", tests)
+            .add("testIdsInBuild", testIdsInBuild)
+            .add("testNames", testNames)
+            .add("testStatuses", testStatuses)
+            .add("testDurations", testDurations)
+            .add("testFlags", testFlags)
+            .add("testIds", testIds)
+            .add("testActualBuildIds", testActualBuildIds)
             .add("snapshotDeps", snapshotDeps)
             .add("flags", flags)
             .add("problems", problems)
@@ -606,8 +843,10 @@ public class FatBuildCompacted extends BuildRefCompacted implements IVersionedEn
     }
 
     public FatBuildCompacted setCancelled(IStringCompactor compactor) {
-        status(compactor.getStringId(BuildRef.STATUS_UNKNOWN));
-        state(compactor.getStringId(BuildRef.STATE_FINISHED));
+        WellKnownStringIds ids = compactor.wellKnownIds();
+
+        status(ids.statusUnknown());
+        state(ids.stateFinished());
 
         return this;
     }
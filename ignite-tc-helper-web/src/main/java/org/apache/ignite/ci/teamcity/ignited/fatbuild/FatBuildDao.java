@@ -19,13 +19,14 @@ package org.apache.ignite.ci.teamcity.ignited.fatbuild;
 
 import com.google.common.base.Preconditions;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 import javax.annotation.Nullable;
 import javax.cache.Cache;
 import javax.inject.Inject;
@@ -33,6 +34,8 @@ import javax.inject.Provider;
 import javax.validation.constraints.NotNull;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.ignite.ci.db.ServerAffinityFunction;
 import org.apache.ignite.ci.db.TcHelperDb;
 import org.apache.ignite.ci.di.AutoProfiling;
 import org.apache.ignite.ci.tcmodel.changes.ChangesList;
@@ -41,6 +44,7 @@ import org.apache.ignite.ci.tcmodel.result.problems.ProblemOccurrence;
 import org.apache.ignite.ci.tcmodel.result.stat.Statistics;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrencesFull;
 import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
+import org.apache.ignite.ci.teamcity.ignited.buildref.BuildRefDao;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,7 +56,8 @@ public class FatBuildDao {
     private static final Logger logger = LoggerFactory.getLogger(FatBuildDao.class);
 
     /** Cache name */
-    public static final String TEAMCITY_FAT_BUILD_CACHE_NAME = "teamcityFatBuild";
+    public static final String TEAMCITY_FAT_BUILD_CACHE_NAME = "teamcityFatBuildV2";
+
 
     /** Ignite provider. */
     @Inject private Provider<Ignite> igniteProvider;
@@ -60,14 +65,36 @@ public class FatBuildDao {
     /** Builds cache. */
     private IgniteCache<Long, FatBuildCompacted> buildsCache;
 
+    /** Affinity of builds cache. */
+    private ServerAffinityFunction buildsAff;
+
+    /** Builds cache, values are not deserialized. */
+    private IgniteCache<Long, BinaryObject> binaryBuildsCache;
+
     /** Compactor. */
     @Inject private IStringCompactor compactor;
 
+    /** Failed tests details DAO. */
+    @Inject private TestDetailsDao testDetailsDao;
+
+    /**
+     * @param ignite Ignite.
+     * @return Fat builds cache.
+     */
+    public static IgniteCache<Long, FatBuildCompacted> getOrCreateCache(Ignite ignite) {
+        return TcHelperDb.getOrCreateServerCache(ignite,
+            TcHelperDb.getServerCacheConfig(TEAMCITY_FAT_BUILD_CACHE_NAME, 32));
+    }
+
     /**
      *
      */
     public FatBuildDao init() {
-        buildsCache = igniteProvider.get().getOrCreateCache(TcHelperDb.getCacheV2Config(TEAMCITY_FAT_BUILD_CACHE_NAME));
+        buildsCache = getOrCreateCache(igniteProvider.get());
+        buildsAff = ServerAffinityFunction.of(buildsCache);
+        binaryBuildsCache = buildsCache.withKeepBinary();
+
+        testDetailsDao.init();
 
         return this;
     }
@@ -92,10 +119,57 @@ public class FatBuildDao {
                                        @Nullable ChangesList changesList,
                                        @Nullable FatBuildCompacted existingBuild) {
         Preconditions.checkNotNull(buildsCache, "init() was not called");
+
+        FatBuildCompacted newBuild = compactBuild(build, tests, problems, statistics, changesList, existingBuild);
+
+        if (newBuild != null)
+            putFatBuild(srvIdMaskHigh, buildId, newBuild);
+
+        return newBuild;
+    }
+
+    /**
+     * @param build Build data.
+     * @param tests TestOccurrences one or several pages.
+     * @param problems
+     * @param statistics
+     * @param changesList
+     * @param existingBuild existing version of build in the DB.
+     * @return Fat Build to be saved (if modifications detected), otherwise null.
+     */
+    @Nullable public FatBuildCompacted compactBuild(@NotNull Build build,
+                                          @NotNull List<TestOccurrencesFull> tests,
+                                          @Nullable List<ProblemOccurrence> problems,
+                                          @Nullable Statistics statistics,
+                                          @Nullable ChangesList changesList,
+                                          @Nullable FatBuildCompacted existingBuild) {
+        return compactBuild(build, null, tests, problems, statistics, changesList, existingBuild);
+    }
+
+    /**
+     * @param build Build data.
+     * @param knownTests Build to take tests loaded before from, {@code tests} contain only newer occurrences.
+     * @param tests TestOccurrences one or several pages.
+     * @param problems
+     * @param statistics
+     * @param changesList
+     * @param existingBuild existing version of build in the DB.
+     * @return Fat Build to be saved (if modifications detected), otherwise null.
+     */
+    @Nullable public FatBuildCompacted compactBuild(@NotNull Build build,
+                                          @Nullable FatBuildCompacted knownTests,
+                                          @NotNull List<TestOccurrencesFull> tests,
+                                          @Nullable List<ProblemOccurrence> problems,
+                                          @Nullable Statistics statistics,
+                                          @Nullable ChangesList changesList,
+                                          @Nullable FatBuildCompacted existingBuild) {
         Preconditions.checkNotNull(build, "build can't be null");
 
         FatBuildCompacted newBuild = new FatBuildCompacted(compactor, build);
 
+        if (knownTests != null)
+            newBuild.addTests(knownTests);
+
         for (TestOccurrencesFull next : tests)
             newBuild.addTests(compactor, next.getTests());
 
@@ -108,20 +182,45 @@ public class FatBuildDao {
         if (changesList != null)
             newBuild.changes(extractChangeIds(changesList));
 
-        if (existingBuild == null || !existingBuild.equals(newBuild)) {
-            putFatBuild(srvIdMaskHigh, buildId, newBuild);
-
+        if (existingBuild == null || !existingBuild.equals(newBuild))
             return newBuild;
-        }
 
         return null;
     }
 
+    /**
+     * Saves build, details of its failed tests are saved separately.
+     *
+     * @param srvIdMaskHigh Server id mask high.
+     * @param buildId Build id.
+     * @param newBuild Build.
+     */
     @AutoProfiling
     public void putFatBuild(int srvIdMaskHigh, int buildId, FatBuildCompacted newBuild) {
+        testDetailsDao.saveDetails(srvIdMaskHigh, buildId, newBuild.takeDetachedDetails());
+
         buildsCache.put(buildIdToCacheKey(srvIdMaskHigh, buildId), newBuild);
     }
 
+    /**
+     * @param srvIdMaskHigh Server id mask high.
+     * @param builds Builds by ID.
+     */
+    @AutoProfiling
+    public void putFatBuilds(int srvIdMaskHigh, Map<Integer, FatBuildCompacted> builds) {
+        Preconditions.checkNotNull(buildsCache, "init() was not called");
+
+        Map<Long, FatBuildCompacted> entries = new TreeMap<>();
+
+        builds.forEach((buildId, build) -> {
+            testDetailsDao.saveDetails(srvIdMaskHigh, buildId, build.takeDetachedDetails());
+
+            entries.put(buildIdToCacheKey(srvIdMaskHigh, buildId), build);
+        });
+
+        buildsCache.putAll(entries);
+    }
+
     public static int[] extractChangeIds(@NotNull ChangesList changesList) {
         return changesList.changes().stream().mapToInt(
                         ch -> {
@@ -154,6 +253,22 @@ public class FatBuildDao {
         return buildsCache.get(buildIdToCacheKey(srvIdMaskHigh, buildId));
     }
 
+    /**
+     * Reads only fields required for chain traversal, tests and other fat build data is not deserialized.
+     *
+     * @param srvIdMaskHigh Server id mask high.
+     * @param buildId Build id.
+     * @return Projection or null if build is not saved.
+     */
+    @AutoProfiling
+    @Nullable public FatBuildProjection getFatBuildProjection(int srvIdMaskHigh, int buildId) {
+        Preconditions.checkNotNull(binaryBuildsCache, "init() was not called");
+
+        BinaryObject bo = binaryBuildsCache.get(buildIdToCacheKey(srvIdMaskHigh, buildId));
+
+        return bo == null ? null : new FatBuildProjection(bo);
+    }
+
     /**
      * @param srvIdMaskHigh Server id mask high.
      * @param buildsIds Builds ids.
@@ -169,6 +284,33 @@ public class FatBuildDao {
         return buildsCache.getAll(ids);
     }
 
+    /**
+     * Reads only start date, fat builds are not deserialized.
+     *
+     * @param srvIdMaskHigh Server id mask high.
+     * @param buildsIds Builds ids.
+     * @return Start timestamps of stored builds by build ID, builds not stored or not started are absent.
+     */
+    @AutoProfiling
+    public Map<Integer, Long> getStartTimes(int srvIdMaskHigh, Collection<Integer> buildsIds) {
+        Preconditions.checkNotNull(binaryBuildsCache, "init() was not called");
+
+        Set<Long> ids = buildsIds.stream()
+            .map(buildId -> buildIdToCacheKey(srvIdMaskHigh, buildId))
+            .collect(Collectors.toSet());
+
+        Map<Integer, Long> res = new HashMap<>();
+
+        binaryBuildsCache.getAll(ids).forEach((key, bo) -> {
+            Long startDate = bo.field("startDate");
+
+            if (startDate != null && startDate > 0)
+                res.put(BuildRefDao.cacheKeyToBuildId(key), startDate);
+        });
+
+        return res;
+    }
+
     /**
      * @param key Key.
      * @param srvId Server id.
@@ -181,9 +323,36 @@ public class FatBuildDao {
         return buildsCache.containsKey(buildIdToCacheKey(srvIdMaskHigh, buildId));
     }
 
+    /**
+     * @param srvIdMaskHigh Server id mask high.
+     * @param buildId Build ID, where test was run.
+     * @param testId Test ID.
+     * @return Details of test failure, details saved inline in fat build are not checked.
+     */
+    @Nullable public String getTestDetails(int srvIdMaskHigh, int buildId, long testId) {
+        return testDetailsDao.getDetails(srvIdMaskHigh, buildId, testId);
+    }
+
+    /**
+     * Reads only entity version, fat builds are not deserialized.
+     *
+     * @param srvId Server id.
+     * @return IDs of builds saved with outdated entity version.
+     */
+    public Stream<Integer> outdatedVersionBuildIds(int srvId) {
+        Preconditions.checkNotNull(binaryBuildsCache, "init() was not called");
+
+        return buildsAff.entriesForServer(binaryBuildsCache, srvId)
+            .filter(entry -> {
+                Short ver = entry.getValue().field("_ver");
+
+                return ver == null || ver < FatBuildCompacted.LATEST_VERSION;
+            })
+            .map(entry -> BuildRefDao.cacheKeyToBuildId(entry.getKey()));
+    }
+
     public Stream<Cache.Entry<Long, FatBuildCompacted>> outdatedVersionEntries(int srvId) {
-        return StreamSupport.stream(buildsCache.spliterator(), false)
-            .filter(entry -> entry.getValue().isOutdatedEntityVersion())
-            .filter(entry -> isKeyForServer(entry.getKey(), srvId));
+        return buildsAff.entriesForServer(buildsCache, srvId)
+            .filter(entry -> entry.getValue().isOutdatedEntityVersion());
     }
 }
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import com.google.common.base.MoreObjects;
+import java.util.Arrays;
+import java.util.BitSet;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.ignite.ci.teamcity.ignited.BuildRefCompacted;
+import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
+import org.apache.ignite.ci.teamcity.ignited.SyncMode;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Projection of {@link FatBuildCompacted} required to traverse build chains: reference fields, snapshot dependencies
+ * and flags. Can be read from binary form of fat build without deserialization of tests, problems, etc.
+ */
+public class FatBuildProjection extends BuildRefCompacted {
+    /** Snapshot dependencies. */
+    private final int[] snapshotDeps;
+
+    /** Fake stub flag. */
+    private final boolean fakeStub;
+
+    /** Composite flag. */
+    private final boolean composite;
+
+    /** Fat build was saved with outdated entity version. */
+    private final boolean outdated;
+
+    /** Fat build, if it was loaded to get this projection. */
+    @Nullable private final FatBuildCompacted loaded;
+
+    /**
+     * @param build Fat build.
+     */
+    public FatBuildProjection(FatBuildCompacted build) {
+        super(build);
+
+        snapshotDeps = build.snapshotDependencies();
+        fakeStub = build.isFakeStub();
+        composite = build.isComposite();
+        outdated = build.isOutdatedEntityVersion();
+        loaded = build;
+    }
+
+    /**
+     * @param bo Fat build in binary form.
+     */
+    FatBuildProjection(BinaryObject bo) {
+        super(intField(bo, "id"), intField(bo, "buildTypeId"), intField(bo, "branchName"),
+            intField(bo, "status"), intField(bo, "state"));
+
+        int[] deps = bo.field("snapshotDeps");
+        BitSet flags = bo.field("flags");
+        Short ver = bo.field("_ver");
+
+        snapshotDeps = deps == null ? FatBuildCompacted.EMPTY : deps;
+        fakeStub = id() < 0 || isSet(flags, FatBuildCompacted.FAKE_BUILD_F);
+        composite = isSet(flags, FatBuildCompacted.COMPOSITE_F);
+        outdated = ver == null || ver < FatBuildCompacted.LATEST_VERSION;
+        loaded = null;
+    }
+
+    /**
+     * @param bo Binary object.
+     * @param name Field name.
+     */
+    private static int intField(BinaryObject bo, String name) {
+        Integer val = bo.field(name);
+
+        return val == null ? -1 : val;
+    }
+
+    /**
+     * @param flags Flags.
+     * @param off Flag offset.
+     * @return {@code True} if flag is present and set.
+     */
+    private static boolean isSet(@Nullable BitSet flags, int off) {
+        return flags != null && flags.get(off) && flags.get(off + 1);
+    }
+
+    /**
+     * @return Fat build if it was loaded to get this projection (e.g. running build was synced with TeamCity), so it
+     * can be used without reading build from DB again.
+     */
+    @Nullable public FatBuildCompacted loadedBuild() {
+        return loaded;
+    }
+
+    /**
+     * @return Snapshot dependencies IDs.
+     */
+    public int[] snapshotDependencies() {
+        return snapshotDeps;
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean isFakeStub() {
+        return fakeStub;
+    }
+
+    /**
+     *
+     */
+    public boolean isComposite() {
+        return composite;
+    }
+
+    /**
+     * @return {@code True} if build should be reloaded because of entity version change.
+     */
+    public boolean isOutdatedEntityVersion() {
+        return outdated;
+    }
+
+    /**
+     * @param compactor Compactor.
+     * @param mode Sync mode.
+     * @return {@code True} if build may be used without sync with TeamCity, same as for fat build.
+     */
+    public boolean isActual(IStringCompactor compactor, SyncMode mode) {
+        if (outdated)
+            return false;
+
+        boolean finished = state(compactor) != null && !isRunning(compactor) && !isQueued(compactor);
+
+        return finished || mode != SyncMode.RELOAD_QUEUED;
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        if (!super.equals(o))
+            return false;
+        FatBuildProjection that = (FatBuildProjection)o;
+        return fakeStub == that.fakeStub &&
+            composite == that.composite &&
+            outdated == that.outdated &&
+            Arrays.equals(snapshotDeps, that.snapshotDeps);
+    }
+
+    /** {@inheritDoc} */
+    @Override public int hashCode() {
+        return 31 * super.hashCode() + Arrays.hashCode(snapshotDeps);
+    }
+
+    /** {@inheritDoc} */
+    @Override public String toString() {
+        return MoreObjects.toStringHelper(this)
+            .add("_", super.toString())
+            .add("snapshotDeps", snapshotDeps)
+            .add("fakeStub", fakeStub)
+            .add("composite", composite)
+            .add("outdated", outdated)
+            .toString();
+    }
+}
@@ -18,14 +18,20 @@ package org.apache.ignite.ci.teamcity.ignited.fatbuild;
 
 import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.RateLimiter;
 import java.util.stream.Stream;
 import org.apache.ignite.ci.di.AutoProfiling;
 import org.apache.ignite.ci.di.MonitoredTask;
 import org.apache.ignite.ci.di.scheduler.IScheduler;
+import org.apache.ignite.ci.tcbot.conf.ITcBotConfig;
+import org.apache.ignite.ci.tcbot.conf.ITcServerConfig;
 import org.apache.ignite.ci.tcmodel.changes.ChangesList;
 import org.apache.ignite.ci.tcmodel.result.Build;
 import org.apache.ignite.ci.tcmodel.result.problems.ProblemOccurrence;
 import org.apache.ignite.ci.tcmodel.result.stat.Statistics;
+import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrenceFull;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrencesFull;
 import org.apache.ignite.ci.teamcity.ignited.BuildRefCompacted;
 import org.apache.ignite.ci.teamcity.ignited.buildref.BuildRefDao;
@@ -46,16 +52,55 @@ import javax.annotation.concurrent.GuardedBy;
 import javax.inject.Inject;
 import java.io.FileNotFoundException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class ProactiveFatBuildSync {
     public static final int FAT_BUILD_PROACTIVE_TASKS = 5;
 
+    /** Default max count of builds loaded concurrently from one server. */
+    public static final int DFLT_FAT_BUILDS_IN_FLIGHT = 8;
+
+    /** Default max rate of requests to one server during builds loading, requests per second. */
+    public static final int DFLT_FAT_BUILD_REQUESTS_PER_SEC = 50;
+
+    /** Count of loaded builds saved by one batch. */
+    public static final int FAT_BUILDS_SAVE_BATCH = 32;
+
+    /** Threads loading builds for {@link #doLoadBuilds}, shared by all servers. */
+    public static final int BUILDS_LOAD_THREADS = 32;
+
+    /** Threads loading build sub-resources (problems, statistics, changes), shared by all servers. */
+    public static final int SUB_RESOURCES_THREADS = 16;
+
+    /** Time during which build loaded from TC is not requested again by builds sweep, millis. */
+    public static final long LOADED_BUILD_REUSE_MS = TimeUnit.MINUTES.toMillis(1);
+
+    /** Max count of recently loaded builds kept to be reused by builds sweep. */
+    public static final int RECENTLY_LOADED_BUILDS = 1000;
+
+    /** Count of test occurrences parsed from TC response, which are compacted at once. */
+    public static final int TESTS_COMPACT_CHUNK = 100;
+
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(ProactiveFatBuildSync.class);
 
+    /** Counter to name pools threads. */
+    private static final AtomicInteger THREAD_NUM = new AtomicInteger();
+
     /** Build reference DAO. */
     @Inject
     private BuildRefDao buildRefDao;
@@ -74,9 +119,72 @@ public class ProactiveFatBuildSync {
     /** Run history sync. */
     @Inject private RunHistSync runHistSync;
 
+    /** Config. */
+    @Inject private ITcBotConfig config;
+
+    /** Permits of concurrent build loading by server name. */
+    private final ConcurrentMap<String, Semaphore> inFlightPermits = new ConcurrentHashMap<>();
+
+    /** Requests rate limiters by server name. */
+    private final ConcurrentMap<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+    /**
+     * Pool to load builds. Tasks of this pool wait only for {@link #subResourcesPool} tasks and for builds loaded by
+     * other threads, and are never awaited by tasks of this pool, so pool can be bounded without deadlocks.
+     */
+    private final ExecutorService buildsLoadPool = newPool(BUILDS_LOAD_THREADS, "fat-build-batch-ld-");
+
+    /**
+     * Pool to load build sub-resources. Tasks of this pool never wait for other tasks, so pool can be bounded
+     * without deadlocks.
+     */
+    private final ExecutorService subResourcesPool = newPool(SUB_RESOURCES_THREADS, "fat-build-ld-");
+
+    /** Builds being loaded from TC by cache key. */
+    private final ConcurrentMap<Long, CompletableFuture<FatBuildCompacted>> buildsLoading = new ConcurrentHashMap<>();
+
+    /**
+     * Builds loaded from TC during last {@link #LOADED_BUILD_REUSE_MS} by cache key, empty value means build was not
+     * changed. Entry is added before build is removed from {@link #buildsLoading}, so there is no gap between them.
+     */
+    private final Cache<Long, Optional<FatBuildCompacted>> recentlyLoaded = CacheBuilder.newBuilder()
+        .expireAfterWrite(LOADED_BUILD_REUSE_MS, TimeUnit.MILLISECONDS)
+        .maximumSize(RECENTLY_LOADED_BUILDS)
+        .build();
+
     @GuardedBy("this")
     private Map<String, SyncTask> buildToLoad = new HashMap<>();
 
+    /**
+     * @param threads Threads count.
+     * @param namePrefix Threads name prefix.
+     */
+    private static ExecutorService newPool(int threads, String namePrefix) {
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, namePrefix + THREAD_NUM.incrementAndGet());
+
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    /**
+     * Stops builds loading pools.
+     */
+    public void stop() {
+        buildsLoadPool.shutdownNow();
+        subResourcesPool.shutdownNow();
+
+        try {
+            buildsLoadPool.awaitTermination(10, TimeUnit.SECONDS);
+            subResourcesPool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public void doLoadBuilds(int i, String srvNme, ITeamcityConn conn, Set<Integer> paginateUntil) {
         doLoadBuilds(i, srvNme, conn, paginateUntil, getSyncTask(conn).loadingBuilds);
     }
@@ -135,6 +243,16 @@ public class ProactiveFatBuildSync {
         List<Integer> buildsIdsToLoad = new ArrayList<>();
         AtomicInteger totalAskedToLoad = new AtomicInteger();
 
+        Consumer<Integer> toLoad = buildId -> {
+            buildsIdsToLoad.add(buildId);
+
+            if (buildsIdsToLoad.size() >= 100) {
+                totalAskedToLoad.addAndGet(buildsIdsToLoad.size());
+                scheduleBuildsLoad(conn, buildsIdsToLoad);
+                buildsIdsToLoad.clear();
+            }
+        };
+
         buildRefs.forEach(buildRef -> {
             Integer buildId = buildRef.getId();
             if (buildId == null)
@@ -143,15 +261,12 @@ public class ProactiveFatBuildSync {
             if (buildRef.isRunning(compactor)
                 || buildRef.isQueued(compactor)
                 || !fatBuildDao.containsKey(srvIdMaskHigh, buildId))
-                buildsIdsToLoad.add(buildId);
-
-            if (buildsIdsToLoad.size() >= 100) {
-                totalAskedToLoad.addAndGet(buildsIdsToLoad.size());
-                scheduleBuildsLoad(conn, buildsIdsToLoad);
-                buildsIdsToLoad.clear();
-            }
+                toLoad.accept(buildId);
         });
 
+        // builds saved by previous versions are loaded again
+        fatBuildDao.outdatedVersionBuildIds(srvIdMaskHigh).forEach(toLoad);
+
         if (!buildsIdsToLoad.isEmpty()) {
             totalAskedToLoad.addAndGet(buildsIdsToLoad.size());
             scheduleBuildsLoad(conn, buildsIdsToLoad);
@@ -194,6 +309,11 @@ public class ProactiveFatBuildSync {
         doLoadBuilds(ldrNo, srvId, conn, load,  loadingBuilds);
     }
 
+    /**
+     * Loads builds concurrently, up to {@link ITcServerConfig#fatBuildsInFlight()} builds of server are loaded at a
+     * time by all loaders and on-demand loads. Permit is taken before task is submitted, so tasks waiting for permits
+     * of one server don't occupy {@link #buildsLoadPool} threads. Builds loaded are saved by batches.
+     */
     @SuppressWarnings({"WeakerAccess", "UnusedReturnValue"})
     @MonitoredTask(name = "Proactive Builds Loading (srv,agent)", nameExtArgsIndexes = {1, 0})
     @AutoProfiling
@@ -209,28 +329,159 @@ public class ProactiveFatBuildSync {
 
         Map<Long, FatBuildCompacted> builds = fatBuildDao.getAllFatBuilds(srvIdMaskHigh, load);
 
-        load.forEach(
-                buildId -> {
-                    try {
-                        FatBuildCompacted existingBuild = builds.get(FatBuildDao.buildIdToCacheKey(srvIdMaskHigh, buildId));
+        Semaphore inFlight = inFlightPermits(srvId);
 
-                        FatBuildCompacted savedVer = loadBuild(conn, buildId, existingBuild, SyncMode.RELOAD_QUEUED);
+        SaveBatch batch = new SaveBatch(conn, loadingBuilds);
+        List<Future<?>> futs = new ArrayList<>();
 
-                        if (savedVer != null)
-                            ld.incrementAndGet();
+        try {
+            for (Integer buildId : load) {
+                inFlight.acquire();
+
+                try {
+                    futs.add(buildsLoadPool.submit(() -> {
+                        try {
+                            FatBuildCompacted existingBuild =
+                                builds.get(FatBuildDao.buildIdToCacheKey(srvIdMaskHigh, buildId));
+
+                            FatBuildCompacted savedVer = fetchBuild(conn, buildId, existingBuild,
+                                SyncMode.RELOAD_QUEUED, true, true);
+
+                            if (savedVer != null) {
+                                ld.incrementAndGet();
+
+                                batch.add(buildId, savedVer);
+                            }
+                            else
+                                loadingBuilds.remove(buildId);
+                        }
+                        catch (Exception e) {
+                            logger.error("", e);
+                            err.incrementAndGet();
+                        }
+                        finally {
+                            inFlight.release();
+                        }
+                    }));
+                }
+                catch (RuntimeException e) {
+                    inFlight.release();
 
-                        loadingBuilds.remove(buildId);
-                    }
-                    catch (Exception e) {
-                        logger.error("", e);
-                        err.incrementAndGet();
-                    }
+                    throw e;
                 }
-        );
+            }
+
+            for (Future<?> fut : futs)
+                fut.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw ExceptionUtil.propagateException(e);
+        }
+        catch (ExecutionException e) {
+            throw ExceptionUtil.propagateException(e);
+        }
+        finally {
+            batch.flush();
+        }
 
         return "Builds updated " + ld.get() + " from " + load.size() + " requested, errors: " + err;
     }
 
+    /**
+     * Builds loaded, but not saved yet.
+     */
+    private class SaveBatch {
+        /** Connection. */
+        private final ITeamcityConn conn;
+
+        /** Builds being loaded. */
+        private final GridConcurrentHashSet<Integer> loadingBuilds;
+
+        /** Builds to save. */
+        @GuardedBy("this")
+        private Map<Integer, FatBuildCompacted> builds = new HashMap<>();
+
+        /**
+         * @param conn Connection.
+         * @param loadingBuilds Builds being loaded.
+         */
+        SaveBatch(ITeamcityConn conn, GridConcurrentHashSet<Integer> loadingBuilds) {
+            this.conn = conn;
+            this.loadingBuilds = loadingBuilds;
+        }
+
+        /**
+         * @param buildId Build id.
+         * @param build Build to save.
+         */
+        synchronized void add(int buildId, FatBuildCompacted build) {
+            builds.put(buildId, build);
+
+            if (builds.size() >= FAT_BUILDS_SAVE_BATCH)
+                flush();
+        }
+
+        /**
+         * Saves builds added.
+         */
+        synchronized void flush() {
+            if (builds.isEmpty())
+                return;
+
+            fatBuildDao.putFatBuilds(ITeamcityIgnited.serverIdToInt(conn.serverId()), builds);
+
+            builds.forEach((buildId, build) -> {
+                onBuildSaved(conn, buildId, build);
+
+                loadingBuilds.remove(buildId);
+            });
+
+            builds = new HashMap<>();
+        }
+    }
+
+    /**
+     * Submits loading of build sub-resource (problems, statistics, changes) to {@link #subResourcesPool}. Rate limit
+     * is applied by calling thread, so requests to throttled server don't hold pool threads shared by all servers.
+     *
+     * @param subResources Futures of sub-resources loading.
+     * @param limiter Requests rate limiter.
+     * @param req Request.
+     */
+    private <T> Future<T> submitSubResource(List<Future<?>> subResources, RateLimiter limiter, Callable<T> req) {
+        limiter.acquire();
+
+        Future<T> fut = subResourcesPool.submit(req);
+
+        subResources.add(fut);
+
+        return fut;
+    }
+
+    /**
+     * @param srvName Server name.
+     * @return Permits of concurrent builds loading from server.
+     */
+    private Semaphore inFlightPermits(String srvName) {
+        return inFlightPermits.computeIfAbsent(srvName,
+            k -> new Semaphore(configured(srvName, ITcServerConfig::fatBuildsInFlight, DFLT_FAT_BUILDS_IN_FLIGHT)));
+    }
+
+    /**
+     * @param srvName Server name.
+     * @param param Parameter of server config.
+     * @param dflt Default value.
+     * @return Configured value if it is positive, default value otherwise.
+     */
+    private int configured(String srvName, Function<ITcServerConfig, Integer> param, int dflt) {
+        ITcServerConfig tcCfg = config.getTeamcityConfig(srvName);
+        Integer val = tcCfg == null ? null : param.apply(tcCfg);
+
+        return val != null && val > 0 ? val : dflt;
+    }
+
     @NotNull
     private String taskName(String taskName, String srvName) {
         return ProactiveFatBuildSync.class.getSimpleName() +"." + taskName + "." + srvName;
@@ -262,6 +513,9 @@ public class ProactiveFatBuildSync {
         AtomicInteger cnt = new AtomicInteger();
         AtomicInteger divergedIds = new AtomicInteger();
         fatBuildDao.outdatedVersionEntries(srvId).forEach(entry -> {
+            if (entry.getValue().version() != FatBuildCompacted.VER_FULL_DATA_BUT_ID_CONFLICTS_POSSIBLE)
+                return;
+
             cnt.incrementAndGet();
             int buildId = BuildRefDao.cacheKeyToBuildId(entry.getKey());
             FatBuildCompacted transformed = transformV5Build(
@@ -289,6 +543,33 @@ public class ProactiveFatBuildSync {
     public FatBuildCompacted loadBuild(ITeamcityConn conn, int buildId,
         @Nullable FatBuildCompacted existingBuild,
         SyncMode mode) {
+        FatBuildCompacted savedVer = fetchBuild(conn, buildId, existingBuild, mode, false, false);
+
+        if (savedVer == null)
+            return null;
+
+        fatBuildDao.putFatBuild(ITeamcityIgnited.serverIdToInt(conn.serverId()), buildId, savedVer);
+
+        onBuildSaved(conn, buildId, savedVer);
+
+        return savedVer;
+    }
+
+    /**
+     * @param conn TC connection to load data
+     * @param buildId build ID (TC identification).
+     * @param existingBuild build from DB.
+     * @param mode Sync mode.
+     * @param reuseLoaded Reuse build loaded recently, see {@link #fetchChangedBuild}.
+     * @param permitHeld Caller holds permit of {@link #inFlightPermits(String)}, see {@link #fetchChangedBuild}.
+     * @return null if nothing should be saved, use existing build. Non null value is new build to be saved.
+     */
+    @Nullable
+    private FatBuildCompacted fetchBuild(ITeamcityConn conn, int buildId,
+        @Nullable FatBuildCompacted existingBuild,
+        SyncMode mode,
+        boolean reuseLoaded,
+        boolean permitHeld) {
         if (existingBuild != null && !existingBuild.isOutdatedEntityVersion()) {
             boolean finished =
                 existingBuild.state(compactor) != null // don't count old fake builds as finished
@@ -299,11 +580,17 @@ public class ProactiveFatBuildSync {
                 return null;
         }
 
-        FatBuildCompacted savedVer = reloadBuild(conn, buildId, existingBuild);
-
-        if (savedVer == null)
-            return null;
+        return fetchChangedBuild(conn, buildId, existingBuild, reuseLoaded, permitHeld);
+    }
 
+    /**
+     * Updates build reference and run history for build saved.
+     *
+     * @param conn TC connection.
+     * @param buildId build ID (TC identification).
+     * @param savedVer Build saved.
+     */
+    private void onBuildSaved(ITeamcityConn conn, int buildId, FatBuildCompacted savedVer) {
         BuildRefCompacted refCompacted = new BuildRefCompacted(savedVer);
         if (savedVer.isFakeStub())
             refCompacted.setId(buildId); //to provide possiblity to save the build
@@ -312,10 +599,9 @@ public class ProactiveFatBuildSync {
         final int srvIdMask = ITeamcityIgnited.serverIdToInt(srvName);
 
         buildRefDao.save(srvIdMask, refCompacted);
+        buildRefDao.saveStartTime(srvIdMask, refCompacted.id(), savedVer.getStartDateTs());
 
         runHistSync.saveToHistoryLater(srvName, savedVer);
-
-        return savedVer;
     }
 
     /**
@@ -328,22 +614,116 @@ public class ProactiveFatBuildSync {
     @SuppressWarnings({"WeakerAccess"})
     @AutoProfiling
     @Nullable public FatBuildCompacted reloadBuild(ITeamcityConn conn, int buildId, @Nullable FatBuildCompacted existingBuild) {
-        //todo some sort of locking to avoid double requests
+        FatBuildCompacted newBuild = fetchChangedBuild(conn, buildId, existingBuild, false, false);
 
-        final String srvName = conn.serverId();
-        final int srvIdMask = ITeamcityIgnited.serverIdToInt(srvName);
+        if (newBuild != null)
+            fatBuildDao.putFatBuild(ITeamcityIgnited.serverIdToInt(conn.serverId()), buildId, newBuild);
+
+        return newBuild;
+    }
 
-        if (existingBuild != null && existingBuild.isOutdatedEntityVersion()) {
-            if (existingBuild.version() == FatBuildCompacted.VER_FULL_DATA_BUT_ID_CONFLICTS_POSSIBLE)
-                return transformV5Build(srvIdMask, buildId, existingBuild);
+    /**
+     * Loads build from TC. If build is already being loaded by another thread, result of that loading is awaited and
+     * returned, so concurrent callers don't request same build twice. Returned build may be shared between callers
+     * and should be considered immutable. Up to {@link ITcServerConfig#fatBuildsInFlight()} builds of server are
+     * requested from TC at a time.
+     *
+     * @param conn TC connection to load data
+     * @param buildId build ID (TC identification).
+     * @param existingBuild build from DB.
+     * @param reuseLoaded If build was loaded during last {@link #LOADED_BUILD_REUSE_MS}, return that build instead of
+     * requesting it again.
+     * @param permitHeld Caller already holds permit of {@link #inFlightPermits(String)}, so it is not taken again.
+     * @return new build to be saved if it was updated or null if no updates detected
+     */
+    @Nullable private FatBuildCompacted fetchChangedBuild(ITeamcityConn conn, int buildId,
+        @Nullable FatBuildCompacted existingBuild, boolean reuseLoaded, boolean permitHeld) {
+        long key = FatBuildDao.buildIdToCacheKey(ITeamcityIgnited.serverIdToInt(conn.serverId()), buildId);
+
+        if (reuseLoaded) {
+            Optional<FatBuildCompacted> loaded = recentlyLoaded.getIfPresent(key);
+
+            if (loaded != null)
+                return loaded.orElse(null);
+        }
+
+        CompletableFuture<FatBuildCompacted> fut = new CompletableFuture<>();
+        CompletableFuture<FatBuildCompacted> loading = buildsLoading.putIfAbsent(key, fut);
+
+        if (loading != null) {
+            try {
+                return loading.join();
+            }
+            catch (CompletionException e) {
+                Throwables.throwIfUnchecked(e.getCause());
+
+                throw e;
+            }
         }
 
+        Semaphore inFlight = permitHeld ? null : inFlightPermits(conn.serverId());
+
+        try {
+            if (inFlight != null)
+                inFlight.acquire();
+
+            FatBuildCompacted newBuild;
+
+            try {
+                newBuild = doFetchChangedBuild(conn, buildId, existingBuild);
+            }
+            finally {
+                if (inFlight != null)
+                    inFlight.release();
+            }
+
+            recentlyLoaded.put(key, Optional.ofNullable(newBuild));
+
+            fut.complete(newBuild);
+
+            return newBuild;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            fut.completeExceptionally(e);
+
+            throw ExceptionUtil.propagateException(e);
+        }
+        catch (RuntimeException | Error e) {
+            fut.completeExceptionally(e);
+
+            throw e;
+        }
+        finally {
+            buildsLoading.remove(key, fut);
+        }
+    }
+
+    /**
+     * Loads build from TC, requests are limited by {@link ITcServerConfig#fatBuildRequestsPerSecond()}.
+     *
+     * @param conn TC connection to load data
+     * @param buildId build ID (TC identification).
+     * @param existingBuild build from DB.
+     * @return new build to be saved if it was updated or null if no updates detected
+     */
+    @Nullable private FatBuildCompacted doFetchChangedBuild(ITeamcityConn conn, int buildId,
+        @Nullable FatBuildCompacted existingBuild) {
+        final String srvName = conn.serverId();
+        final int srvIdMask = ITeamcityIgnited.serverIdToInt(srvName);
+
         Build build;
-        List<TestOccurrencesFull> tests = new ArrayList<>();
+        FatBuildCompacted knownTests = null;
+        List<TestOccurrencesFull> tests = Collections.emptyList();
         List<ProblemOccurrence> problems = null;
         Statistics statistics = null;
         ChangesList changesList = null;
         try {
+            RateLimiter limiter = rateLimiters.computeIfAbsent(srvName, k -> RateLimiter.create(
+                configured(srvName, ITcServerConfig::fatBuildRequestsPerSecond, DFLT_FAT_BUILD_REQUESTS_PER_SEC)));
+
+            limiter.acquire();
             build = conn.getBuild(buildId);
 
             if (build.isFakeStub())
@@ -354,35 +734,66 @@ public class ProactiveFatBuildSync {
                         "Build IDs are not consistent: returned " + build.getId() + " queued is " + buildId);
             }
 
-            if (build.testOccurrences != null && !build.isComposite()) { // don't query tests for compoite
-                String nextHref = null;
-                do {
-                    TestOccurrencesFull page = conn.getTestsPage(buildId, nextHref, true);
-                    nextHref = page.nextHref();
+            // Tests pages are linked by next page reference, so pages are loaded by this thread while other
+            // resources are loaded concurrently.
+            List<Future<?>> subResources = new ArrayList<>();
+
+            try {
+                Future<List<ProblemOccurrence>> problemsFut = build.problemOccurrences == null ? null :
+                    submitSubResource(subResources, limiter, () -> conn.getProblems(buildId).getProblemsNonNull());
+
+                Future<Statistics> statisticsFut = build.statisticsRef == null ? null :
+                    submitSubResource(subResources, limiter, () -> conn.getStatistics(buildId));
+
+                Future<ChangesList> changesFut = build.changesRef == null ? null :
+                    submitSubResource(subResources, limiter, () -> conn.getChangesList(buildId));
+
+                if (build.testOccurrences != null && !build.isComposite()) { // don't query tests for compoite
+                    // Only tests reported after previous refresh are requested while build is running.
+                    int knownCnt = knownTestsCount(existingBuild, build);
 
-                    tests.add(page);
+                    if (knownCnt > 0)
+                        knownTests = existingBuild;
+
+                    Integer cnt = build.testOccurrences.count;
+
+                    if (knownCnt == 0 || cnt == null || cnt > knownCnt)
+                        knownTests = loadTests(conn, buildId, knownTests, knownCnt, limiter);
                 }
-                while (!Strings.isNullOrEmpty(nextHref));
-            }
 
-            if (build.problemOccurrences != null)
-                problems = conn.getProblems(buildId).getProblemsNonNull();
+                if (changesFut != null) {
+                    changesList = changesFut.get();
 
-            if (build.statisticsRef != null)
-                statistics = conn.getStatistics(buildId);
+                    List<Future<?>> changes = new ArrayList<>();
 
-            if (build.changesRef != null) {
-                changesList = conn.getChangesList(buildId);
+                    // changes saved before are not requested from TC
+                    int[] changesToLoad = changeSync.changesToLoad(srvIdMask, FatBuildDao.extractChangeIds(changesList));
 
-                for (int changeId : FatBuildDao.extractChangeIds(changesList)) {
-                    // consult change sync for provided changes data
+                    for (int changeId : changesToLoad) {
+                        changes.add(submitSubResource(subResources, limiter,
+                            () -> changeSync.reloadChange(srvIdMask, changeId, conn)));
+                    }
 
-                    changeSync.change(srvIdMask, changeId, conn);
+                    for (Future<?> change : changes)
+                        change.get();
                 }
+
+                if (problemsFut != null)
+                    problems = problemsFut.get();
+
+                if (statisticsFut != null)
+                    statistics = statisticsFut.get();
+            }
+            catch (Exception e) {
+                subResources.forEach(fut -> fut.cancel(true));
+
+                throw e;
             }
         }
         catch (Exception e) {
             if (Throwables.getRootCause(e) instanceof FileNotFoundException) {
+                knownTests = null;
+
                 logger.info("Loading build [" + buildId + "] for server [" + srvName + "] failed:" + e.getMessage(), e);
 
                 if (existingBuild != null) {
@@ -418,13 +829,73 @@ public class ProactiveFatBuildSync {
 
         //if we are here because of some sort of outdated version of build,
         // new save will be performed with new entity version for compacted build
-        return fatBuildDao.saveBuild(srvIdMask, buildId, build, tests, problems, statistics, changesList, existingBuild);
+        return fatBuildDao.compactBuild(build, knownTests, tests, problems, statistics, changesList, existingBuild);
+    }
+
+    /**
+     * Loads test occurrences page by page. Occurrences are compacted by small chunks while response is being parsed, so
+     * parsed objects of the whole page are never kept in memory.
+     *
+     * @param conn TC connection.
+     * @param buildId Build ID.
+     * @param knownTests Build having tests loaded before, or null if all tests are loaded.
+     * @param knownCnt Count of test occurrences in {@code knownTests}.
+     * @param limiter Requests rate limiter.
+     * @return Stub build containing known and loaded tests.
+     */
+    private FatBuildCompacted loadTests(ITeamcityConn conn, int buildId, @Nullable FatBuildCompacted knownTests,
+        int knownCnt, RateLimiter limiter) {
+        FatBuildCompacted loaded = new FatBuildCompacted();
+
+        if (knownTests != null)
+            loaded.addTests(knownTests);
+
+        List<TestOccurrenceFull> chunk = new ArrayList<>(TESTS_COMPACT_CHUNK);
+
+        Consumer<TestOccurrenceFull> consumer = occurrence -> {
+            chunk.add(occurrence);
+
+            if (chunk.size() >= TESTS_COMPACT_CHUNK) {
+                loaded.addTests(compactor, chunk);
+
+                chunk.clear();
+            }
+        };
+
+        limiter.acquire();
+        String nextHref = conn.streamTestsPage(buildId, null, knownCnt, true, consumer);
+
+        while (!Strings.isNullOrEmpty(nextHref)) {
+            limiter.acquire();
+            nextHref = conn.streamTestsPage(buildId, nextHref, 0, true, consumer);
+        }
+
+        if (!chunk.isEmpty())
+            loaded.addTests(compactor, chunk);
+
+        return loaded;
+    }
+
+    /**
+     * @param existingBuild Build from DB.
+     * @param build Build loaded from TC.
+     * @return Count of test occurrences, which are saved for running build and are not requested again. Zero if all
+     * tests should be loaded, e.g. when build is finished.
+     */
+    private int knownTestsCount(@Nullable FatBuildCompacted existingBuild, Build build) {
+        if (existingBuild == null || existingBuild.isOutdatedEntityVersion() || existingBuild.isComposite())
+            return 0;
+
+        if (!existingBuild.isRunning(compactor) || !build.isRunning())
+            return 0;
+
+        return existingBuild.getTestsCount();
     }
 
     @Nullable
     public FatBuildCompacted transformV5Build(int srvIdMask, int buildId, @NotNull FatBuildCompacted existingBuild) {
         if (Objects.equals(buildId, existingBuild.id())) {
-            existingBuild.setVersion(FatBuildCompacted.LATEST_VERSION);
+            existingBuild.setVersion(FatBuildCompacted.VER_TESTS_AS_OBJECTS);
 
             fatBuildDao.putFatBuild(srvIdMask, buildId, existingBuild);
 
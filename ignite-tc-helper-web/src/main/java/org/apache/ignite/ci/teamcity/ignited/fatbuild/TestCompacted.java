@@ -23,11 +23,12 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Objects;
 import org.apache.ignite.ci.analysis.RunStat;
 import org.apache.ignite.ci.tcbot.common.StringFieldCompacted;
 import org.apache.ignite.ci.tcmodel.hist.BuildRef;
-import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrence;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrenceFull;
 import org.apache.ignite.ci.tcmodel.result.tests.TestRef;
 import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
@@ -80,11 +81,45 @@ public class TestCompacted {
     public TestCompacted() {
     }
 
+    /**
+     * Creates test from tests columns of {@link FatBuildCompacted}.
+     *
+     * @param idInBuild Id in build.
+     * @param name Name.
+     * @param status Status.
+     * @param duration Duration.
+     * @param flags Flags packed by {@link #packedFlags()}.
+     * @param testId Test id.
+     * @param actualBuildId Actual build id.
+     * @param details Details.
+     */
+    TestCompacted(int idInBuild, int name, int status, int duration, long flags, long testId, int actualBuildId,
+        @Nullable byte[] details) {
+        this.idInBuild = idInBuild;
+        this.name = name;
+        this.status = status;
+        this.duration = duration;
+        this.flags = BitSet.valueOf(new long[] {flags});
+        this.testId = testId;
+        this.actualBuildId = actualBuildId;
+        this.details = details;
+    }
+
     /**
      * @param compactor Compactor.
      * @param testOccurrence TestOccurrence.
      */
     public TestCompacted(IStringCompactor compactor, TestOccurrenceFull testOccurrence) {
+        this(compactor, Collections.emptyMap(), testOccurrence);
+    }
+
+    /**
+     * @param compactor Compactor.
+     * @param strIds Identifiers of strings resolved in advance, see {@link IStringCompactor#getStringIds}.
+     * @param testOccurrence TestOccurrence.
+     */
+    public TestCompacted(IStringCompactor compactor, Map<String, Integer> strIds,
+        TestOccurrenceFull testOccurrence) {
         String testOccurrenceId = testOccurrence.getId();
         if (!Strings.isNullOrEmpty(testOccurrenceId)) {
             try {
@@ -96,8 +131,8 @@ public class TestCompacted {
             }
         }
 
-        name = compactor.getStringId(testOccurrence.name);
-        status = compactor.getStringId(testOccurrence.status);
+        name = stringId(compactor, strIds, testOccurrence.name);
+        status = stringId(compactor, strIds, testOccurrence.status);
         duration = testOccurrence.duration == null ? -1 : testOccurrence.duration;
 
         setFlag(MUTED_F, testOccurrence.muted);
@@ -114,6 +149,17 @@ public class TestCompacted {
         setDetails(testOccurrence.details);
     }
 
+    /**
+     * @param compactor Compactor.
+     * @param strIds Identifiers of strings resolved in advance.
+     * @param val Value.
+     */
+    private static int stringId(IStringCompactor compactor, Map<String, Integer> strIds, String val) {
+        Integer id = strIds.get(val);
+
+        return id != null ? id : compactor.getStringId(val);
+    }
+
     private void setFlag(int off, Boolean val) {
         flags.clear(off, off + 2);
 
@@ -135,6 +181,28 @@ public class TestCompacted {
         return flags.get(off + 1);
     }
 
+    /**
+     * @return Flags packed into long, all flags offsets are less than 64.
+     */
+    long packedFlags() {
+        long[] words = flags.toLongArray();
+
+        return words.length == 0 ? 0 : words[0];
+    }
+
+    /**
+     * @param flags Flags packed by {@link #packedFlags()}.
+     * @param off Offset.
+     * @return {@code True} if flag is present and set.
+     */
+    static boolean isPackedFlagSet(long flags, int off) {
+        return (flags & (1L << off)) != 0 && (flags & (1L << (off + 1))) != 0;
+    }
+
+    /**
+     * @param compactor Compactor.
+     * @param buildId Build containing test, used as test build if actual build ID is not saved.
+     */
     public TestOccurrenceFull toTestOccurrence(IStringCompactor compactor, int buildId) {
         TestOccurrenceFull occurrence = new TestOccurrenceFull();
 
@@ -153,10 +221,12 @@ public class TestCompacted {
         occurrence.currentlyInvestigated = getCurrInvestigatedFlag();
         occurrence.ignored = getIgnoredFlag();
 
-        if (actualBuildId > 0) {
+        int testBuildId = actualBuildId > 0 ? actualBuildId : buildId;
+
+        if (testBuildId > 0) {
             BuildRef buildRef = new BuildRef();
 
-            buildRef.setId(actualBuildId);
+            buildRef.setId(testBuildId);
 
             occurrence.build = buildRef;
         }
@@ -209,60 +279,58 @@ public class TestCompacted {
             return null;
     }
 
+    /**
+     * Sets details uncompressed: details are compressed on save by {@link TestDetailsDao} using shared dictionary.
+     *
+     * @param dtlsStr Details.
+     */
     public void setDetails(String dtlsStr) {
         if (Strings.isNullOrEmpty(dtlsStr)) {
             this.details = null;
             return;
         }
 
+        flags.set(COMPRESS_TYPE_FLAG1, true);
+        flags.set(COMPRESS_TYPE_FLAG2, false);
 
-        byte[] uncompressed;
-        byte[] snappy = null;
-        byte[] gzip = null;
-        try {
-            uncompressed = dtlsStr.getBytes(StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            logger.error("Set details failed: " + e.getMessage(), e);
+        details = dtlsStr.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compresses details kept inline in fat build with GZIP, used for tests without ID: these details can't be saved to
+     * {@link TestDetailsDao}, so shared dictionary is not applied to them.
+     */
+    void compressDetailsInline() {
+        if (details == null || !flags.get(COMPRESS_TYPE_FLAG1) || flags.get(COMPRESS_TYPE_FLAG2))
             return;
-        }
-        try {
-            snappy = Snappy.compress(uncompressed);
-        }
-        catch (Exception e) {
-            logger.error("Snappy.compress failed: " + e.getMessage(), e);
-        }
 
         try {
-            gzip = StringFieldCompacted.zipBytes(uncompressed);
+            byte[] gzip = StringFieldCompacted.zipBytes(details);
+
+            if (gzip.length < details.length) {
+                flags.set(COMPRESS_TYPE_FLAG1, false);
+                flags.set(COMPRESS_TYPE_FLAG2, true);
+                details = gzip;
+            }
         }
-        catch (Exception e) {
-            logger.error("Snappy.compress failed: " + e.getMessage(), e);
+        catch (IOException e) {
+            logger.error("GZip.compress failed: " + e.getMessage(), e);
         }
+    }
 
-        final int snappyLen = snappy != null ? snappy.length : -1;
-        final int gzipLen = gzip != null ? gzip.length : -1;
-
-        flags.set(COMPRESS_TYPE_FLAG1, true);
-        flags.set(COMPRESS_TYPE_FLAG2, false);
-        //uncompressed
-        details = uncompressed;
-
-        if (snappyLen > 0 && snappyLen < details.length) {
-            flags.set(COMPRESS_TYPE_FLAG1, false);
-            flags.set(COMPRESS_TYPE_FLAG2, false);
-            details = snappy;
-        }
+    /**
+     * @return Details as UTF-8 bytes or null if there are no details.
+     */
+    @Nullable byte[] uncompressedDetails() {
+        if (details == null)
+            return null;
 
-        if (gzipLen > 0 && gzipLen < details.length) {
-            flags.set(COMPRESS_TYPE_FLAG1, false);
-            flags.set(COMPRESS_TYPE_FLAG2, true);
-            details = gzip;
-        }
+        if (flags.get(COMPRESS_TYPE_FLAG1) && !flags.get(COMPRESS_TYPE_FLAG2))
+            return details;
 
+        String text = getDetailsText();
 
-        logger.info("U " + uncompressed.length + " S " + snappyLen + " Z " + gzipLen + ": F (" +
-                flags.get(COMPRESS_TYPE_FLAG1) + ", " +
-                flags.get(COMPRESS_TYPE_FLAG2) +")");
+        return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
     }
 
     public Boolean getIgnoredFlag() {
@@ -273,10 +341,45 @@ public class TestCompacted {
         return getFlag(MUTED_F);
     }
 
-    private int idInBuild() {
+    int idInBuild() {
         return idInBuild;
     }
 
+    /**
+     * @return Duration, negative if duration is unknown.
+     */
+    int duration() {
+        return duration;
+    }
+
+    /**
+     * @return Test global ID, 0 if ID is unknown.
+     */
+    long testId() {
+        return testId;
+    }
+
+    /**
+     * @return Actual build ID, negative if it is unknown.
+     */
+    int actualBuildId() {
+        return actualBuildId;
+    }
+
+    /**
+     * @return Details in the form they are kept, see {@link #COMPRESS_TYPE_FLAG1}.
+     */
+    @Nullable byte[] details() {
+        return details;
+    }
+
+    /**
+     * @return Copy of this test without details.
+     */
+    TestCompacted withoutDetails() {
+        return new TestCompacted(idInBuild, name, status, duration, packedFlags(), testId, actualBuildId, null);
+    }
+
     /** {@inheritDoc} */
     @Override public boolean equals(Object o) {
         if (this == o)
@@ -318,7 +421,7 @@ public class TestCompacted {
     }
 
     public boolean isFailedTest(IStringCompactor compactor) {
-        return compactor.getStringId(TestOccurrence.STATUS_SUCCESS) != status;
+        return compactor.wellKnownIds().testStatusSuccess() != status;
     }
 
     public String testName(IStringCompactor compactor) {
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import com.google.common.base.MoreObjects;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compressed details (stack trace, log) of failed test, stored out of fat build.
+ */
+public class TestDetailsCompacted {
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(TestDetailsCompacted.class);
+
+    /** Dictionary version, see {@link TestDetailsDictionary}. */
+    private int dictVer;
+
+    /** Details deflated with dictionary. */
+    private byte[] details;
+
+    /**
+     * @param dictVer Dictionary version.
+     * @param details Details deflated with dictionary.
+     */
+    public TestDetailsCompacted(int dictVer, byte[] details) {
+        this.dictVer = dictVer;
+        this.details = details;
+    }
+
+    /**
+     * @param dict Dictionary.
+     * @return Details text or null if details can't be uncompressed.
+     */
+    @Nullable public String text(TestDetailsDictionary dict) {
+        try {
+            return new String(dict.inflate(dictVer, details), StandardCharsets.UTF_8);
+        }
+        catch (DataFormatException | RuntimeException e) {
+            logger.error("Inflate of test details failed: " + e.getMessage(), e);
+
+            return null;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        TestDetailsCompacted compacted = (TestDetailsCompacted)o;
+        return dictVer == compacted.dictVer &&
+            Arrays.equals(details, compacted.details);
+    }
+
+    /** {@inheritDoc} */
+    @Override public int hashCode() {
+        return 31 * dictVer + Arrays.hashCode(details);
+    }
+
+    /** {@inheritDoc} */
+    @Override public String toString() {
+        return MoreObjects.toStringHelper(this)
+            .add("dictVer", dictVer)
+            .add("details", details == null ? null : details.length)
+            .toString();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import com.google.common.base.Preconditions;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.ci.db.TcHelperDb;
+import org.apache.ignite.ci.di.AutoProfiling;
+
+/**
+ * Details of failed tests, stored separately to keep fat builds small: details are required only for test failure
+ * view, but not for chain status, run history, trends.
+ */
+public class TestDetailsDao {
+    /** Cache name */
+    public static final String TEAMCITY_TEST_DETAILS_CACHE_NAME = "teamcityTestDetails";
+
+    /** Ignite provider. */
+    @Inject private Provider<Ignite> igniteProvider;
+
+    /** Dictionary for details compression. */
+    @Inject private TestDetailsDictionary dict;
+
+    /** Details cache. */
+    private IgniteCache<TestDetailsKey, TestDetailsCompacted> detailsCache;
+
+    /**
+     *
+     */
+    public TestDetailsDao init() {
+        detailsCache = igniteProvider.get().getOrCreateCache(
+            TcHelperDb.getCacheV2Config(TEAMCITY_TEST_DETAILS_CACHE_NAME));
+
+        dict.init();
+
+        return this;
+    }
+
+    /**
+     * @param srvIdMaskHigh Server id mask high.
+     * @param buildId Build ID, used for tests without actual build ID.
+     * @param tests Tests with details.
+     */
+    @AutoProfiling
+    public void saveDetails(int srvIdMaskHigh, int buildId, Collection<TestCompacted> tests) {
+        Preconditions.checkNotNull(detailsCache, "init() was not called");
+
+        if (tests.isEmpty())
+            return;
+
+        Map<TestDetailsKey, TestDetailsCompacted> entries = new TreeMap<>();
+        int ver = dict.currentVersion();
+
+        for (TestCompacted test : tests) {
+            int testBuildId = test.actualBuildId() > 0 ? test.actualBuildId() : buildId;
+            byte[] data = test.uncompressedDetails();
+
+            if (data == null)
+                continue;
+
+            entries.put(new TestDetailsKey(srvIdMaskHigh, testBuildId, test.testId()),
+                new TestDetailsCompacted(ver, dict.deflate(ver, data)));
+
+            dict.onCompressed(data);
+        }
+
+        detailsCache.putAll(entries);
+    }
+
+    /**
+     * @param srvIdMaskHigh Server id mask high.
+     * @param buildId Build ID, where test was run.
+     * @param testId Test ID.
+     * @return Details text or null if there are no details saved.
+     */
+    @AutoProfiling
+    @Nullable public String getDetails(int srvIdMaskHigh, int buildId, long testId) {
+        Preconditions.checkNotNull(detailsCache, "init() was not called");
+
+        TestDetailsCompacted details = detailsCache.get(new TestDetailsKey(srvIdMaskHigh, buildId, testId));
+
+        return details == null ? null : details.text(dict);
+    }
+}
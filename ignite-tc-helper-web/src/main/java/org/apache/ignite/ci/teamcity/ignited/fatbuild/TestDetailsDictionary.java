@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.annotation.Nullable;
+import javax.cache.Cache;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.ci.db.TcHelperDb;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Versioned {@link Deflater} dictionaries for test failure details. Stack traces of different tests share a lot of
+ * lines (JUnit frames, test framework frames, etc.), so dictionary made of most frequent lines of stored details is
+ * used as preset for every test. All dictionary versions are kept to be able to inflate details saved with them.
+ */
+public class TestDetailsDictionary {
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(TestDetailsDictionary.class);
+
+    /** Cache name */
+    public static final String TEAMCITY_TEST_DETAILS_DICT_CACHE_NAME = "teamcityTestDetailsDict";
+
+    /** Version meaning details are deflated without dictionary. */
+    public static final int NO_DICTIONARY = 0;
+
+    /** Max dictionary size, deflate can't refer to more distant bytes. */
+    static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    /** Count of details to train dictionary on. */
+    static final int TRAIN_SAMPLES = 500;
+
+    /** Count of details compressed with current dictionary after which new version is trained. */
+    private static final int RETRAIN_AFTER_DETAILS = 200_000;
+
+    /** Minimal count of occurrences of line in samples to be included into dictionary. */
+    private static final int MIN_LINE_OCCURRENCES = 2;
+
+    /** Ignite provider. */
+    @Inject private Provider<Ignite> igniteProvider;
+
+    /** Dictionaries cache: version to dictionary. */
+    private IgniteCache<Integer, byte[]> dictCache;
+
+    /** Dictionaries loaded. */
+    private final ConcurrentMap<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+
+    /** Current version. */
+    private volatile int curVer = NO_DICTIONARY;
+
+    /** Details compressed with current version. */
+    private final AtomicInteger compressedWithCur = new AtomicInteger();
+
+    /** Details collected to train next version, guarded by {@code this}. */
+    private final List<byte[]> samples = new ArrayList<>();
+
+    /**
+     *
+     */
+    public TestDetailsDictionary init() {
+        dictCache = igniteProvider.get().getOrCreateCache(
+            TcHelperDb.getCache8PartsConfig(TEAMCITY_TEST_DETAILS_DICT_CACHE_NAME));
+
+        int maxVer = NO_DICTIONARY;
+
+        for (Cache.Entry<Integer, byte[]> entry : dictCache) {
+            dictionaries.put(entry.getKey(), entry.getValue());
+
+            maxVer = Math.max(maxVer, entry.getKey());
+        }
+
+        curVer = maxVer;
+
+        return this;
+    }
+
+    /**
+     * @return Version to compress new details with.
+     */
+    public int currentVersion() {
+        return curVer;
+    }
+
+    /**
+     * @param ver Version.
+     * @param data Data.
+     * @return Data deflated with dictionary of given version.
+     */
+    public byte[] deflate(int ver, byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+        try {
+            if (ver != NO_DICTIONARY)
+                deflater.setDictionary(dictionary(ver));
+
+            deflater.setInput(data);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 16);
+            byte[] buf = new byte[4096];
+
+            while (!deflater.finished()) {
+                int len = deflater.deflate(buf);
+
+                out.write(buf, 0, len);
+            }
+
+            return out.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @param ver Version.
+     * @param data Data deflated by {@link #deflate(int, byte[])}.
+     * @return Inflated data.
+     */
+    public byte[] inflate(int ver, byte[] data) throws DataFormatException {
+        Inflater inflater = new Inflater(true);
+
+        try {
+            if (ver != NO_DICTIONARY)
+                inflater.setDictionary(dictionary(ver));
+
+            // Extra byte is required for raw inflate to detect end of stream.
+            inflater.setInput(data.length == 0 ? data : Arrays.copyOf(data, data.length + 1));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buf = new byte[4096];
+
+            while (!inflater.finished()) {
+                int len = inflater.inflate(buf);
+
+                if (len == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new DataFormatException("Truncated details, version " + ver);
+
+                out.write(buf, 0, len);
+            }
+
+            return out.toByteArray();
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * @param ver Version.
+     */
+    private byte[] dictionary(int ver) {
+        byte[] dict = dictionaries.get(ver);
+
+        if (dict != null)
+            return dict;
+
+        dict = dictCache.get(ver);
+
+        if (dict == null)
+            throw new IllegalStateException("Test details dictionary not found, version " + ver);
+
+        dictionaries.put(ver, dict);
+
+        return dict;
+    }
+
+    /**
+     * Collects details to train next dictionary version if it is required. Trains version when enough samples are
+     * collected.
+     *
+     * @param data Uncompressed details.
+     */
+    public void onCompressed(byte[] data) {
+        if (curVer != NO_DICTIONARY && compressedWithCur.incrementAndGet() < RETRAIN_AFTER_DETAILS)
+            return;
+
+        List<byte[]> trainSamples;
+
+        synchronized (this) {
+            if (samples.size() < TRAIN_SAMPLES)
+                samples.add(data);
+
+            if (samples.size() < TRAIN_SAMPLES)
+                return;
+
+            trainSamples = new ArrayList<>(samples);
+
+            samples.clear();
+        }
+
+        byte[] dict = train(trainSamples);
+
+        if (dict.length == 0)
+            return;
+
+        synchronized (this) {
+            int ver = curVer + 1;
+
+            dictCache.put(ver, dict);
+            dictionaries.put(ver, dict);
+
+            curVer = ver;
+
+            compressedWithCur.set(0);
+
+            logger.info("Test details dictionary version " + ver + " trained: " + dict.length + " bytes");
+        }
+    }
+
+    /**
+     * Builds dictionary from lines repeated in samples. Lines giving most savings are placed to the end of
+     * dictionary, as closest to compressed data.
+     *
+     * @param samples Uncompressed details.
+     * @return Dictionary, empty if there are no repeated lines.
+     */
+    static byte[] train(Collection<byte[]> samples) {
+        Map<String, Integer> cnts = new HashMap<>();
+
+        for (byte[] sample : samples) {
+            String text = new String(sample, StandardCharsets.UTF_8);
+
+            for (String line : text.split("\n"))
+                cnts.merge(line + "\n", 1, Integer::sum);
+        }
+
+        List<String> frequent = cnts.entrySet().stream()
+            .filter(e -> e.getValue() >= MIN_LINE_OCCURRENCES && e.getKey().trim().length() > 0)
+            .sorted(Comparator.comparingLong((Map.Entry<String, Integer> e) ->
+                (long)e.getValue() * e.getKey().length()).reversed())
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+
+        List<byte[]> lines = new ArrayList<>();
+        int size = 0;
+
+        for (String line : frequent) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+
+            if (size + bytes.length > MAX_DICTIONARY_SIZE)
+                continue;
+
+            lines.add(bytes);
+            size += bytes.length;
+        }
+
+        byte[] dict = new byte[size];
+        int pos = size;
+
+        // Most valuable line goes last.
+        for (byte[] line : lines) {
+            pos -= line.length;
+
+            System.arraycopy(line, 0, dict, pos, line.length);
+        }
+
+        return dict;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.fatbuild;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+
+/**
+ * Key of failed test details stored separately from fat build.
+ */
+public class TestDetailsKey implements Comparable<TestDetailsKey> {
+    /** Server ID. */
+    private int srvId;
+
+    /** Build ID, where test was run. */
+    private int buildId;
+
+    /** Test global ID. */
+    private long testId;
+
+    /**
+     * @param srvId Server ID.
+     * @param buildId Build ID.
+     * @param testId Test ID.
+     */
+    public TestDetailsKey(int srvId, int buildId, long testId) {
+        this.srvId = srvId;
+        this.buildId = buildId;
+        this.testId = testId;
+    }
+
+    /** {@inheritDoc} */
+    @Override public int compareTo(TestDetailsKey o) {
+        int res = Integer.compare(srvId, o.srvId);
+
+        if (res == 0)
+            res = Integer.compare(buildId, o.buildId);
+
+        return res != 0 ? res : Long.compare(testId, o.testId);
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        TestDetailsKey key = (TestDetailsKey)o;
+        return srvId == key.srvId &&
+            buildId == key.buildId &&
+            testId == key.testId;
+    }
+
+    /** {@inheritDoc} */
+    @Override public int hashCode() {
+        return Objects.hashCode(srvId, buildId, testId);
+    }
+
+    /** {@inheritDoc} */
+    @Override public String toString() {
+        return MoreObjects.toStringHelper(this)
+            .add("srvId", srvId)
+            .add("buildId", buildId)
+            .add("testId", testId)
+            .toString();
+    }
+}
@@ -19,14 +19,17 @@ package org.apache.ignite.ci.teamcity.ignited.mute;
 
 import com.google.common.base.Preconditions;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.stream.Collectors;
 import javax.cache.Cache;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
+import org.apache.ignite.ci.db.ServerAffinityFunction;
 import org.apache.ignite.ci.db.TcHelperDb;
 import org.apache.ignite.ci.di.AutoProfiling;
 import org.apache.ignite.ci.tcmodel.mute.MuteInfo;
@@ -39,7 +42,8 @@ import org.apache.ignite.internal.util.typedef.internal.U;
  */
 public class MuteDao {
     /** Cache name. */
-    public static final String TEAMCITY_MUTE_CACHE_NAME = "teamcityMute";
+    public static final String TEAMCITY_MUTE_CACHE_NAME = "teamcityMuteV2";
+
 
     /** Ignite provider. */
     @Inject private Provider<Ignite> igniteProvider;
@@ -47,14 +51,26 @@ public class MuteDao {
     /** Builds cache. */
     private IgniteCache<Long, MuteInfoCompacted> muteCache;
 
+    /** Affinity of mutes cache. */
+    private ServerAffinityFunction muteAff;
+
     /** Compactor. */
     @Inject private IStringCompactor compactor;
 
+    /**
+     * @param ignite Ignite.
+     * @return Mutes cache.
+     */
+    public static IgniteCache<Long, MuteInfoCompacted> getOrCreateCache(Ignite ignite) {
+        return TcHelperDb.getOrCreateServerCache(ignite, TcHelperDb.getServerCacheConfig(TEAMCITY_MUTE_CACHE_NAME, 32));
+    }
+
     /**
      *
      */
     public void init() {
-        muteCache = igniteProvider.get().getOrCreateCache(TcHelperDb.getCacheV2Config(TEAMCITY_MUTE_CACHE_NAME));
+        muteCache = getOrCreateCache(igniteProvider.get());
+        muteAff = ServerAffinityFunction.of(muteCache);
     }
 
     /**
@@ -64,14 +80,10 @@ public class MuteDao {
     @AutoProfiling
     public SortedSet<MuteInfo> getMutes(int srvIdMaskHigh) {
         Preconditions.checkNotNull(muteCache, "init() was not called");
-        long srvId = (long) srvIdMaskHigh << 32;
-
         TreeSet<MuteInfo> res = new TreeSet<>();
 
-        for (Cache.Entry<Long, MuteInfoCompacted> entry : muteCache) {
-            if ((entry.getKey() & srvId) == srvId)
-                res.add(entry.getValue().toMuteInfo(compactor));
-        }
+        muteAff.entriesForServer(muteCache, srvIdMaskHigh)
+            .forEach(entry -> res.add(entry.getValue().toMuteInfo(compactor)));
 
         return res;
     }
@@ -126,16 +138,15 @@ public class MuteDao {
      */
     public int removeAllAfter(int srvIdMaskHigh, int startId) {
         int rmv = 0;
-        long srvId = (long) srvIdMaskHigh << 32;
 
-        for (Cache.Entry<Long, MuteInfoCompacted> entry : muteCache) {
-            if ((srvId & entry.getKey()) != srvId)
-                continue;
+        List<Long> keys = muteAff.entriesForServer(muteCache, srvIdMaskHigh)
+            .filter(entry -> entry.getValue().id > startId)
+            .map(Cache.Entry::getKey)
+            .collect(Collectors.toList());
 
-            if (entry.getValue().id > startId) {
-                if (muteCache.remove(entry.getKey()))
-                    rmv++;
-            }
+        for (Long key : keys) {
+            if (muteCache.remove(key))
+                rmv++;
         }
 
         return rmv;
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ignite.ci.teamcity.ignited.runhist;
+
+import java.util.List;
+import javax.cache.processor.MutableEntry;
+import org.apache.ignite.cache.CacheEntryProcessor;
+
+/**
+ * Adds invocations to history entry. Each key gets own processor instance, so only invocations of this key are sent.
+ */
+class AddInvocationsProcessor implements CacheEntryProcessor<RunHistKey, RunHistCompacted, Integer> {
+    /** Serial version uid. */
+    private static final long serialVersionUID = 0L;
+
+    /** Invocations to add. */
+    private final List<Invocation> invocations;
+
+    /**
+     * @param invocations Invocations to add.
+     */
+    AddInvocationsProcessor(List<Invocation> invocations) {
+        this.invocations = invocations;
+    }
+
+    /** {@inheritDoc} */
+    @Override public Integer process(MutableEntry<RunHistKey, RunHistCompacted> entry, Object... args) {
+        RunHistCompacted hist = entry.getValue();
+
+        if (hist == null)
+            hist = new RunHistCompacted(entry.getKey());
+
+        int initHashCode = hist.hashCode();
+
+        int cnt = hist.addInvocations(invocations);
+
+        if (cnt > 0 || hist.hashCode() != initHashCode)
+            entry.setValue(hist);
+
+        return cnt;
+    }
+}
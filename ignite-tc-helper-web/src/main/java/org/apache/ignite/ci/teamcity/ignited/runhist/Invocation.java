@@ -55,6 +55,21 @@ public class Invocation {
         this.changePresent = CHANGE_NOT_FILLED;
     }
 
+    /**
+     * Creates invocation from columns of {@link InvocationData}.
+     *
+     * @param buildId Build id.
+     * @param status Status.
+     * @param changePresent Change present flag.
+     * @param startDate Start date.
+     */
+    Invocation(int buildId, byte status, byte changePresent, long startDate) {
+        this.buildId = buildId;
+        this.status = status;
+        this.changePresent = changePresent;
+        this.startDate = startDate;
+    }
+
     /** {@inheritDoc} */
     @Override public String toString() {
         return MoreObjects.toStringHelper(this)
@@ -94,6 +109,13 @@ public class Invocation {
     }
 
     public ChangesState changesState() {
+        return changesState(changePresent);
+    }
+
+    /**
+     * @param changePresent Change present flag.
+     */
+    static ChangesState changesState(byte changePresent) {
         if (changePresent == NO_CHANGES)
             return ChangesState.NONE;
         else if (changePresent == CHANGE_PRESENT)
@@ -102,6 +124,13 @@ public class Invocation {
             return ChangesState.UNKNOWN;
     }
 
+    /**
+     * @return Change present flag: 0 - no changes, 1 - changes present, 2- unknown.
+     */
+    byte changePresent() {
+        return changePresent;
+    }
+
     public boolean isFailure() {
         return status == InvocationData.FAILURE || status == InvocationData.MUTED;
     }
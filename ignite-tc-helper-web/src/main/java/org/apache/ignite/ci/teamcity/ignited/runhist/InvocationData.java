@@ -18,19 +18,26 @@
 package org.apache.ignite.ci.teamcity.ignited.runhist;
 
 import com.google.common.base.MoreObjects;
-import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 import org.apache.ignite.ci.analysis.RunStat;
 import org.apache.ignite.internal.util.typedef.internal.U;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.TestOnly;
 
 /**
- *
+ * Invocations of test or suite, stored as columns sorted by build ID. Columns are used as a window: expired
+ * invocations are evicted from the oldest end only, and counters of invocations in the window are maintained on add
+ * and evict, so statistics are available in constant time.
  */
 public class InvocationData {
     /** Max days to keep test invocatoin data in run statistics: affects Bot Visa. */
@@ -44,6 +51,15 @@ public class InvocationData {
     /** Ok. */
     public static final int CRITICAL_FAILURE = RunStat.RunStatus.RES_CRITICAL_FAILURE.getCode();
 
+    /** Max age of invocation in milliseconds. */
+    private static final long MAX_AGE_MS = TimeUnit.DAYS.toMillis(MAX_DAYS);
+
+    /** Clock to check expiration with. */
+    private static volatile LongSupplier clock = U::currentTimeMillis;
+
+    /** Initial capacity of invocations columns. */
+    private static final int INITIAL_CAPACITY = 8;
+
     /**
      * Runs registered all the times.
      */
@@ -54,55 +70,277 @@ public class InvocationData {
      */
     private int allHistFailures;
 
-    /** Invocations map from build ID to invocation data. */
-    private Map<Integer, Invocation> invocationMap = new TreeMap<>();
+    /** Index of the oldest invocation in columns. */
+    private int head;
+
+    /** Count of invocations stored, columns may have greater capacity. */
+    private int size;
+
+    /** Not muted invocations in window. */
+    private int notMutedRuns;
+
+    /** Failures and critical failures in window. */
+    private int failures;
+
+    /** Critical failures in window. */
+    private int criticalFailures;
+
+    /** Build IDs of invocations, sorted. */
+    private int[] buildIds;
+
+    /** Statuses of invocations: codes from {@link RunStat.RunStatus}. */
+    private byte[] statuses;
+
+    /** Change present flags of invocations, see {@link Invocation#changesState()}. */
+    private byte[] changes;
+
+    /** Build start timestamps of invocations. */
+    private long[] startDates;
+
+    /**
+     * Invocations map from build ID to invocation data, saved by previous versions. Moved to columns on first access,
+     * volatile write of null publishes columns to threads sharing the instance.
+     */
+    @Deprecated
+    @Nullable private volatile Map<Integer, Invocation> invocationMap;
 
     public int allHistRuns() {
         return allHistRuns;
     }
 
     public boolean addInvocation(Invocation inv) {
+        long expiredBefore = expirationThreshold();
+
         try {
-            return innerAdd(inv);
+            return innerAdd(inv, expiredBefore);
         }
         finally {
-            removeEldiest();
+            evict(expiredBefore);
+        }
+    }
+
+    /**
+     * Adds invocations, expiration is checked once for all of them.
+     *
+     * @param invocations Invocations.
+     * @return Count of invocations added.
+     */
+    public int addInvocations(Collection<Invocation> invocations) {
+        long expiredBefore = expirationThreshold();
+        int cnt = 0;
+
+        for (Invocation inv : invocations) {
+            if (innerAdd(inv, expiredBefore))
+                cnt++;
         }
+
+        evict(expiredBefore);
+
+        return cnt;
     }
 
     public boolean innerAdd(Invocation inv) {
+        return innerAdd(inv, expirationThreshold());
+    }
+
+    /**
+     * @param inv Invocation.
+     * @param expiredBefore Invocations started before are expired.
+     */
+    private boolean innerAdd(Invocation inv, long expiredBefore) {
+        migrateLegacy();
+
         int build = inv.buildId();
         if (build < 0)
             return false;
 
-        if (invocationMap.containsKey(build))
+        int idx = size == 0 ? -1 : Arrays.binarySearch(buildIds, head, head + size, build);
+
+        if (idx >= 0)
             return false;
 
-        if (isExpired(inv.startDate()))
+        if (inv.startDate() < expiredBefore)
             return false;
 
-        Invocation prevVal = invocationMap.putIfAbsent(build, inv);
+        insert(-idx - 1, inv);
+
+        allHistRuns++;
+        if (inv.isFailure())
+            allHistFailures++;
 
-        final boolean newVal = prevVal == null;
+        return true;
+    }
 
-        if (newVal) {
-            allHistRuns++;
-            if (inv.isFailure())
-                allHistFailures++;
+    /**
+     * @param pos Index in columns to insert invocation to.
+     * @param inv Invocation.
+     */
+    private void insert(int pos, Invocation inv) {
+        if (size == 0) {
+            ensureCapacity(1);
+
+            head = 0;
+            pos = 0;
         }
+        else if (pos == head && head > 0)
+            head--; // Prepended to free space before the oldest invocation.
+        else {
+            if (head + size == buildIds.length) {
+                if (head > 0) {
+                    System.arraycopy(buildIds, head, buildIds, 0, size);
+                    System.arraycopy(statuses, head, statuses, 0, size);
+                    System.arraycopy(changes, head, changes, 0, size);
+                    System.arraycopy(startDates, head, startDates, 0, size);
+
+                    pos -= head;
+                    head = 0;
+                }
+                else
+                    ensureCapacity(size + 1);
+            }
 
-        return newVal;
+            int tail = head + size;
+
+            if (pos < tail) {
+                System.arraycopy(buildIds, pos, buildIds, pos + 1, tail - pos);
+                System.arraycopy(statuses, pos, statuses, pos + 1, tail - pos);
+                System.arraycopy(changes, pos, changes, pos + 1, tail - pos);
+                System.arraycopy(startDates, pos, startDates, pos + 1, tail - pos);
+            }
+        }
+
+        buildIds[pos] = inv.buildId();
+        statuses[pos] = inv.status();
+        changes[pos] = inv.changePresent();
+        startDates[pos] = inv.startDate();
+
+        size++;
+
+        count(inv.status(), 1);
     }
 
-    void removeEldiest() {
-        invocationMap.entrySet().removeIf(entries -> isExpired(entries.getValue().startDate()));
+    /**
+     * Grows columns by half of capacity, so appending is amortized.
+     *
+     * @param cap Required capacity.
+     */
+    private void ensureCapacity(int cap) {
+        if (buildIds == null) {
+            int newCap = Math.max(cap, INITIAL_CAPACITY);
+
+            buildIds = new int[newCap];
+            statuses = new byte[newCap];
+            changes = new byte[newCap];
+            startDates = new long[newCap];
+
+            return;
+        }
+
+        if (buildIds.length >= cap)
+            return;
+
+        int newCap = Math.max(cap, buildIds.length + (buildIds.length >> 1));
+
+        buildIds = Arrays.copyOf(buildIds, newCap);
+        statuses = Arrays.copyOf(statuses, newCap);
+        changes = Arrays.copyOf(changes, newCap);
+        startDates = Arrays.copyOf(startDates, newCap);
+    }
+
+    /**
+     * @param status Status of invocation.
+     * @param delta Delta, 1 for invocation added, -1 for evicted.
+     */
+    private void count(byte status, int delta) {
+        if (status != MUTED)
+            notMutedRuns += delta;
+
+        if (status == FAILURE || status == CRITICAL_FAILURE)
+            failures += delta;
+
+        if (status == CRITICAL_FAILURE)
+            criticalFailures += delta;
+    }
+
+    /**
+     * Evicts expired invocations from the oldest end of window.
+     *
+     * @param expiredBefore Invocations started before are expired.
+     */
+    private void evict(long expiredBefore) {
+        while (size > 0 && startDates[head] < expiredBefore) {
+            count(statuses[head], -1);
+
+            head++;
+            size--;
+        }
+
+        if (size == 0)
+            head = 0;
+    }
+
+    /**
+     * @param expiredBefore Invocations started before are expired.
+     * @return Index of the oldest not expired invocation. Invocations in window are not evicted, so shared instances
+     * are safe to read concurrently.
+     */
+    private int firstActual(long expiredBefore) {
+        int idx = head;
+
+        while (idx < head + size && startDates[idx] < expiredBefore)
+            idx++;
+
+        return idx;
+    }
+
+    /**
+     * Moves invocations saved by previous versions to columns.
+     */
+    private void migrateLegacy() {
+        if (invocationMap == null)
+            return;
+
+        synchronized (this) {
+            Map<Integer, Invocation> legacy = invocationMap;
+
+            if (legacy == null)
+                return;
+
+            // Map is sorted by build ID, so invocations are appended.
+            for (Invocation inv : legacy.values()) {
+                int idx = size == 0 ? -1 : Arrays.binarySearch(buildIds, head, head + size, inv.buildId());
+
+                if (idx < 0)
+                    insert(-idx - 1, inv);
+            }
+
+            invocationMap = null;
+        }
     }
 
     /**
      * @param startDate Start date.
      */
     public static boolean isExpired(long startDate) {
-        return (U.currentTimeMillis() - startDate) > Duration.ofDays(MAX_DAYS).toMillis();
+        return (clock.getAsLong() - startDate) > MAX_AGE_MS;
+    }
+
+    /**
+     * @return Invocations started before returned timestamp are expired, see {@link #isExpired(long)}.
+     */
+    private static long expirationThreshold() {
+        return clock.getAsLong() - MAX_AGE_MS;
+    }
+
+    /**
+     * Replaces clock used to check expiration, allows to check expiration in tests without waiting. Test replaced
+     * clock should restore it after each test.
+     *
+     * @param newClock Clock returning current time in milliseconds, or null to use system time.
+     */
+    @TestOnly
+    static void setClock(@Nullable LongSupplier newClock) {
+        clock = newClock == null ? U::currentTimeMillis : newClock;
     }
 
     /**
@@ -116,41 +354,91 @@ public class InvocationData {
      *
      */
     public int notMutedRunsCount() {
-        return (int)
-            invocations()
-                .filter(invocation -> invocation.status() != MUTED)
-                .count();
+        migrateLegacy();
+
+        int cnt = notMutedRuns;
+
+        for (int i = head, end = firstActual(expirationThreshold()); i < end; i++) {
+            if (statuses[i] != MUTED)
+                cnt--;
+        }
+
+        return cnt;
     }
 
     /**
      *
      */
     @NotNull public Stream<Invocation> invocations() {
-        return invocationMap.values()
-            .stream()
-            .filter(this::isActual);
+        return actualIndexes().mapToObj(this::invocation);
+    }
+
+    /**
+     * @return Indexes of not expired invocations, in order of build IDs.
+     */
+    IntStream actualIndexes() {
+        migrateLegacy();
+
+        return IntStream.range(firstActual(expirationThreshold()), head + size);
+    }
+
+    /**
+     * @param idx Index of invocation.
+     */
+    int buildId(int idx) {
+        return buildIds[idx];
     }
 
     /**
-     * @param invocation Invocation.
+     * @param idx Index of invocation.
      */
-    private boolean isActual(Invocation invocation) {
-        return !isExpired(invocation.startDate());
+    byte status(int idx) {
+        return statuses[idx];
+    }
+
+    /**
+     * @param idx Index of invocation.
+     */
+    ChangesState changesState(int idx) {
+        return Invocation.changesState(changes[idx]);
+    }
+
+    /**
+     * @param idx Index of invocation.
+     */
+    private Invocation invocation(int idx) {
+        return new Invocation(buildIds[idx], statuses[idx], changes[idx], startDates[idx]);
     }
 
     /**
      *
      */
     public int failuresCount() {
-        return (int)invocations().filter(inv -> inv.status() == FAILURE || inv.status() == CRITICAL_FAILURE).count();
+        migrateLegacy();
+
+        int cnt = failures;
+
+        for (int i = head, end = firstActual(expirationThreshold()); i < end; i++) {
+            if (statuses[i] == FAILURE || statuses[i] == CRITICAL_FAILURE)
+                cnt--;
+        }
+
+        return cnt;
     }
 
     /** {@inheritDoc} */
     @Override public String toString() {
+        migrateLegacy();
+
+        List<Invocation> invocations = new ArrayList<>(size);
+
+        for (int i = head; i < head + size; i++)
+            invocations.add(invocation(i));
+
         return MoreObjects.toStringHelper(this)
             .add("allHistRuns", allHistRuns)
             .add("allHistFailures", allHistFailures)
-            .add("invocationMap", invocationMap)
+            .add("invocations", invocations)
             .toString();
     }
 
@@ -161,22 +449,49 @@ public class InvocationData {
         if (o == null || getClass() != o.getClass())
             return false;
         InvocationData data = (InvocationData)o;
-        return allHistRuns == data.allHistRuns &&
-            allHistFailures == data.allHistFailures &&
-            Objects.equals(invocationMap, data.invocationMap);
+
+        migrateLegacy();
+        data.migrateLegacy();
+
+        if (allHistRuns != data.allHistRuns || allHistFailures != data.allHistFailures || size != data.size)
+            return false;
+
+        for (int i = 0; i < size; i++) {
+            int idx = head + i;
+            int dataIdx = data.head + i;
+
+            if (buildIds[idx] != data.buildIds[dataIdx]
+                || statuses[idx] != data.statuses[dataIdx]
+                || changes[idx] != data.changes[dataIdx]
+                || startDates[idx] != data.startDates[dataIdx])
+                return false;
+        }
+
+        return true;
     }
 
     /** {@inheritDoc} */
     @Override public int hashCode() {
-        return Objects.hash(allHistRuns, allHistFailures, invocationMap);
+        migrateLegacy();
+
+        int res = 31 * allHistRuns + allHistFailures;
+
+        for (int i = head; i < head + size; i++) {
+            res = 31 * res + buildIds[i];
+            res = 31 * res + statuses[i];
+            res = 31 * res + changes[i];
+            res = 31 * res + Long.hashCode(startDates[i]);
+        }
+
+        return res;
     }
 
     /**
      *
      */
     public List<Integer> getLatestRuns() {
-        return invocations()
-            .map(i -> (int)i.status())
+        return actualIndexes()
+            .mapToObj(i -> (int)statuses[i])
             .collect(Collectors.toList());
     }
 
@@ -184,6 +499,15 @@ public class InvocationData {
      *
      */
     public int criticalFailuresCount() {
-        return (int)invocations().filter(inv -> inv.status() == CRITICAL_FAILURE).count();
+        migrateLegacy();
+
+        int cnt = criticalFailures;
+
+        for (int i = head, end = firstActual(expirationThreshold()); i < end; i++) {
+            if (statuses[i] == CRITICAL_FAILURE)
+                cnt--;
+        }
+
+        return cnt;
     }
 }
@@ -20,7 +20,6 @@ package org.apache.ignite.ci.teamcity.ignited.runhist;
 import com.google.common.base.MoreObjects;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.apache.ignite.ci.analysis.IVersionedEntity;
 import org.apache.ignite.ci.analysis.RunStat;
@@ -90,25 +89,23 @@ public class RunHistCompacted implements IVersionedEntity, IRunHistory {
     @Override public String getFlakyComments() {
         int statusChange = 0;
 
-        Invocation prev = null;
+        int[] latestRuns = data.actualIndexes().toArray();
 
-        List<Invocation> latestRuns = data.invocations().collect(Collectors.toList());
+        for (int i = 1; i < latestRuns.length; i++) {
+            int prev = latestRuns[i - 1];
+            int cur = latestRuns[i];
 
-        for (Invocation cur : latestRuns) {
-            if (prev != null && cur != null) {
-                if (prev.status() != cur.status()
-                    && cur.changesState() == ChangesState.NONE
-                    && prev.changesState() != ChangesState.UNKNOWN)
-                    statusChange++;
-            }
-            prev = cur;
+            if (data.status(prev) != data.status(cur)
+                && data.changesState(cur) == ChangesState.NONE
+                && data.changesState(prev) != ChangesState.UNKNOWN)
+                statusChange++;
         }
 
         if (statusChange < 1)
             return null;
 
         return "Test seems to be flaky: " +
-            "changed its status [" + statusChange + "/" + latestRuns.size() + "] without code modifications";
+            "changed its status [" + statusChange + "/" + latestRuns.length + "] without code modifications";
     }
 
     /** {@inheritDoc} */
@@ -124,6 +121,14 @@ public class RunHistCompacted implements IVersionedEntity, IRunHistory {
         return data.addInvocation(inv);
     }
 
+    /**
+     * @param invocations Invocations.
+     * @return Count of test runs, which are new and are not expired.
+     */
+    public int addInvocations(List<Invocation> invocations) {
+        return data.addInvocations(invocations);
+    }
+
     private static int[] concatArr(int[] arr1, int[] arr2) {
         int[] arr1and2 = new int[arr1.length + arr2.length];
         System.arraycopy(arr1, 0, arr1and2, 0, arr1.length);
@@ -144,20 +149,20 @@ public class RunHistCompacted implements IVersionedEntity, IRunHistory {
         assert centralEvtBuild < template.length;
         assert centralEvtBuild >= 0;
 
-        List<Invocation> histAsArr = data.invocations().collect(Collectors.toList());
+        int[] histAsArr = data.actualIndexes().toArray();
 
-        if (histAsArr.size() < template.length)
+        if (histAsArr.length < template.length)
             return null;
 
         Integer detectedAt = null;
         if (t.shouldBeFirst()) {
-            if (histAsArr.size() >= getRunsAllHist()) // skip if total runs can't fit to latest runs
-                detectedAt = checkTemplateAtPos(template, centralEvtBuild, histAsArr, 0);
+            if (histAsArr.length >= getRunsAllHist()) // skip if total runs can't fit to latest runs
+                detectedAt = checkTemplateAtPos(template, centralEvtBuild, data, histAsArr, 0);
         }
         else {
             //startIgnite from the end to find most recent
-            for (int idx = histAsArr.size() - template.length; idx >= 0; idx--) {
-                detectedAt = checkTemplateAtPos(template, centralEvtBuild, histAsArr, idx);
+            for (int idx = histAsArr.length - template.length; idx >= 0; idx--) {
+                detectedAt = checkTemplateAtPos(template, centralEvtBuild, data, histAsArr, idx);
 
                 if (detectedAt != null)
                     break;
@@ -167,21 +172,25 @@ public class RunHistCompacted implements IVersionedEntity, IRunHistory {
         return detectedAt;
     }
 
+    /**
+     * @param template Template.
+     * @param centralEvtBuild Index of central event in template.
+     * @param data Invocations.
+     * @param histAsArr Indexes of actual invocations in {@code data}.
+     * @param idx Position in {@code histAsArr} to check template at.
+     */
     @Nullable
-    private static Integer checkTemplateAtPos(int[] template, int centralEvtBuild, List<Invocation> histAsArr,
-        int idx) {
+    private static Integer checkTemplateAtPos(int[] template, int centralEvtBuild, InvocationData data,
+        int[] histAsArr, int idx) {
         for (int tIdx = 0; tIdx < template.length; tIdx++) {
-            Invocation curStatus = histAsArr.get(idx + tIdx);
-
-            if (curStatus == null)
-                break;
+            byte curStatus = data.status(histAsArr[idx + tIdx]);
 
             RunStat.RunStatus tmpl = RunStat.RunStatus.byCode(template[tIdx]);
 
-            if ((tmpl == RunStat.RunStatus.RES_OK_OR_FAILURE && (curStatus.status() == InvocationData.OK || curStatus.status() == InvocationData.FAILURE))
-                || curStatus.status() == tmpl.getCode()) {
+            if ((tmpl == RunStat.RunStatus.RES_OK_OR_FAILURE && (curStatus == InvocationData.OK || curStatus == InvocationData.FAILURE))
+                || curStatus == tmpl.getCode()) {
                 if (tIdx == template.length - 1)
-                    return histAsArr.get(idx + centralEvtBuild).buildId();
+                    return data.buildId(histAsArr[idx + centralEvtBuild]);
             }
             else
                 break;
@@ -17,16 +17,26 @@
 
 package org.apache.ignite.ci.teamcity.ignited.runhist;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import javax.cache.Cache;
-import javax.cache.processor.MutableEntry;
+import javax.cache.processor.EntryProcessorResult;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
 import org.apache.ignite.cache.QueryEntity;
+import org.apache.ignite.cache.affinity.Affinity;
 import org.apache.ignite.cache.query.QueryCursor;
 import org.apache.ignite.cache.query.SqlQuery;
 import org.apache.ignite.ci.db.TcHelperDb;
@@ -35,7 +45,9 @@ import org.apache.ignite.ci.di.cache.GuavaCached;
 import org.apache.ignite.ci.teamcity.ignited.IRunHistory;
 import org.apache.ignite.ci.teamcity.ignited.IRunStat;
 import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
+import org.apache.ignite.ci.teamcity.ignited.buildref.BuildRefDao;
 import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.lang.IgniteFuture;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -54,6 +66,12 @@ public class RunHistCompactedDao {
     /** Suites history Cache name. */
     public static final String SUITE_HIST_CACHE_NAME = "teamcitySuiteRunHist";
 
+    /** Max count of history keys updated by one invokeAll call. */
+    public static final int INVOKE_BATCH_SIZE = 500;
+
+    /** Max count of invokeAll batches executed concurrently. */
+    public static final int INVOKE_BATCHES_IN_FLIGHT = 16;
+
     /** Ignite provider. */
     @Inject
     private Provider<Ignite> igniteProvider;
@@ -134,41 +152,117 @@ public class RunHistCompactedDao {
         return buildStartTime.putIfAbsent(buildIdToCacheKey(srvId, buildId), ts);
     }
 
+    /**
+     * @param srvId Server id mask high.
+     * @param buildIds Build IDs.
+     * @return Builds from given, which were already saved to history.
+     */
     @AutoProfiling
-    public Integer addTestInvocations(RunHistKey histKey, List<Invocation> list) {
-        if (list.isEmpty())
-            return 0;
+    public Set<Integer> getProcessedBuilds(int srvId, Collection<Integer> buildIds) {
+        Set<Long> keys = buildIds.stream()
+            .map(buildId -> buildIdToCacheKey(srvId, buildId))
+            .collect(Collectors.toSet());
+
+        return buildStartTime.getAll(keys).keySet().stream()
+            .map(BuildRefDao::cacheKeyToBuildId)
+            .collect(Collectors.toSet());
+    }
 
-        return testHistCache.invoke(histKey, RunHistCompactedDao::processEntry, list);
+    /**
+     * Marks builds saved to history by one batch.
+     *
+     * @param srvId Server id mask high.
+     * @param builds Build start timestamps by build ID.
+     */
+    @AutoProfiling
+    public void setBuildsProcessed(int srvId, Map<Integer, Long> builds) {
+        if (builds.isEmpty())
+            return;
+
+        Map<Long, Long> entries = new TreeMap<>();
+
+        builds.forEach((buildId, ts) -> entries.put(buildIdToCacheKey(srvId, buildId), ts));
+
+        buildStartTime.putAll(entries);
     }
 
+    /**
+     * @param invocations Invocations by test history key.
+     * @return Count of invocations added.
+     */
     @AutoProfiling
-    public Integer addSuiteInvocations(RunHistKey histKey, List<Invocation> list) {
-        if (list.isEmpty())
-            return 0;
+    public int addTestInvocations(Map<RunHistKey, List<Invocation>> invocations) {
+        return invokeByPartitions(testHistCache, invocations);
+    }
 
-        return suiteHistCache.invoke(histKey, RunHistCompactedDao::processEntry, list);
+    /**
+     * @param invocations Invocations by suite history key.
+     * @return Count of invocations added.
+     */
+    @AutoProfiling
+    public int addSuiteInvocations(Map<RunHistKey, List<Invocation>> invocations) {
+        return invokeByPartitions(suiteHistCache, invocations);
     }
 
-    @NotNull public static Integer processEntry(MutableEntry<RunHistKey, RunHistCompacted> entry, Object[] parms) {
-        int cnt = 0;
+    /**
+     * Applies invocations with {@link IgniteCache#invokeAllAsync}. Each batch contains keys of one partition only and at
+     * most {@link #INVOKE_BATCH_SIZE} keys, every key is processed by own {@link AddInvocationsProcessor}. Up to
+     * {@link #INVOKE_BATCHES_IN_FLIGHT} batches are executed concurrently.
+     *
+     * @param cache History cache.
+     * @param invocations Invocations by history key.
+     * @return Count of invocations added.
+     */
+    private int invokeByPartitions(IgniteCache<RunHistKey, RunHistCompacted> cache,
+        Map<RunHistKey, List<Invocation>> invocations) {
+        Affinity<RunHistKey> aff = igniteProvider.get().affinity(cache.getName());
 
-        RunHistCompacted hist = entry.getValue();
+        Map<Integer, List<Map<RunHistKey, AddInvocationsProcessor>>> batchesByPartition = new TreeMap<>();
 
-        if (hist == null)
-            hist = new RunHistCompacted(entry.getKey());
+        invocations.forEach((key, list) -> {
+            if (list.isEmpty())
+                return;
 
-        int initHashCode = hist.hashCode();
+            List<Map<RunHistKey, AddInvocationsProcessor>> batches
+                = batchesByPartition.computeIfAbsent(aff.partition(key), p -> new ArrayList<>());
 
-        List<Invocation> invocationList = (List<Invocation>)parms[0];
+            if (batches.isEmpty() || batches.get(batches.size() - 1).size() >= INVOKE_BATCH_SIZE)
+                batches.add(new HashMap<>());
 
-        for (Invocation invocation : invocationList) {
-            if (hist.addInvocation(invocation))
-                cnt++;
+            batches.get(batches.size() - 1).put(key, new AddInvocationsProcessor(list));
+        });
+
+        int cnt = 0;
+        Deque<IgniteFuture<Map<RunHistKey, EntryProcessorResult<Integer>>>> inFlight = new ArrayDeque<>();
+
+        for (List<Map<RunHistKey, AddInvocationsProcessor>> batches : batchesByPartition.values()) {
+            for (Map<RunHistKey, AddInvocationsProcessor> batch : batches) {
+                if (inFlight.size() >= INVOKE_BATCHES_IN_FLIGHT)
+                    cnt += addedCount(inFlight.poll().get());
+
+                inFlight.add(cache.invokeAllAsync(batch));
+            }
         }
 
-        if (cnt > 0 || hist.hashCode() != initHashCode)
-            entry.setValue(hist);
+        while (!inFlight.isEmpty())
+            cnt += addedCount(inFlight.poll().get());
+
+        return cnt;
+    }
+
+    /**
+     * @param res Results of processors by history key.
+     * @return Count of invocations added.
+     */
+    private static int addedCount(Map<RunHistKey, EntryProcessorResult<Integer>> res) {
+        int cnt = 0;
+
+        for (EntryProcessorResult<Integer> procRes : res.values()) {
+            Integer added = procRes.get();
+
+            if (added != null)
+                cnt += added;
+        }
 
         return cnt;
     }
@@ -20,7 +20,6 @@ package org.apache.ignite.ci.teamcity.ignited.runhist;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -128,7 +127,8 @@ public class RunHistSync {
         }
 
         if (saveNow) {
-            saveInvocationsMap(
+            saveInvocationsMap(srvId,
+                Collections.singletonMap(buildInv.buildId(), buildInv.startDate()),
                 Collections.singletonMap(buildInvKey,
                     Collections.singletonList(buildInv)
                 ),
@@ -145,6 +145,7 @@ public class RunHistSync {
     @MonitoredTask(name = "Save Builds To History(srv, runner)", nameExtArgsIndexes = {0, 1})
     @SuppressWarnings("WeakerAccess")
     protected String saveBuildToHistory(String srvName, int ldrToActivate) {
+        Map<Integer, Long> buildsThisRun;
         Map<RunHistKey, List<Invocation>> testsSaveThisRun;
         Map<RunHistKey, List<Invocation>> buildsSaveThisRun;
 
@@ -153,6 +154,7 @@ public class RunHistSync {
             if (syncTask == null)
                 return "Nothing to sync";
 
+            buildsThisRun = syncTask.takeBuilds();
             buildsSaveThisRun = syncTask.takeSuites();
             testsSaveThisRun = syncTask.takeTests();
         }
@@ -160,96 +162,71 @@ public class RunHistSync {
         if (buildsSaveThisRun.isEmpty() && testsSaveThisRun.isEmpty())
             return "Nothing to sync";
 
-        return saveInvocationsMap(buildsSaveThisRun, testsSaveThisRun);
+        return saveInvocationsMap(ITeamcityIgnited.serverIdToInt(srvName), buildsThisRun, buildsSaveThisRun,
+            testsSaveThisRun);
     }
 
+    /**
+     * Saves invocations of builds, which were not saved to history before. Builds are checked and marked as processed
+     * once per call, not for each invocation.
+     *
+     * @param srvId Server id mask high.
+     * @param builds Start timestamps of builds, invocations of which are saved.
+     * @param buildsSaveThisRun Suite invocations.
+     * @param saveThisRun Test invocations.
+     */
     @AutoProfiling
     @NotNull protected String saveInvocationsMap(
+        int srvId,
+        Map<Integer, Long> builds,
         Map<RunHistKey, List<Invocation>> buildsSaveThisRun,
         Map<RunHistKey, List<Invocation>> saveThisRun) {
-        Set<Integer> confirmedNewBuild = new HashSet<>();
-        Set<Integer> confirmedDuplicate = new HashSet<>();
-
-        AtomicInteger cntTestInvocations = new AtomicInteger();
-        AtomicInteger duplicateOrExpired = new AtomicInteger();
-        AtomicInteger cntSuiteInvocations = new AtomicInteger();
-
-        saveThisRun.forEach(
-            (histKey, invocationList) -> {
-                saveInvocationList(confirmedNewBuild,
-                    confirmedDuplicate,
-                    cntTestInvocations,
-                    duplicateOrExpired,
-                    histKey, invocationList);
-            }
-        );
+        Set<Integer> processed = histDao.getProcessedBuilds(srvId, builds.keySet());
+
+        Map<RunHistKey, List<Invocation>> testsToSave = new HashMap<>();
+        int testInvocations = 0;
+
+        for (Map.Entry<RunHistKey, List<Invocation>> e : saveThisRun.entrySet()) {
+            testsToSave.put(e.getKey(), newInvocations(processed, e.getValue()));
+
+            testInvocations += e.getValue().size();
+        }
+
+        Map<RunHistKey, List<Invocation>> suitesToSave = new HashMap<>();
 
         buildsSaveThisRun.forEach(
-            (histKey, suiteList) -> {
-                List<Invocation> invocationsToSave = suiteList.stream()
-                    .filter(inv -> {
-                        int buildId = inv.buildId();
+            (histKey, suiteList) -> suitesToSave.put(histKey, newInvocations(processed, suiteList)));
 
-                        if (confirmedNewBuild.contains(buildId))
-                            return true;
+        int cntTestInvocations = histDao.addTestInvocations(testsToSave);
+        int duplicateOrExpired = testInvocations - cntTestInvocations;
 
-                        if (!histDao.setBuildProcessed(histKey.srvId(), buildId, inv.startDate()))
-                            return false;
+        histDao.addSuiteInvocations(suitesToSave);
 
-                        return confirmedNewBuild.add(buildId);
-                    })
-                    .filter(inv -> !InvocationData.isExpired(inv.startDate()))
-                    .collect(Collectors.toList());
+        // Builds are marked after invocations are saved: saving is idempotent, so interrupted save can be repeated.
+        Map<Integer, Long> newBuilds = new HashMap<>(builds);
 
-                Integer cntAdded = histDao.addSuiteInvocations(histKey, invocationsToSave);
-                cntSuiteInvocations.addAndGet(cntAdded);
-            }
-        );
+        newBuilds.keySet().removeAll(processed);
+
+        histDao.setBuildsProcessed(srvId, newBuilds);
 
-        String res = "History test entries: " + saveThisRun.size() + " processed " + cntTestInvocations.get()
-            + " invocations saved to DB " + duplicateOrExpired.get() + " duplicates/expired";
+        String res = "History test entries: " + saveThisRun.size() + " processed " + cntTestInvocations
+            + " invocations saved to DB " + duplicateOrExpired + " duplicates/expired";
 
         System.out.println(Thread.currentThread().getName() + ":" + res);
 
         return res;
     }
 
-    private void saveInvocationList(Set<Integer> confirmedNewBuild,
-        Set<Integer> confirmedDuplicate,
-        AtomicInteger invocations,
-        AtomicInteger duplicateOrExpired,
-        RunHistKey histKey,
-        List<Invocation> invocationList) {
-        List<Invocation> invocationsToSave = new ArrayList<>();
-        invocationList.forEach(
-            inv -> {
-                int buildId = inv.buildId();
-
-                if (confirmedNewBuild.contains(buildId)) {
-                    if (!InvocationData.isExpired(inv.startDate()))
-                        invocationsToSave.add(inv);
-
-                    return;
-                }
-
-                if (confirmedDuplicate.contains(buildId))
-                    return;
-
-                if (histDao.setBuildProcessed(histKey.srvId(), buildId, inv.startDate())) {
-                    confirmedNewBuild.add(buildId);
-
-                    if (!InvocationData.isExpired(inv.startDate()))
-                        invocationsToSave.add(inv);
-                }
-                else
-                    confirmedDuplicate.add(buildId);
-            }
-        );
-
-        Integer cntAdded = histDao.addTestInvocations(histKey, invocationsToSave);
-
-        invocations.addAndGet(cntAdded);
-        duplicateOrExpired.addAndGet(invocationList.size() - cntAdded);
+    /**
+     * @param processed Builds already saved to history.
+     * @param invocationList Invocations.
+     * @return Invocations of builds not saved to history before, expired invocations are skipped.
+     */
+    private static List<Invocation> newInvocations(Set<Integer> processed, List<Invocation> invocationList) {
+        return invocationList.stream()
+            .filter(inv -> !processed.contains(inv.buildId()))
+            .filter(inv -> !InvocationData.isExpired(inv.startDate()))
+            .collect(Collectors.toList());
     }
 
     public void invokeLaterFindMissingHistory(String srvName) {
@@ -322,6 +299,7 @@ public class RunHistSync {
      * Scope of work: builds to be loaded from a connection.
      */
     private static class SyncTask {
+        private Map<Integer, Long> builds = new HashMap<>();
         private Map<RunHistKey, List<Invocation>> suites = new HashMap<>();
         private AtomicInteger testCnt = new AtomicInteger();
         private Map<RunHistKey, List<Invocation>> tests = new HashMap<>();
@@ -333,13 +311,26 @@ public class RunHistSync {
         public void addLater(Map<RunHistKey, List<Invocation>> testInvMap,
             int testCnt, RunHistKey buildInvKey,
             Invocation buildInv) {
+            builds.put(buildInv.buildId(), buildInv.startDate());
             suites
                 .computeIfAbsent(buildInvKey, k -> new ArrayList<>())
                 .add(buildInv);
-            tests.putAll(testInvMap);
+            testInvMap.forEach((histKey, list) -> tests.merge(histKey, list, (l1, l2) -> {
+                l1.addAll(l2);
+
+                return l1;
+            }));
             this.testCnt.addAndGet(testCnt);
         }
 
+        private Map<Integer, Long> takeBuilds() {
+            Map<Integer, Long> buildsThisRun = builds;
+
+            builds = new HashMap<>();
+
+            return buildsThisRun;
+        }
+
         private Map<RunHistKey, List<Invocation>> takeTests() {
             Map<RunHistKey, List<Invocation>> saveThisRun = tests;
 
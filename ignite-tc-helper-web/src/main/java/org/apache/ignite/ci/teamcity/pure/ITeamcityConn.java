@@ -20,6 +20,7 @@ package org.apache.ignite.ci.teamcity.pure;
 import java.util.List;
 import java.util.SortedSet;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -34,6 +35,7 @@ import org.apache.ignite.ci.tcmodel.mute.MuteInfo;
 import org.apache.ignite.ci.tcmodel.result.Build;
 import org.apache.ignite.ci.tcmodel.result.problems.ProblemOccurrences;
 import org.apache.ignite.ci.tcmodel.result.stat.Statistics;
+import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrenceFull;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrencesFull;
 
 /**
@@ -63,6 +65,14 @@ public interface ITeamcityConn {
      */
     public List<BuildRef> getBuildRefsPage(String fullUrl, AtomicReference<String> nextPage);
 
+    /**
+     * Loads first page of builds after given one. Next pages should be loaded by {@link #getBuildRefsPage}.
+     *
+     * @param sinceBuildId Only builds having greater ID are returned.
+     * @param nextPage Next page.
+     */
+    public List<BuildRef> getBuildRefsSincePage(int sinceBuildId, AtomicReference<String> nextPage);
+
     /**
      * @param buildTypeId Build type id.
      * @param fullUrl Full url.
@@ -79,6 +89,39 @@ public interface ITeamcityConn {
      */
     public TestOccurrencesFull getTestsPage(int buildId, @Nullable String href, boolean testDtls);
 
+    /**
+     * Loads first page of test occurrences reported after given count of occurrences, next pages are loaded using
+     * {@link #getTestsPage(int, String, boolean)}.
+     *
+     * @param buildId Build id.
+     * @param start Count of test occurrences to skip.
+     * @param testDtls Query test details.
+     */
+    public TestOccurrencesFull getTestsPageFrom(int buildId, int start, boolean testDtls);
+
+    /**
+     * Loads page of test occurrences, each occurrence is passed to consumer as soon as it is parsed, so the whole page
+     * is not kept in memory. Default implementation loads the page using {@link #getTestsPage(int, String, boolean)}
+     * or {@link #getTestsPageFrom(int, int, boolean)}.
+     *
+     * @param buildId Build id.
+     * @param href Href. Null activates first page loaded.
+     * @param start Count of test occurrences to skip, used only for the first page.
+     * @param testDtls Query test details.
+     * @param consumer Consumer of test occurrences.
+     * @return Href of the next page, null if there is no next page.
+     */
+    @Nullable public default String streamTestsPage(int buildId, @Nullable String href, int start, boolean testDtls,
+        Consumer<TestOccurrenceFull> consumer) {
+        TestOccurrencesFull page = href == null && start > 0
+            ? getTestsPageFrom(buildId, start, testDtls)
+            : getTestsPage(buildId, href, testDtls);
+
+        page.getTests().forEach(consumer);
+
+        return page.nextHref();
+    }
+
     /**
      * Trigger build.
      *
@@ -17,27 +17,43 @@
 
 package org.apache.ignite.ci.util;
 
+import com.google.common.base.Throwables;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
 
 /**
  * Class with util method for custom strings deduplication (intern analogue).
  */
 public class ObjectInterner {
+    /** Max count of strings in the pool, check hit rate in {@link #statistics()} before changing. */
+    public static final int STRINGS_POOL_SIZE = 67537;
+
+    /** Longer strings are rarely duplicated, so these are not interned. */
+    public static final int MAX_INTERNED_LENGTH = 300;
+
+    /** Package of classes which fields are interned recursively. */
+    private static final String MODEL_PACKAGE = "org.apache.ignite.ci";
+
     /** String cache. */
     private static final LoadingCache<String, String> stringCache
         = CacheBuilder
         .<String, String>newBuilder()
-        .maximumSize(67537)
-        .initialCapacity(67537)
+        .maximumSize(STRINGS_POOL_SIZE)
+        .initialCapacity(STRINGS_POOL_SIZE)
+        .recordStats()
         .build(
             new CacheLoader<String, String>() {
                 @Override public String load(String key) {
@@ -46,6 +62,22 @@ public class ObjectInterner {
             }
         );
 
+    /** Field accessors, fields are looked up by reflection only once per class. */
+    private static final ClassValue<FieldAccessor[]> accessors = new ClassValue<FieldAccessor[]>() {
+        @Override protected FieldAccessor[] computeValue(Class<?> cls) {
+            List<FieldAccessor> res = new ArrayList<>();
+
+            for (Class<?> c = cls; c != null && isModelClass(c); c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive())
+                        res.add(new FieldAccessor(field));
+                }
+            }
+
+            return res.toArray(new FieldAccessor[0]);
+        }
+    };
+
     /**
      * @param str String.
      */
@@ -53,7 +85,7 @@ public class ObjectInterner {
         if (str == null)
             return null;
 
-        if (str.length() > 300)
+        if (str.length() > MAX_INTERNED_LENGTH)
             return str;
 
         try {
@@ -64,69 +96,162 @@ public class ObjectInterner {
         }
     }
 
-    public static int internFields(Object obj) {
+    /**
+     * Interns string fields of object, objects referenced by fields are not processed.
+     *
+     * @param obj Object.
+     * @return Count of fields, which were replaced by value from the pool.
+     */
+    public static int internStrings(@Nullable Object obj) {
         if (obj == null)
             return 0;
 
-        Field[] fields = obj.getClass().getDeclaredFields();
-        AtomicInteger compressed = new AtomicInteger();
+        int compressed = 0;
 
-        for (Field field : fields) {
-            if(Modifier.isStatic(field.getModifiers()))
-                continue;
+        for (FieldAccessor accessor : accessors.get(obj.getClass())) {
+            if (accessor.setter != null && accessor.internString(obj))
+                compressed++;
+        }
 
-            field.setAccessible(true);
+        return compressed;
+    }
 
+    /**
+     * Interns string fields of object and of all model objects referenced from it, including elements of collections
+     * and values of maps.
+     *
+     * @param obj Object.
+     * @return Count of fields, which were replaced by value from the pool.
+     */
+    public static int internFields(@Nullable Object obj) {
+        if (obj == null)
+            return 0;
 
-            try {
-                Object fldVal = field.get(obj);
-                if (fldVal == null)
-                    continue;
+        int compressed = 0;
 
-                if(!Modifier.isFinal(field.getModifiers())) {
-                    if (fldVal instanceof String) {
-                        String exist = (String)fldVal;
-                        String intern = internString(exist);
+        for (FieldAccessor accessor : accessors.get(obj.getClass())) {
+            if (accessor.setter != null) {
+                if (accessor.internString(obj))
+                    compressed++;
 
-                        //noinspection StringEquality
-                        if (intern != exist) {
-                            compressed.incrementAndGet();
+                continue;
+            }
 
-                            field.set(obj, intern);
-                        }
+            Object fldVal = accessor.get(obj);
+
+            if (fldVal == null)
+                continue;
 
-                        continue;
-                    }
+            if (isModelClass(fldVal.getClass()))
+                compressed += internFields(fldVal);
+            else if (fldVal instanceof Collection) {
+                for (Object next : (Collection<?>)fldVal) {
+                    if (next != null && isModelClass(next.getClass()))
+                        compressed += internFields(next);
                 }
+            }
+            else if (fldVal instanceof Map) {
+                for (Object val : ((Map<?, ?>)fldVal).values()) {
+                    if (val != null && isModelClass(val.getClass()))
+                        compressed += internFields(val);
+                }
+            }
+        }
 
-                if (fldVal.getClass().getPackage().getName().startsWith("org.apache.ignite.ci"))
-                    compressed.addAndGet(internFields(fldVal));
-                else if (fldVal instanceof Collection) {
-                    Collection collection = (Collection)fldVal;
+        return compressed;
+    }
 
-                    for (Object next : collection) {
-                        if (next.getClass().getPackage().getName().startsWith("org.apache.ignite.ci"))
-                            compressed.addAndGet(internFields(next));
-                    }
-                }
-                else if(fldVal instanceof Map) {
-                    Map map = (Map)fldVal;
+    /**
+     * @return Strings pool statistics: size, requests, hit rate and evictions.
+     */
+    public static String statistics() {
+        CacheStats stats = stringCache.stats();
 
-                    Set<Map.Entry> set = map.entrySet();
+        return "Interned strings: " + stringCache.size() + " of " + STRINGS_POOL_SIZE +
+            ", requests: " + stats.requestCount() +
+            ", hit rate: " + String.format("%.3f", stats.hitRate()) +
+            ", evictions: " + stats.evictionCount();
+    }
 
-                    for (Map.Entry  nextEntry : set) {
-                        Object val = nextEntry.getValue();
+    /**
+     * @param cls Class.
+     */
+    private static boolean isModelClass(Class<?> cls) {
+        return cls.getName().startsWith(MODEL_PACKAGE);
+    }
 
-                        if (val.getClass().getPackage().getName().startsWith("org.apache.ignite.ci"))
-                            compressed.addAndGet(internFields(val));
-                    }
-                }
+    /**
+     * Field getter and setter, setter is created only for non-final string fields.
+     */
+    private static class FieldAccessor {
+        /** Getter: (Object)Object. */
+        private final MethodHandle getter;
+
+        /** Setter: (Object, Object)void, null if field is not interned. */
+        @Nullable private final MethodHandle setter;
+
+        /**
+         * @param field Field.
+         */
+        FieldAccessor(Field field) {
+            field.setAccessible(true);
+
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+            try {
+                getter = lookup.unreflectGetter(field)
+                    .asType(MethodType.methodType(Object.class, Object.class));
+
+                setter = field.getType() == String.class && !Modifier.isFinal(field.getModifiers())
+                    ? lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class))
+                    : null;
             }
             catch (IllegalAccessException e) {
-                e.printStackTrace();
+                throw ExceptionUtil.propagateException(e);
             }
         }
 
-        return compressed.get();
+        /**
+         * @param obj Object.
+         * @return Field value.
+         */
+        Object get(Object obj) {
+            try {
+                return (Object)getter.invokeExact(obj);
+            }
+            catch (Throwable e) {
+                Throwables.throwIfUnchecked(e);
+
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * @param obj Object.
+         * @return {@code True} if field value was replaced by value from the pool.
+         */
+        boolean internString(Object obj) {
+            String exist = (String)get(obj);
+
+            if (exist == null)
+                return false;
+
+            String intern = ObjectInterner.internString(exist);
+
+            //noinspection StringEquality
+            if (intern == exist)
+                return false;
+
+            try {
+                setter.invokeExact(obj, (Object)intern);
+            }
+            catch (Throwable e) {
+                Throwables.throwIfUnchecked(e);
+
+                throw new IllegalStateException(e);
+            }
+
+            return true;
+        }
     }
 }
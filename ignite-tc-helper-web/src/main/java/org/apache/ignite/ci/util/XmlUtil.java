@@ -19,11 +19,18 @@ package org.apache.ignite.ci.util;
 
 import java.io.Reader;
 import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 /**
  * Created by dpavlov on 27.07.2017
@@ -32,13 +39,96 @@ public class XmlUtil {
     /** Cached context to save time on creation ctx each time. */
     private static ConcurrentHashMap<Class, JAXBContext> cachedCtx = new ConcurrentHashMap<>();
 
+    /**
+     * Factories of streaming readers, DTDs and external entities are not processed. Factory is created per thread:
+     * JAXP factories are not guaranteed to be thread safe.
+     */
+    private static final ThreadLocal<XMLInputFactory> xmlInputFactory = ThreadLocal.withInitial(() -> {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+
+        return factory;
+    });
+
+    /** Interns strings of each object as soon as it is unmarshalled, so object graph is not traversed afterwards. */
+    private static final Unmarshaller.Listener internListener = new Unmarshaller.Listener() {
+        @Override public void afterUnmarshal(Object target, Object parent) {
+            ObjectInterner.internStrings(target);
+        }
+    };
+
     public static <T> T load(Class<T> tCls, Reader reader) throws JAXBException {
         Unmarshaller unmarshaller = getContext(tCls).createUnmarshaller();
-        T unmarshal = (T)unmarshaller.unmarshal(reader);
+        unmarshaller.setListener(internListener);
+
+        return (T)unmarshaller.unmarshal(reader);
+    }
+
+    /**
+     * Parses document element by element: each child of root element having given name is unmarshalled and passed to
+     * consumer, so object tree of the whole document is never created.
+     *
+     * @param reader Reader.
+     * @param elemName Name of root element children to unmarshal, other children are skipped.
+     * @param elemCls Class of element.
+     * @param intern Intern string fields of elements, should be disabled if elements are compacted by consumer.
+     * @param consumer Consumer of elements, called in document order.
+     * @return Attributes of root element.
+     */
+    public static <E> Map<String, String> loadElements(Reader reader, String elemName, Class<E> elemCls,
+        boolean intern, Consumer<? super E> consumer) throws JAXBException {
+        Unmarshaller unmarshaller = getContext(elemCls).createUnmarshaller();
+
+        if (intern)
+            unmarshaller.setListener(internListener);
+
+        Map<String, String> rootAttrs = new HashMap<>();
 
-        ObjectInterner.internFields(unmarshal);
+        try {
+            XMLStreamReader xsr = xmlInputFactory.get().createXMLStreamReader(reader);
+
+            try {
+                int depth = 0;
+                int evt = xsr.getEventType();
+
+                while (true) {
+                    if (evt == XMLStreamConstants.START_ELEMENT) {
+                        if (depth == 1 && elemName.equals(xsr.getLocalName())) {
+                            consumer.accept(unmarshaller.unmarshal(xsr, elemCls).getValue());
+
+                            // Reader is already positioned after end of element.
+                            evt = xsr.getEventType();
+
+                            continue;
+                        }
+
+                        if (depth == 0) {
+                            for (int i = 0; i < xsr.getAttributeCount(); i++)
+                                rootAttrs.put(xsr.getAttributeLocalName(i), xsr.getAttributeValue(i));
+                        }
+
+                        depth++;
+                    }
+                    else if (evt == XMLStreamConstants.END_ELEMENT)
+                        depth--;
+
+                    if (!xsr.hasNext())
+                        break;
+
+                    evt = xsr.next();
+                }
+            }
+            finally {
+                xsr.close();
+            }
+        }
+        catch (XMLStreamException e) {
+            throw new JAXBException(e.getMessage(), e);
+        }
 
-        return unmarshal;
+        return rootAttrs;
     }
 
     public static String save(Object obj) throws JAXBException {
@@ -30,6 +30,10 @@ import org.apache.ignite.ci.di.IgniteTcBotModule;
 import org.apache.ignite.ci.di.scheduler.IScheduler;
 import org.apache.ignite.ci.observer.BuildObserver;
 import org.apache.ignite.ci.tcbot.issue.IssueDetector;
+import org.apache.ignite.ci.teamcity.ignited.IStringCompactor;
+import org.apache.ignite.ci.teamcity.ignited.IgniteStringCompactor;
+import org.apache.ignite.ci.teamcity.ignited.buildref.BuildRefSync;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.ProactiveFatBuildSync;
 import org.apache.ignite.ci.teamcity.pure.TeamcityRecorder;
 import org.apache.ignite.ci.teamcity.restcached.ITcServerProvider;
 
@@ -82,6 +86,8 @@ public class CtxListener implements ServletContextListener {
 
             injector.getInstance(IssueDetector.class).stop();
             injector.getInstance(TcUpdatePool.class).stop();
+            injector.getInstance(BuildRefSync.class).stop();
+            injector.getInstance(ProactiveFatBuildSync.class).stop();
             injector.getInstance(BuildObserver.class).stop();
 
             injector.getInstance(IScheduler.class).stop();
@@ -97,6 +103,11 @@ public class CtxListener implements ServletContextListener {
         }
 
 
+        IStringCompactor compactor = injector.getInstance(IStringCompactor.class);
+
+        if (compactor instanceof IgniteStringCompactor)
+            ((IgniteStringCompactor)compactor).stop();
+
         try {
             TcHelperDb.stop(injector.getInstance(Ignite.class));
         } catch (Exception e) {
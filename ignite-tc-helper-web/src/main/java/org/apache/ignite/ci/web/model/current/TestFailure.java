@@ -122,6 +122,11 @@ import static org.apache.ignite.ci.web.model.current.SuiteCurrentStatus.branchFo
         failure.getOccurrences().forEach(full -> {
             String details = full.details;
 
+            // Details are saved out of fat build and are loaded only for failure view.
+            if (Strings.isNullOrEmpty(details) && full.isFailedTest() && full.build != null
+                && full.build.getId() != null && full.test != null && full.test.id != null)
+                details = tcIgn.getTestDetails(full.build.getId(), Long.parseLong(full.test.id));
+
             if (details != null) {
                 if (webIssueUrl == null)
                     checkAndFillByPrefix(details, "https://issues.apache.org/jira/browse/");
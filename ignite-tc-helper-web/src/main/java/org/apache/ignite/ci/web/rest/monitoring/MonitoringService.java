@@ -23,6 +23,8 @@ import org.apache.ignite.cache.CacheMetrics;
 import org.apache.ignite.cache.affinity.Affinity;
 import org.apache.ignite.ci.di.AutoProfilingInterceptor;
 import org.apache.ignite.ci.di.MonitoredTaskInterceptor;
+import org.apache.ignite.ci.teamcity.ignited.StringsDictionaryGc;
+import org.apache.ignite.ci.util.ObjectInterner;
 import org.apache.ignite.ci.web.CtxListener;
 
 import javax.annotation.security.PermitAll;
@@ -97,6 +99,23 @@ public class MonitoringService {
     }
 
 
+    @GET
+    @PermitAll
+    @Path("internerStats")
+    public SimpleResult getInternerStats() {
+        return new SimpleResult(ObjectInterner.statistics());
+    }
+
+    @GET
+    @PermitAll
+    @Path("stringsGcStats")
+    public SimpleResult getStringsGcStats() {
+        StringsDictionaryGc gc = CtxListener.getInjector(ctx).getInstance(StringsDictionaryGc.class);
+
+        return new SimpleResult("Strings removed: " + gc.reclaimedStrings() + ", bytes reclaimed: "
+            + gc.reclaimedBytes());
+    }
+
     @GET
     @PermitAll
     @Path("cacheMetrics")
@@ -17,6 +17,7 @@
 package org.apache.ignite.ci.tcbot.chain;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
@@ -24,6 +25,7 @@ import com.google.inject.internal.SingletonScope;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import org.apache.ignite.ci.IAnalyticsEnabledTeamcity;
 import org.apache.ignite.ci.ITeamcity;
@@ -41,13 +43,20 @@ import org.apache.ignite.ci.teamcity.ignited.InMemoryStringCompactor;
 import org.apache.ignite.ci.teamcity.ignited.SyncMode;
 import org.apache.ignite.ci.teamcity.ignited.TeamcityIgnitedMock;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildCompacted;
+import org.apache.ignite.ci.util.FutureUtil;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 import org.mockito.Mockito;
 
 import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertSame;
 import static junit.framework.TestCase.assertTrue;
 import static junit.framework.TestCase.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 /**
  * Test for chain processor
@@ -164,6 +173,75 @@ public class BuildChainProcessorTest {
         assertTrue(suiteMultCtx.failedTests() >= 1);
     }
 
+    /**
+     *
+     */
+    @Test
+    public void testChainBuildsLoadedFullyOnlyIfRequired() {
+        IStringCompactor c = injector.getInstance(IStringCompactor.class);
+        BuildChainProcessor bcp = injector.getInstance(BuildChainProcessor.class);
+
+        Map<Integer, FatBuildCompacted> builds = new HashMap<>();
+
+        List<Integer> entry = Lists.newArrayList();
+        addTestBuild(c, builds, entry, 0);
+
+        ITeamcityIgnited tcIgnited = tcIgnitedMock(builds);
+
+        Map<Integer, Future<FatBuildCompacted>> res = bcp.loadAllBuildsInChains(entry, SyncMode.RELOAD_QUEUED,
+            tcIgnited, proj -> !"RunAll".equals(proj.buildTypeId(c)));
+
+        assertEquals(Sets.newHashSet(100, 200), res.keySet());
+        assertSame(builds.get(100), FutureUtil.getResult(res.get(100)));
+
+        // Builds loaded to get projections are reused.
+        verify(tcIgnited, never()).getFatBuild(anyInt(), any(SyncMode.class));
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testTopLongRunningTestsAggregatedFromColumns() {
+        IStringCompactor c = injector.getInstance(IStringCompactor.class);
+        BuildChainProcessor bcp = injector.getInstance(BuildChainProcessor.class);
+
+        Map<Integer, FatBuildCompacted> builds = new HashMap<>();
+
+        FatBuildCompacted root = testFatBuild(c, 0, "RunAll");
+        root.snapshotDependencies(new int[] {300});
+        builds.put(root.id(), root);
+
+        FatBuildCompacted suite = testFatBuild(c, 300, "Pds3");
+        Integer[] durations = {10, 50, 30, null, 40};
+        List<TestOccurrenceFull> tests = Lists.newArrayList();
+
+        for (int i = 0; i < durations.length; i++) {
+            TestOccurrenceFull t = new TestOccurrenceFull();
+            t.name = "testLong" + i;
+            t.status = TestOccurrence.STATUS_SUCCESS;
+            t.duration = durations[i];
+            tests.add(t);
+        }
+
+        suite.addTests(c, tests);
+        builds.put(suite.id(), suite);
+
+        FullChainRunCtx ctx = bcp.loadFullChainContext(tcOldMock(), tcIgnitedMock(builds),
+            Lists.newArrayList(root.id()),
+            LatestRebuildMode.LATEST, ProcessLogsMode.DISABLED, false, ITeamcity.DEFAULT, SyncMode.NONE);
+
+        MultBuildRunCtx suiteCtx = ctx.suites().filter(s -> "Pds3".equals(s.suiteId())).findAny().orElse(null);
+        assertNotNull(suiteCtx);
+
+        List<String> top = suiteCtx.getTopLongRunning()
+            .map(IMultTestOccurrence::getName)
+            .collect(Collectors.toList());
+
+        assertEquals(Sets.newHashSet("testLong1", "testLong4", "testLong2"), Sets.newHashSet(top));
+        assertEquals(Long.valueOf(130), suiteCtx.getAvgTestsDuration());
+    }
+
     public void addTestBuild(IStringCompactor c, Map<Integer, FatBuildCompacted> builds, List<Integer> entry, int i) {
         FatBuildCompacted root = testFatBuild(c, i, "RunAll");
         entry.add(root.id());
@@ -16,36 +16,56 @@
  */
 package org.apache.ignite.ci.teamcity.ignited;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.internal.SingletonScope;
+import com.google.inject.util.Modules;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import javax.xml.bind.JAXBException;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
 import org.apache.ignite.Ignition;
 import org.apache.ignite.ci.ITeamcity;
+import org.apache.ignite.ci.analysis.MultBuildRunCtx;
+import org.apache.ignite.ci.analysis.SingleBuildRunCtx;
 import org.apache.ignite.ci.analysis.SuiteInBranch;
 import org.apache.ignite.ci.analysis.TestInBranch;
+import org.apache.ignite.ci.db.DbMigrations;
+import org.apache.ignite.ci.db.ServerAffinityFunction;
 import org.apache.ignite.ci.db.TcHelperDb;
 import org.apache.ignite.ci.di.scheduler.DirectExecNoWaitScheduler;
 import org.apache.ignite.ci.di.scheduler.IScheduler;
+import org.apache.ignite.ci.issue.EventTemplate;
 import org.apache.ignite.ci.jira.pure.IJiraIntegrationProvider;
 import org.apache.ignite.ci.tcbot.chain.PrChainsProcessorTest;
 import org.apache.ignite.ci.tcbot.conf.ITcBotConfig;
@@ -59,18 +79,33 @@ import org.apache.ignite.ci.tcmodel.mute.MuteInfo;
 import org.apache.ignite.ci.tcmodel.mute.Mutes;
 import org.apache.ignite.ci.tcmodel.result.Build;
 import org.apache.ignite.ci.tcmodel.result.Triggered;
+import org.apache.ignite.ci.tcmodel.result.TestOccurrencesRef;
 import org.apache.ignite.ci.tcmodel.result.problems.ProblemOccurrence;
 import org.apache.ignite.ci.tcmodel.result.problems.ProblemOccurrences;
 import org.apache.ignite.ci.tcmodel.result.stat.Statistics;
+import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrence;
+import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrenceFull;
 import org.apache.ignite.ci.tcmodel.result.tests.TestOccurrencesFull;
+import org.apache.ignite.ci.tcmodel.result.tests.TestRef;
 import org.apache.ignite.ci.tcmodel.vcs.Revision;
 import org.apache.ignite.ci.tcmodel.vcs.Revisions;
 import org.apache.ignite.ci.teamcity.ignited.buildref.BuildRefDao;
+import org.apache.ignite.ci.teamcity.ignited.buildref.BuildRefSync;
+import org.apache.ignite.ci.teamcity.ignited.buildtype.BuildTypeDao;
 import org.apache.ignite.ci.teamcity.ignited.buildtype.BuildTypeRefCompacted;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildCompacted;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildDao;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildProjection;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.ProactiveFatBuildSync;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.TestCompacted;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.TestDetailsDao;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.TestDetailsDictionary;
+import org.apache.ignite.ci.teamcity.ignited.mute.MuteDao;
+import org.apache.ignite.ci.teamcity.ignited.runhist.Invocation;
+import org.apache.ignite.ci.teamcity.ignited.runhist.InvocationData;
+import org.apache.ignite.ci.teamcity.ignited.runhist.RunHistCompacted;
 import org.apache.ignite.ci.teamcity.ignited.runhist.RunHistCompactedDao;
+import org.apache.ignite.ci.teamcity.ignited.runhist.RunHistKey;
 import org.apache.ignite.ci.teamcity.ignited.runhist.RunHistSync;
 import org.apache.ignite.ci.teamcity.pure.BuildHistoryEmulator;
 import org.apache.ignite.ci.teamcity.pure.ITeamcityConn;
@@ -78,6 +113,8 @@ import org.apache.ignite.ci.teamcity.pure.ITeamcityHttpConnection;
 import org.apache.ignite.ci.teamcity.restcached.ITcServerFactory;
 import org.apache.ignite.ci.user.ICredentialsProv;
 import org.apache.ignite.ci.util.XmlUtil;
+import org.apache.ignite.ci.web.model.current.TestFailure;
+import org.apache.ignite.internal.util.GridConcurrentHashSet;
 import org.apache.ignite.configuration.IgniteConfiguration;
 import org.apache.ignite.spi.discovery.tcp.TcpDiscoverySpi;
 import org.jetbrains.annotations.NotNull;
@@ -85,18 +122,31 @@ import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNotSame;
 import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertSame;
 import static junit.framework.TestCase.assertTrue;
 import static org.apache.ignite.ci.HelperConfig.ensureDirExist;
 import static org.apache.ignite.ci.teamcity.ignited.IgniteStringCompactor.STRINGS_CACHE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -146,6 +196,8 @@ public class IgnitedTcInMemoryIntegrationTest {
     public void clearIgniteCaches() {
         clearCache(BuildRefDao.TEAMCITY_BUILD_CACHE_NAME);
         clearCache(FatBuildDao.TEAMCITY_FAT_BUILD_CACHE_NAME);
+        clearCache(TestDetailsDao.TEAMCITY_TEST_DETAILS_CACHE_NAME);
+        clearCache(BuildRefDao.TEAMCITY_BUILD_REF_WATERMARK_CACHE_NAME);
     }
 
     /**
@@ -459,6 +511,13 @@ public class IgnitedTcInMemoryIntegrationTest {
 
         FatBuildCompacted fatBuild = stor.getFatBuild(srvIdMaskHigh, 2153237);
 
+        FatBuildProjection projection = stor.getFatBuildProjection(srvIdMaskHigh, 2153237);
+
+        assertEquals(new FatBuildProjection(fatBuild), projection);
+        assertFalse(projection.isFakeStub());
+        assertFalse(projection.isOutdatedEntityVersion());
+        assertNull(stor.getFatBuildProjection(srvIdMaskHigh, 2153238));
+
         IStringCompactor compactor = injector.getInstance(IStringCompactor.class);
 
         Build actBuild = fatBuild.toBuild(compactor);
@@ -500,6 +559,27 @@ public class IgnitedTcInMemoryIntegrationTest {
         Set<String> testNamesRef = new TreeSet<>();
         testsRef.getTests().forEach(testOccurrence -> testNamesRef.add(testOccurrence.name));
         assertEquals(testNamesRef, testNamesAct);
+        assertEquals(testsRef.getTests().size(), fatBuild.getTestsCount());
+
+        Set<String> failedRef = testsRef.getTests().stream()
+            .filter(t -> !"SUCCESS".equals(t.status) && !Boolean.TRUE.equals(t.muted)
+                && !Boolean.TRUE.equals(t.ignored))
+            .map(t -> t.name)
+            .collect(Collectors.toCollection(TreeSet::new));
+
+        assertEquals(failedRef,
+            fatBuild.getFailedNotMutedTestNames(compactor).collect(Collectors.toCollection(TreeSet::new)));
+        assertEquals(testsRef.getTests().stream().filter(t -> Boolean.TRUE.equals(t.muted)).count(),
+            fatBuild.getAllTests().filter(TestCompacted::isMutedTest).count());
+
+        TestOccurrenceFull withDetails = testsRef.getTests().stream()
+            .filter(t -> !Strings.isNullOrEmpty(t.details))
+            .findFirst()
+            .orElseThrow(IllegalStateException::new);
+
+        assertTrue(testsAct.getTests().stream().allMatch(t -> Strings.isNullOrEmpty(t.details)));
+        assertEquals(withDetails.details.trim(), stor.getTestDetails(srvIdMaskHigh, withDetails.build.getId(),
+            Long.parseLong(withDetails.test.id)).trim());
 
         final List<ProblemOccurrence> problems = buildCompacted.problems(compactor);
         assertEquals(2, problems.size());
@@ -550,6 +630,46 @@ public class IgnitedTcInMemoryIntegrationTest {
         return refBuild;
     }
 
+    @Test
+    public void testTestOccurrencesParsedElementByElement() throws IOException, JAXBException {
+        TestOccurrencesFull ref = jaxbTestXml("/testList.xml", TestOccurrencesFull.class);
+
+        List<TestOccurrenceFull> streamed = new ArrayList<>();
+        Map<String, String> attrs;
+
+        try (InputStream stream = getClass().getResourceAsStream("/testList.xml")) {
+            attrs = XmlUtil.loadElements(new InputStreamReader(stream), "testOccurrence", TestOccurrenceFull.class,
+                false, streamed::add);
+        }
+
+        assertEquals(ref.nextHref(), attrs.get("nextHref"));
+        assertEquals(ref.getTests().size(), streamed.size());
+
+        for (int i = 0; i < streamed.size(); i++) {
+            TestOccurrenceFull exp = ref.getTests().get(i);
+            TestOccurrenceFull act = streamed.get(i);
+
+            assertEquals(exp.getId(), act.getId());
+            assertEquals(exp.name, act.name);
+            assertEquals(exp.status, act.status);
+            assertEquals(exp.duration, act.duration);
+            assertEquals(exp.details, act.details);
+            assertEquals(exp.test.id, act.test.id);
+            assertEquals(exp.build.getId(), act.build.getId());
+        }
+    }
+
+    @Test
+    public void testStringsInternedWhileUnmarshalled() throws IOException, JAXBException {
+        Build build1 = jaxbTestXml("/build.xml", Build.class);
+        Build build2 = jaxbTestXml("/build.xml", Build.class);
+
+        assertNotSame(build1, build2);
+        assertSame(build1.buildTypeId(), build2.buildTypeId());
+        assertSame(build1.getBuildType().getProjectId(), build2.getBuildType().getProjectId());
+        assertSame(build1.getTriggered().getUser().username, build2.getTriggered().getUser().username);
+    }
+
     @Test
     public void testRunHistSaveLoad() {
         Injector injector = Guice.createInjector(new TeamcityIgnitedModule(), new IgniteAndSchedulerTestModule());
@@ -592,6 +712,151 @@ public class IgnitedTcInMemoryIntegrationTest {
         assertEquals(0.5, cache1HistAllBranch.getFailRate(), 0.05);
     }
 
+    @Test
+    public void testRunHistInvocationsSortedByBuild() {
+        long now = System.currentTimeMillis();
+        long expired = now - TimeUnit.DAYS.toMillis(InvocationData.MAX_DAYS + 1);
+
+        RunHistCompacted hist = new RunHistCompacted();
+
+        int[] buildIds = {110, 100, 130, 120, 105, 140, 150, 160, 170, 180, 190};
+
+        for (int i = 0; i < buildIds.length; i++) {
+            int status = buildIds[i] == 120 ? InvocationData.FAILURE : InvocationData.OK;
+
+            assertTrue(hist.addInvocation(new Invocation(buildIds[i]).withStatus(status).withStartDate(now - i)
+                .withChanges(new int[0])));
+        }
+
+        assertFalse(hist.addInvocation(new Invocation(130).withStatus(InvocationData.FAILURE).withStartDate(now)));
+        assertFalse(hist.addInvocation(new Invocation(101).withStatus(InvocationData.OK).withStartDate(expired)));
+
+        assertEquals(buildIds.length, hist.getRunsAllHist());
+        assertEquals(1, hist.getFailuresAllHist());
+        assertEquals(buildIds.length, hist.getRunsCount());
+        assertEquals(1, hist.getFailuresCount());
+
+        List<Integer> expRuns = new ArrayList<>();
+        for (int i = 0; i < buildIds.length; i++)
+            expRuns.add(i == 3 ? InvocationData.FAILURE : InvocationData.OK);
+
+        assertEquals(expRuns, hist.getLatestRunResults());
+        assertNotNull(hist.getFlakyComments());
+
+        EventTemplate newFailure = new EventTemplate(
+            new int[] {InvocationData.OK, InvocationData.OK},
+            new int[] {InvocationData.FAILURE, InvocationData.OK});
+
+        assertEquals(Integer.valueOf(120), hist.detectTemplate(newFailure));
+
+        IgniteCache<Integer, RunHistCompacted> cache = ignite.getOrCreateCache("testRunHistInvocationsSortedByBuild");
+
+        cache.put(1, hist);
+
+        RunHistCompacted loaded = cache.get(1);
+
+        assertEquals(hist, loaded);
+        assertEquals(hist.hashCode(), loaded.hashCode());
+        assertEquals(expRuns, loaded.getLatestRunResults());
+    }
+
+    @Test
+    public void testRunHistBuildsMarkedProcessedOncePerFlush() {
+        IScheduler scheduler = Mockito.mock(IScheduler.class);
+
+        Injector injector = Guice.createInjector(new TeamcityIgnitedModule(),
+            Modules.override(new IgniteAndSchedulerTestModule())
+                .with(binder -> binder.bind(IScheduler.class).toInstance(scheduler)));
+
+        RunHistCompactedDao histDao = injector.getInstance(RunHistCompactedDao.class);
+        histDao.init();
+
+        IStringCompactor c = injector.getInstance(IStringCompactor.class);
+        RunHistSync histSync = injector.getInstance(RunHistSync.class);
+
+        int srvId = ITeamcityIgnited.serverIdToInt(APACHE);
+        String btId = "HistBatchSuite";
+        String testName = "HistBatchTest";
+        String branch = ITeamcity.DEFAULT;
+
+        List<FatBuildCompacted> builds = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            boolean passed = i != 1;
+
+            builds.add(PrChainsProcessorTest.createFatBuild(c, btId, branch, 7100 + i, 10000 - i, passed)
+                .addTests(c, Collections.singletonList(PrChainsProcessorTest.createTest(1L, testName, passed))));
+        }
+
+        builds.forEach(build -> histSync.saveToHistoryLater(APACHE, build));
+
+        ArgumentCaptor<Runnable> flush = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler, atLeastOnce()).sheduleNamed(anyString(), flush.capture(), anyLong(), any());
+
+        assertFalse(histDao.buildWasProcessed(srvId, 7100));
+
+        // Single flush saves invocations of all builds queued.
+        flush.getValue().run();
+
+        for (FatBuildCompacted build : builds)
+            assertTrue(histDao.buildWasProcessed(srvId, build.id()));
+
+        IRunHistory testHist = histDao.getTestRunHist(srvId, testName, branch);
+
+        assertNotNull(testHist);
+        assertEquals(3, testHist.getRunsCount());
+        assertEquals(1, testHist.getFailuresCount());
+
+        IRunHistory suiteHist = histDao.getSuiteRunHist(srvId, btId, branch);
+
+        assertNotNull(suiteHist);
+        assertEquals(3, suiteHist.getRunsCount());
+
+        // Builds already processed are not queued again.
+        histSync.saveToHistoryLater(APACHE, builds.get(0));
+        verify(scheduler, times(3)).sheduleNamed(anyString(), any(), anyLong(), any());
+    }
+
+    @Test
+    public void testRunHistInvocationsSavedByBatches() {
+        Injector injector = Guice.createInjector(new TeamcityIgnitedModule(), new IgniteAndSchedulerTestModule());
+
+        RunHistCompactedDao histDao = injector.getInstance(RunHistCompactedDao.class);
+        histDao.init();
+
+        IStringCompactor c = injector.getInstance(IStringCompactor.class);
+
+        int srvId = ITeamcityIgnited.serverIdToInt(APACHE);
+        String branch = ITeamcity.DEFAULT;
+        int branchId = c.getStringId(RunHistSync.normalizeBranch(branch));
+        long now = System.currentTimeMillis();
+
+        int keys = RunHistCompactedDao.INVOKE_BATCH_SIZE * 2 + 1;
+        Map<RunHistKey, List<Invocation>> invocations = new HashMap<>();
+
+        for (int i = 0; i < keys; i++) {
+            RunHistKey key = new RunHistKey(srvId, c.getStringId("HistBatchedTest" + i), branchId);
+
+            invocations.put(key, Arrays.asList(
+                new Invocation(7200).withStatus(InvocationData.OK).withStartDate(now),
+                new Invocation(7201).withStatus(i % 2 == 0 ? InvocationData.OK : InvocationData.FAILURE)
+                    .withStartDate(now)));
+        }
+
+        assertEquals(keys * 2, histDao.addTestInvocations(invocations));
+
+        // Saving is idempotent: invocations of the same builds are not added twice.
+        assertEquals(0, histDao.addTestInvocations(invocations));
+
+        for (int i : new int[] {0, 1, keys - 1}) {
+            IRunHistory hist = histDao.getTestRunHist(srvId, "HistBatchedTest" + i, branch);
+
+            assertNotNull(hist);
+            assertEquals(2, hist.getRunsCount());
+            assertEquals(i % 2, hist.getFailuresCount());
+        }
+    }
+
     @Test
     public void testHistoryBackgroundUpdateWorks() {
         Injector injector = Guice.createInjector(new TeamcityIgnitedModule(), new IgniteAndSchedulerTestModule());
@@ -704,6 +969,789 @@ public class IgnitedTcInMemoryIntegrationTest {
         assertTrue(checkNotNull(running4).isEmpty());
     }
 
+    @Test
+    public void testStringsDictionaryLoadedAfterRestart() {
+        IStringCompactor c1 = Guice.createInjector(new TeamcityIgnitedModule(), new IgniteAndSchedulerTestModule())
+            .getInstance(IStringCompactor.class);
+
+        int id = c1.getStringId("testStringsDictionaryLoadedAfterRestart");
+        int id2 = c1.getStringId("testStringsDictionaryLoadedAfterRestart2");
+
+        assertEquals("testStringsDictionaryLoadedAfterRestart", c1.getStringFromId(id));
+
+        IStringCompactor c2 = Guice.createInjector(new TeamcityIgnitedModule(), new IgniteAndSchedulerTestModule())
+            .getInstance(IStringCompactor.class);
+
+        assertEquals("testStringsDictionaryLoadedAfterRestart2", c2.getStringFromId(id2));
+        assertEquals(id, c2.getStringId("testStringsDictionaryLoadedAfterRestart"));
+
+        int id3 = c1.getStringId("testStringsDictionaryLoadedAfterRestart3");
+
+        assertEquals("testStringsDictionaryLoadedAfterRestart3", c2.getStringFromId(id3));
+        assertNull(c2.getStringFromId(id3 + 1000));
+    }
+
+    @Test
+    public void testStringsBatchCompaction() {
+        IStringCompactor c = Guice.createInjector(new TeamcityIgnitedModule(), new IgniteAndSchedulerTestModule())
+            .getInstance(IStringCompactor.class);
+
+        int existingId = c.getStringId("testStringsBatchCompaction0");
+
+        List<String> vals = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            vals.add("testStringsBatchCompaction" + i);
+        vals.add(null);
+
+        Map<String, Integer> ids = c.getStringIds(vals);
+
+        assertEquals(10, ids.size());
+        assertEquals(existingId, ids.get("testStringsBatchCompaction0").intValue());
+        assertEquals(10, new TreeSet<>(ids.values()).size());
+
+        ids.forEach((val, id) -> {
+            assertEquals(val, c.getStringFromId(id));
+            assertEquals(id.intValue(), c.getStringId(val));
+        });
+    }
+
+    @Test
+    public void testStringsGcRemovesUnreferenced() {
+        IStringCompactor c1 = Guice.createInjector(new TeamcityIgnitedModule(), new IgniteAndSchedulerTestModule())
+            .getInstance(IStringCompactor.class);
+
+        List<String> unreferenced = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            unreferenced.add("testStringsGcUnreferenced" + i);
+
+        Map<String, Integer> unreferencedIds = c1.getStringIds(unreferenced);
+        int referencedId = c1.getStringId("testStringsGcReferenced");
+        int heldId = c1.getStringId("testStringsGcHeld");
+        int keyRefId = c1.getStringId("testStringsGcKeyReferenced");
+
+        IgniteCache<Long, Integer> refs = ignite.getOrCreateCache("testStringsGcRefs");
+
+        refs.put(1L, referencedId);
+
+        // String ID packed into long key, as build type keys are.
+        refs.put(BuildTypeDao.buildTypeStringIdToCacheKey(ITeamcityIgnited.serverIdToInt(APACHE), keyRefId), 0);
+
+        Injector injector = Guice.createInjector(new TeamcityIgnitedModule(), new IgniteAndSchedulerTestModule());
+        IStringCompactor c2 = injector.getInstance(IStringCompactor.class);
+
+        assertEquals(heldId, c2.getStringId("testStringsGcHeld"));
+
+        StringsDictionaryGc gc = injector.getInstance(StringsDictionaryGc.class);
+
+        assertEquals(0, gc.reclaimedStrings());
+
+        String res = gc.collectGarbage();
+
+        assertEquals(referencedId, c2.getStringIdIfPresent("testStringsGcReferenced").intValue());
+        assertEquals(keyRefId, c2.getStringIdIfPresent("testStringsGcKeyReferenced").intValue());
+        assertEquals(heldId, c2.getStringIdIfPresent("testStringsGcHeld").intValue());
+
+        // Marking is conservative: other ints saved by tests may keep some strings.
+        int removed = 0;
+
+        for (Map.Entry<String, Integer> e : unreferencedIds.entrySet()) {
+            if (c2.getStringFromId(e.getValue()) != null)
+                continue;
+
+            assertNull(c2.getStringIdIfPresent(e.getKey()));
+            assertTrue(e.getValue() != c2.getStringId(e.getKey()));
+
+            removed++;
+        }
+
+        assertTrue(removed > 0);
+        assertTrue(gc.reclaimedStrings() >= removed);
+        assertTrue(gc.reclaimedBytes() >= removed * 2L * "testStringsGcUnreferenced0".length());
+        assertTrue(res, res.contains(" " + gc.reclaimedStrings() + " removed"));
+    }
+
+    @Test
+    public void testBuildRefsIndexMergedByChunks() {
+        Injector injector = Guice.createInjector(new TeamcityIgnitedModule(), new IgniteAndSchedulerTestModule());
+        BuildRefDao buildRefDao = injector.getInstance(BuildRefDao.class).init();
+
+        int srvId = ITeamcityIgnited.serverIdToInt(APACHE);
+        String btId = "IndexMerged";
+        String otherBranch = "refs/heads/indexMerged";
+
+        buildRefDao.saveChunk(srvId, Lists.newArrayList(
+            indexedRef(1500005, btId, ITeamcity.DEFAULT),
+            indexedRef(1500003, btId, ITeamcity.DEFAULT),
+            indexedRef(1500009, btId, ITeamcity.DEFAULT),
+            indexedRef(1500004, btId, otherBranch)));
+
+        // Build 1500009 is moved to other branch, 1500003 is not changed.
+        buildRefDao.saveChunk(srvId, Lists.newArrayList(
+            indexedRef(1500007, btId, ITeamcity.DEFAULT),
+            indexedRef(1500001, btId, ITeamcity.DEFAULT),
+            indexedRef(1500009, btId, otherBranch),
+            indexedRef(1500003, btId, ITeamcity.DEFAULT)));
+
+        assertEquals(Lists.newArrayList(1500001, 1500003, 1500005, 1500007),
+            buildRefDao.findBuildsInHistoryCompacted(srvId, btId, Collections.singletonList(ITeamcity.DEFAULT))
+                .stream().map(BuildRefCompacted::id).collect(Collectors.toList()));
+
+        assertEquals(Lists.newArrayList(1500004, 1500009),
+            buildRefDao.findBuildsInHistoryCompacted(srvId, btId, Collections.singletonList(otherBranch))
+                .stream().map(BuildRefCompacted::id).collect(Collectors.toList()));
+    }
+
+    /**
+     * @param id Build ID.
+     * @param btId Build type ID.
+     * @param branch Branch.
+     */
+    private static BuildRef indexedRef(int id, String btId, String branch) {
+        BuildRef ref = new BuildRef();
+
+        ref.setId(id);
+        ref.buildTypeId = btId;
+        ref.branchName = branch;
+        ref.state = BuildRef.STATE_FINISHED;
+        ref.status = BuildRef.STATUS_SUCCESS;
+
+        return ref;
+    }
+
+    @Test
+    public void testBuildRefsScannedPerServer() {
+        Injector injector = Guice.createInjector(new TeamcityIgnitedModule(), new IgniteAndSchedulerTestModule());
+        BuildRefDao buildRefDao = injector.getInstance(BuildRefDao.class).init();
+
+        int srv1 = ITeamcityIgnited.serverIdToInt(APACHE);
+        int srv2 = ITeamcityIgnited.serverIdToInt("private");
+
+        List<BuildRef> refs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            BuildRef ref = new BuildRef();
+            ref.buildTypeId = "Testbuild";
+            ref.branchName = ITeamcity.REFS_HEADS_MASTER;
+            ref.state = BuildRef.STATE_FINISHED;
+            ref.setId(1000 + i);
+            refs.add(ref);
+        }
+
+        buildRefDao.saveChunk(srv1, refs);
+        buildRefDao.saveChunk(srv2, refs.subList(0, 10));
+
+        assertEquals(100, buildRefDao.getAllIds(srv1).length);
+        assertEquals(10, buildRefDao.getAllIds(srv2).length);
+        assertEquals(10, buildRefDao.compactedBuildsForServer(srv2).count());
+
+        IgniteCache<Long, Object> cache = ignite.cache(BuildRefDao.TEAMCITY_BUILD_CACHE_NAME);
+        ServerAffinityFunction aff = ServerAffinityFunction.of(cache);
+        int[] srvParts = aff.serverPartitions(srv1);
+
+        assertEquals(aff.partitions() / ServerAffinityFunction.SRV_GROUPS, srvParts.length);
+
+        for (int id : buildRefDao.getAllIds(srv1)) {
+            int part = ignite.affinity(cache.getName()).partition(BuildRefDao.buildIdToCacheKey(srv1, id));
+
+            assertTrue(Arrays.stream(srvParts).anyMatch(p -> p == part));
+        }
+    }
+
+    @Test
+    public void testServerCacheMigratedFromPreviousVersion() {
+        String prevName = "teamcityMute";
+        String srvName = "migrationTest";
+
+        IgniteCache<Long, String> prev = ignite.getOrCreateCache(TcHelperDb.getCache8PartsConfig(prevName));
+        int srvId = ITeamcityIgnited.serverIdToInt(srvName);
+
+        Set<Long> keys = new HashSet<>();
+        for (long i = 0; i < 100; i++) {
+            long key = i | (long)srvId << 32;
+
+            prev.put(key, "Val" + i);
+            keys.add(key);
+        }
+
+        MuteDao.getOrCreateCache(ignite);
+        IgniteCache<Long, String> cache = ignite.cache(MuteDao.TEAMCITY_MUTE_CACHE_NAME);
+        assertFalse(cache.containsKeys(keys));
+
+        new DbMigrations(ignite, srvName).dataMigration(ignite.getOrCreateCache("testMigrationVisas"));
+
+        try {
+            assertFalse(ignite.cacheNames().contains(prevName));
+            assertEquals(100, cache.getAll(keys).size());
+            assertEquals("Val42", cache.get(42L | (long)srvId << 32));
+            assertEquals(100, ServerAffinityFunction.of(cache).entriesForServer(cache, srvId).count());
+        }
+        finally {
+            cache.removeAll(keys);
+        }
+    }
+
+    @Test
+    public void testFinishedBuildsFilteredByStoredStartTime() {
+        TeamcityIgnitedModule module = new TeamcityIgnitedModule();
+        module.overrideHttp(new ITeamcityHttpConnection() {
+            @Override public InputStream sendGet(String basicAuthTok, String url) throws IOException {
+                throw new FileNotFoundException(url);
+            }
+        });
+        // Background syncs are not started, so builds are resolved only from stored references.
+        Injector injector = Guice.createInjector(module, Modules.override(new IgniteAndSchedulerTestModule())
+            .with(binder -> binder.bind(IScheduler.class).toInstance(Mockito.mock(IScheduler.class))));
+
+        BuildRefDao buildRefDao = injector.getInstance(BuildRefDao.class).init();
+        ITeamcityIgnited srv = injector.getInstance(ITeamcityIgnitedProvider.class)
+            .server(APACHE, Mockito.mock(ICredentialsProv.class));
+
+        int srvIdInt = ITeamcityIgnited.serverIdToInt(APACHE);
+        long day = TimeUnit.DAYS.toMillis(1);
+        // TeamCity dates have seconds precision.
+        long start = TimeUnit.SECONDS.toMillis(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - 10 * day));
+
+        List<BuildRef> refs = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            BuildRef ref = new BuildRef();
+            ref.buildTypeId = "TimeIndexedBuild";
+            ref.branchName = ITeamcity.REFS_HEADS_MASTER;
+            ref.state = BuildRef.STATE_FINISHED;
+            ref.status = BuildRef.STATUS_SUCCESS;
+            ref.setId(2000 + i);
+            ref.setStartDateTs(start + i * day);
+            refs.add(ref);
+        }
+
+        // Start times are saved with build references.
+        buildRefDao.saveChunk(srvIdInt, refs);
+
+        assertEquals(start, checkNotNull(buildRefDao.getBuildStartTime(srvIdInt, 2000)).longValue());
+
+        // Dates are resolved locally, HTTP connection would fail for any build.
+        List<BuildRefCompacted> builds = srv.getFinishedBuildsCompacted("TimeIndexedBuild",
+            ITeamcity.DEFAULT, new Date(start + day), new Date(start + 3 * day));
+
+        assertEquals(Lists.newArrayList(2001, 2002, 2003),
+            builds.stream().map(BuildRefCompacted::id).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testMissingBuildStartTimesBackfilledFromStoredBuilds() {
+        TeamcityIgnitedModule module = new TeamcityIgnitedModule();
+        module.overrideHttp(new ITeamcityHttpConnection() {
+            @Override public InputStream sendGet(String basicAuthTok, String url) throws IOException {
+                throw new FileNotFoundException(url);
+            }
+        });
+        IScheduler scheduler = Mockito.mock(IScheduler.class);
+        Injector injector = Guice.createInjector(module, Modules.override(new IgniteAndSchedulerTestModule())
+            .with(binder -> binder.bind(IScheduler.class).toInstance(scheduler)));
+
+        BuildRefDao buildRefDao = injector.getInstance(BuildRefDao.class).init();
+        FatBuildDao fatBuildDao = injector.getInstance(FatBuildDao.class).init();
+        IStringCompactor c = injector.getInstance(IStringCompactor.class);
+        ITeamcityIgnited srv = injector.getInstance(ITeamcityIgnitedProvider.class)
+            .server(APACHE, Mockito.mock(ICredentialsProv.class));
+
+        int srvIdInt = ITeamcityIgnited.serverIdToInt(APACHE);
+        long day = TimeUnit.DAYS.toMillis(1);
+        long start = TimeUnit.SECONDS.toMillis(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - 10 * day));
+
+        List<BuildRef> refs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Build build = new Build();
+            build.buildTypeId = "BackfilledBuild";
+            build.branchName = ITeamcity.REFS_HEADS_MASTER;
+            build.state = BuildRef.STATE_FINISHED;
+            build.status = BuildRef.STATUS_SUCCESS;
+            build.setId(2100 + i);
+            build.setStartDateTs(start + i * day);
+
+            fatBuildDao.putFatBuild(srvIdInt, build.getId(), new FatBuildCompacted(c, build));
+
+            // References synced before start times were saved.
+            BuildRef ref = new BuildRef();
+            ref.buildTypeId = build.buildTypeId;
+            ref.branchName = build.branchName;
+            ref.state = build.state;
+            ref.status = build.status;
+            ref.setId(build.getId());
+            refs.add(ref);
+        }
+
+        buildRefDao.saveChunk(srvIdInt, refs);
+
+        assertTrue(srv.getFinishedBuildsCompacted("BackfilledBuild", ITeamcity.DEFAULT,
+            new Date(start), null).isEmpty());
+
+        ArgumentCaptor<Runnable> backfill = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).sheduleNamed(contains("backfillBuildStartTimes"), backfill.capture(), anyLong(), any());
+
+        backfill.getValue().run();
+
+        List<BuildRefCompacted> builds = srv.getFinishedBuildsCompacted("BackfilledBuild",
+            ITeamcity.DEFAULT, new Date(start + day), null);
+
+        assertEquals(Lists.newArrayList(2101, 2102),
+            builds.stream().map(BuildRefCompacted::id).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testBuildRefStartDateParsed() throws Exception {
+        List<BuildRef> refs = new ArrayList<>();
+
+        XmlUtil.loadElements(new StringReader("<builds count=\"2\">" +
+            "<build id=\"1\" state=\"finished\"><startDate>20190115T102030+0000</startDate></build>" +
+            "<build id=\"2\" state=\"queued\"/></builds>"), "build", BuildRef.class, true, refs::add);
+
+        assertEquals(2, refs.size());
+        assertEquals(1547547630000L, checkNotNull(refs.get(0).getStartDate()).getTime());
+        assertNull(refs.get(1).getStartDate());
+    }
+
+    @Test
+    public void testIncrementalBuildRefsSyncUsesWatermark() {
+        Injector injector = Guice.createInjector(new TeamcityIgnitedModule(),
+            Modules.override(new IgniteAndSchedulerTestModule())
+                .with(binder -> binder.bind(IScheduler.class).toInstance(Mockito.mock(IScheduler.class))));
+
+        BuildRefDao buildRefDao = injector.getInstance(BuildRefDao.class).init();
+        BuildRefSync buildRefSync = injector.getInstance(BuildRefSync.class);
+
+        int srvIdInt = ITeamcityIgnited.serverIdToInt(APACHE);
+        ITeamcityConn conn = mock(ITeamcityConn.class);
+        when(conn.serverId()).thenReturn(APACHE);
+        when(conn.getBuildRefsPage(isNull(), any())).thenReturn(finishedRefs(3000, 3005));
+        when(conn.getBuildRefsSincePage(eq(3004), any())).thenReturn(finishedRefs(3005, 3007));
+
+        buildRefSync.runActualizeBuildRefs(APACHE, true, null, conn);
+
+        assertEquals(3004, checkNotNull(buildRefDao.getWatermark(srvIdInt)).buildId());
+
+        buildRefSync.runActualizeBuildRefs(APACHE, false, null, conn);
+
+        verify(conn, times(1)).getBuildRefsPage(isNull(), any());
+        verify(conn).getBuildRefsSincePage(eq(3004), any());
+
+        assertEquals(3006, checkNotNull(buildRefDao.getWatermark(srvIdInt)).buildId());
+        assertEquals(7, buildRefDao.getAllIds(srvIdInt).length);
+    }
+
+    @Test
+    public void testFullReindexSavesAllPages() {
+        Injector injector = Guice.createInjector(new TeamcityIgnitedModule(),
+            Modules.override(new IgniteAndSchedulerTestModule())
+                .with(binder -> binder.bind(IScheduler.class).toInstance(Mockito.mock(IScheduler.class))));
+
+        BuildRefDao buildRefDao = injector.getInstance(BuildRefDao.class).init();
+        BuildRefSync buildRefSync = injector.getInstance(BuildRefSync.class);
+
+        int srvIdInt = ITeamcityIgnited.serverIdToInt(APACHE);
+        int pagesCnt = 20;
+        ITeamcityConn conn = mock(ITeamcityConn.class);
+        when(conn.serverId()).thenReturn(APACHE);
+        when(conn.getBuildRefsPage(any(), any())).thenAnswer(inv -> {
+            String url = inv.getArgument(0);
+            AtomicReference<String> next = inv.getArgument(1);
+            int page = url == null ? 0 : Integer.parseInt(url);
+
+            if (page + 1 < pagesCnt)
+                next.set(String.valueOf(page + 1));
+
+            return finishedRefs(4000 + page * 10, 4000 + page * 10 + 10);
+        });
+
+        buildRefSync.runActualizeBuildRefs(APACHE, true, null, conn);
+
+        assertEquals(pagesCnt * 10, buildRefDao.getAllIds(srvIdInt).length);
+        assertEquals(4000 + pagesCnt * 10 - 1, checkNotNull(buildRefDao.getWatermark(srvIdInt)).buildId());
+    }
+
+    @Test
+    public void testConcurrentBuildReloadsShareRequest() throws Exception {
+        Injector injector = Guice.createInjector(new TeamcityIgnitedModule(),
+            Modules.override(new IgniteAndSchedulerTestModule())
+                .with(binder -> binder.bind(IScheduler.class).toInstance(Mockito.mock(IScheduler.class))));
+
+        injector.getInstance(BuildRefDao.class).init();
+        injector.getInstance(FatBuildDao.class).init();
+        ProactiveFatBuildSync buildSync = injector.getInstance(ProactiveFatBuildSync.class);
+
+        int buildId = 5000;
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ITeamcityConn conn = mock(ITeamcityConn.class);
+        when(conn.serverId()).thenReturn(APACHE);
+        when(conn.getBuild(buildId)).thenAnswer(inv -> {
+            started.countDown();
+            release.await();
+
+            return Build.createFakeStub();
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<FatBuildCompacted> first = pool.submit(() -> buildSync.reloadBuild(conn, buildId, null));
+
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            Future<FatBuildCompacted> second = pool.submit(() -> buildSync.reloadBuild(conn, buildId, null));
+
+            // Let second reload join first one.
+            Thread.sleep(500);
+
+            release.countDown();
+
+            assertNotNull(first.get());
+            assertSame(first.get(), second.get());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+
+        verify(conn, times(1)).getBuild(buildId);
+    }
+
+    @Test
+    public void testOnDemandBuildLoadsLimitedByInFlightPermits() throws Exception {
+        Injector injector = Guice.createInjector(new TeamcityIgnitedModule(),
+            Modules.override(new IgniteAndSchedulerTestModule())
+                .with(binder -> binder.bind(IScheduler.class).toInstance(Mockito.mock(IScheduler.class))));
+
+        injector.getInstance(BuildRefDao.class).init();
+        injector.getInstance(FatBuildDao.class).init();
+        ProactiveFatBuildSync buildSync = injector.getInstance(ProactiveFatBuildSync.class);
+
+        int buildsCnt = ProactiveFatBuildSync.DFLT_FAT_BUILDS_IN_FLIGHT * 3;
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        ITeamcityConn conn = mock(ITeamcityConn.class);
+        when(conn.serverId()).thenReturn(APACHE);
+        when(conn.getBuild(anyInt())).thenAnswer(inv -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+            try {
+                Thread.sleep(100);
+            }
+            finally {
+                inFlight.decrementAndGet();
+            }
+
+            return Build.createFakeStub();
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(buildsCnt);
+
+        try {
+            List<Future<FatBuildCompacted>> futs = new ArrayList<>();
+
+            for (int i = 0; i < buildsCnt; i++) {
+                int buildId = 5300 + i;
+
+                futs.add(pool.submit(() -> buildSync.loadBuild(conn, buildId, null, SyncMode.LOAD_NEW)));
+            }
+
+            for (Future<FatBuildCompacted> fut : futs)
+                assertNotNull(fut.get());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+
+        assertTrue(String.valueOf(maxInFlight.get()),
+            maxInFlight.get() <= ProactiveFatBuildSync.DFLT_FAT_BUILDS_IN_FLIGHT);
+    }
+
+    @Test
+    public void testOutdatedVersionBuildLoadedAgain() {
+        Injector injector = Guice.createInjector(new TeamcityIgnitedModule(),
+            Modules.override(new IgniteAndSchedulerTestModule())
+                .with(binder -> binder.bind(IScheduler.class).toInstance(Mockito.mock(IScheduler.class))));
+
+        injector.getInstance(BuildRefDao.class).init();
+        FatBuildDao fatBuildDao = injector.getInstance(FatBuildDao.class).init();
+        ProactiveFatBuildSync buildSync = injector.getInstance(ProactiveFatBuildSync.class);
+        int srvIdInt = ITeamcityIgnited.serverIdToInt(APACHE);
+
+        int buildId = 5400;
+
+        FatBuildCompacted outdated = new FatBuildCompacted().setFakeStub(true);
+        outdated.setVersion(FatBuildCompacted.VER_TESTS_AS_OBJECTS);
+        fatBuildDao.putFatBuild(srvIdInt, buildId, outdated);
+
+        assertEquals(Collections.singletonList(buildId),
+            fatBuildDao.outdatedVersionBuildIds(srvIdInt).collect(Collectors.toList()));
+
+        ITeamcityConn conn = mock(ITeamcityConn.class);
+        when(conn.serverId()).thenReturn(APACHE);
+        when(conn.getBuild(buildId)).thenReturn(Build.createFakeStub());
+
+        FatBuildCompacted reloaded = buildSync.loadBuild(conn, buildId, outdated, SyncMode.LOAD_NEW);
+
+        assertNotNull(reloaded);
+        assertFalse(reloaded.isOutdatedEntityVersion());
+        assertEquals(0, fatBuildDao.outdatedVersionBuildIds(srvIdInt).count());
+        verify(conn, times(1)).getBuild(buildId);
+    }
+
+    @Test
+    public void testBuildsSweepReusesRecentlyLoadedBuild() {
+        Injector injector = Guice.createInjector(new TeamcityIgnitedModule(),
+            Modules.override(new IgniteAndSchedulerTestModule())
+                .with(binder -> binder.bind(IScheduler.class).toInstance(Mockito.mock(IScheduler.class))));
+
+        injector.getInstance(BuildRefDao.class).init();
+        injector.getInstance(FatBuildDao.class).init();
+        ProactiveFatBuildSync buildSync = injector.getInstance(ProactiveFatBuildSync.class);
+
+        int buildId = 5200;
+
+        ITeamcityConn conn = mock(ITeamcityConn.class);
+        when(conn.serverId()).thenReturn(APACHE);
+        when(conn.streamTestsPage(anyInt(), any(), anyInt(), anyBoolean(), any())).thenCallRealMethod();
+        when(conn.getBuild(buildId)).thenReturn(testsBuild(buildId, BuildRef.STATE_RUNNING, 2));
+        when(conn.getTestsPage(eq(buildId), isNull(), eq(true))).thenReturn(testsPage(buildId, 0, 2));
+
+        assertNotNull(buildSync.reloadBuild(conn, buildId, null));
+
+        String res = buildSync.doLoadBuilds(0, APACHE, conn, Collections.singleton(buildId),
+            new GridConcurrentHashSet<>());
+
+        assertTrue(res, res.startsWith("Builds updated 1 from 1"));
+
+        verify(conn, times(1)).getBuild(buildId);
+        verify(conn, times(1)).getTestsPage(eq(buildId), isNull(), eq(true));
+    }
+
+    @Test
+    public void testRunningBuildTestsRefreshedIncrementally() {
+        Injector injector = Guice.createInjector(new TeamcityIgnitedModule(),
+            Modules.override(new IgniteAndSchedulerTestModule())
+                .with(binder -> binder.bind(IScheduler.class).toInstance(Mockito.mock(IScheduler.class))));
+
+        injector.getInstance(BuildRefDao.class).init();
+        injector.getInstance(FatBuildDao.class).init();
+        ProactiveFatBuildSync buildSync = injector.getInstance(ProactiveFatBuildSync.class);
+
+        int buildId = 5100;
+
+        ITeamcityConn conn = mock(ITeamcityConn.class);
+        when(conn.serverId()).thenReturn(APACHE);
+        when(conn.streamTestsPage(anyInt(), any(), anyInt(), anyBoolean(), any())).thenCallRealMethod();
+
+        when(conn.getBuild(buildId)).thenReturn(testsBuild(buildId, BuildRef.STATE_RUNNING, 2));
+        when(conn.getTestsPage(eq(buildId), isNull(), eq(true))).thenReturn(testsPage(buildId, 0, 2));
+
+        FatBuildCompacted running = buildSync.reloadBuild(conn, buildId, null);
+
+        assertNotNull(running);
+        assertEquals(2, running.getTestsCount());
+
+        when(conn.getBuild(buildId)).thenReturn(testsBuild(buildId, BuildRef.STATE_RUNNING, 3));
+        when(conn.getTestsPageFrom(buildId, 2, true)).thenReturn(testsPage(buildId, 2, 3));
+
+        FatBuildCompacted refreshed = buildSync.reloadBuild(conn, buildId, running);
+
+        assertNotNull(refreshed);
+        assertEquals(3, refreshed.getTestsCount());
+        verify(conn, times(1)).getTestsPage(eq(buildId), isNull(), eq(true));
+        verify(conn, times(1)).getTestsPageFrom(buildId, 2, true);
+
+        // Tests count is not changed, tests are not requested.
+        assertNull(buildSync.reloadBuild(conn, buildId, refreshed));
+        verify(conn, times(1)).getTestsPageFrom(buildId, 2, true);
+
+        // All tests are reloaded when build is finished.
+        when(conn.getBuild(buildId)).thenReturn(testsBuild(buildId, BuildRef.STATE_FINISHED, 3));
+        when(conn.getTestsPage(eq(buildId), isNull(), eq(true))).thenReturn(testsPage(buildId, 0, 3));
+
+        FatBuildCompacted finished = buildSync.reloadBuild(conn, buildId, refreshed);
+
+        assertNotNull(finished);
+        assertEquals(3, finished.getTestsCount());
+        verify(conn, times(2)).getTestsPage(eq(buildId), isNull(), eq(true));
+
+        Set<String> names = finished.getAllTestNames(injector.getInstance(IStringCompactor.class))
+            .collect(Collectors.toCollection(TreeSet::new));
+
+        assertEquals(new TreeSet<>(Arrays.asList("Test0", "Test1", "Test2")), names);
+    }
+
+    /**
+     * @param buildId Build ID.
+     * @param state State.
+     * @param testsCnt Tests count.
+     */
+    private static Build testsBuild(int buildId, String state, int testsCnt) {
+        Build build = new Build();
+        build.setId(buildId);
+        build.buildTypeId = "IncrementalTests";
+        build.branchName = ITeamcity.REFS_HEADS_MASTER;
+        build.state = state;
+        build.status = BuildRef.STATUS_SUCCESS;
+        build.testOccurrences = new TestOccurrencesRef();
+        build.testOccurrences.count = testsCnt;
+
+        return build;
+    }
+
+    /**
+     * @param buildId Build ID.
+     * @param from First test index, inclusive.
+     * @param to Last test index, exclusive.
+     */
+    private static TestOccurrencesFull testsPage(int buildId, int from, int to) {
+        List<TestOccurrenceFull> tests = new ArrayList<>();
+
+        for (int i = from; i < to; i++) {
+            TestOccurrenceFull occurrence = new TestOccurrenceFull();
+            occurrence.id("id:" + i + ",build:(id:" + buildId + ")");
+            occurrence.name = "Test" + i;
+            occurrence.status = TestOccurrence.STATUS_SUCCESS;
+            occurrence.duration = 10;
+            tests.add(occurrence);
+        }
+
+        TestOccurrencesFull page = new TestOccurrencesFull();
+        page.setTests(tests);
+
+        return page;
+    }
+
+    @Test
+    public void testDetailsDeflatedWithTrainedDictionary() throws Exception {
+        clearCache(TestDetailsDictionary.TEAMCITY_TEST_DETAILS_DICT_CACHE_NAME);
+
+        Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override protected void configure() {
+                bind(Ignite.class).toInstance(ignite);
+            }
+        });
+
+        TestDetailsDictionary dict = injector.getInstance(TestDetailsDictionary.class).init();
+
+        assertEquals(TestDetailsDictionary.NO_DICTIONARY, dict.currentVersion());
+
+        for (int i = 0; i < 500; i++)
+            dict.onCompressed(stackTrace(i).getBytes(StandardCharsets.UTF_8));
+
+        int ver = dict.currentVersion();
+
+        assertTrue(ver > TestDetailsDictionary.NO_DICTIONARY);
+
+        byte[] data = stackTrace(1000).getBytes(StandardCharsets.UTF_8);
+        byte[] withDict = dict.deflate(ver, data);
+        byte[] noDict = dict.deflate(TestDetailsDictionary.NO_DICTIONARY, data);
+
+        assertTrue(withDict.length + " < " + noDict.length, withDict.length * 2 < noDict.length);
+        assertEquals(stackTrace(1000), new String(dict.inflate(ver, withDict), StandardCharsets.UTF_8));
+        assertEquals(stackTrace(1000), new String(dict.inflate(TestDetailsDictionary.NO_DICTIONARY, noDict),
+            StandardCharsets.UTF_8));
+
+        // Versions are restored after restart.
+        TestDetailsDictionary restarted = injector.getInstance(TestDetailsDictionary.class).init();
+
+        assertEquals(ver, restarted.currentVersion());
+        assertEquals(stackTrace(1000), new String(restarted.inflate(ver, withDict), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDetailsOfTestWithoutIdKeptInline() {
+        Injector injector = Guice.createInjector(new TeamcityIgnitedModule(), new IgniteAndSchedulerTestModule());
+        IStringCompactor c = injector.getInstance(IStringCompactor.class);
+
+        TestOccurrenceFull noId = new TestOccurrenceFull();
+        noId.name = "TestWithoutId";
+        noId.status = TestOccurrence.STATUS_FAILURE;
+        noId.details = stackTrace(1) + stackTrace(2);
+
+        FatBuildCompacted build = PrChainsProcessorTest.createFatBuild(c, "NoIdSuite", ITeamcity.DEFAULT, 7300, 1000,
+            false).addTests(c, Collections.singletonList(noId));
+
+        // Details can't be saved by test ID, so these are compressed inline.
+        assertTrue(build.takeDetachedDetails().isEmpty());
+        assertEquals(noId.details, build.getAllTests().findFirst().get().getDetailsText());
+    }
+
+    @Test
+    public void testDetailsOfFailureWithoutActualBuildShown() {
+        Injector injector = Guice.createInjector(new TeamcityIgnitedModule(), new IgniteAndSchedulerTestModule());
+        IStringCompactor c = injector.getInstance(IStringCompactor.class);
+        FatBuildDao stor = injector.getInstance(FatBuildDao.class);
+        stor.init();
+
+        int srvIdMaskHigh = ITeamcityIgnited.serverIdToInt(APACHE);
+
+        TestOccurrenceFull failure = new TestOccurrenceFull();
+        failure.name = "TestWithoutActualBuild";
+        failure.status = TestOccurrence.STATUS_FAILURE;
+        failure.details = "Fails because of https://issues.apache.org/jira/browse/IGNITE-10000\n" + stackTrace(3);
+        failure.test = new TestRef();
+        failure.test.id = "7401";
+
+        FatBuildCompacted build = PrChainsProcessorTest.createFatBuild(c, "NoActualBuildSuite", ITeamcity.DEFAULT,
+            7400, 1000, false).addTests(c, Collections.singletonList(failure));
+
+        // Details are saved using ID of build containing test.
+        stor.putFatBuild(srvIdMaskHigh, 7400, build);
+
+        MultBuildRunCtx ctx = new MultBuildRunCtx(new BuildRef(), c);
+        ctx.addBuild(new SingleBuildRunCtx(stor.getFatBuild(srvIdMaskHigh, 7400), c));
+
+        ITeamcityIgnited tcIgn = mock(ITeamcityIgnited.class);
+        when(tcIgn.getTestDetails(anyInt(), anyLong())).thenAnswer(inv ->
+            stor.getTestDetails(srvIdMaskHigh, inv.getArgument(0), inv.getArgument(1)));
+
+        TestFailure res = new TestFailure();
+        res.initFromOccurrence(ctx.getFailedTests().get(0), tcIgn, null, null, null);
+
+        assertEquals("IGNITE-10000", res.webIssueText);
+        verify(tcIgn).getTestDetails(7400, 7401L);
+    }
+
+    /**
+     * @param idx Index of test.
+     * @return Stack trace with lines common for all tests.
+     */
+    private static String stackTrace(int idx) {
+        return "junit.framework.AssertionFailedError: Unexpected value " + idx + "\n" +
+            "    at junit.framework.Assert.fail(Assert.java:55)\n" +
+            "    at junit.framework.Assert.assertTrue(Assert.java:22)\n" +
+            "    at org.apache.ignite.internal.processors.cache.CacheTest" + idx + ".testPut(CacheTest.java:42)\n" +
+            "    at sun.reflect.NativeMethodAccessorImpl.invoke0(Native Method)\n" +
+            "    at sun.reflect.NativeMethodAccessorImpl.invoke(NativeMethodAccessorImpl.java:62)\n" +
+            "    at sun.reflect.DelegatingMethodAccessorImpl.invoke(DelegatingMethodAccessorImpl.java:43)\n" +
+            "    at java.lang.reflect.Method.invoke(Method.java:498)\n" +
+            "    at junit.framework.TestCase.runTest(TestCase.java:176)\n" +
+            "    at org.apache.ignite.testframework.junits.GridAbstractTest.runTestInternal(" +
+            "GridAbstractTest.java:2156)\n" +
+            "    at org.apache.ignite.testframework.junits.GridAbstractTest.access$000(GridAbstractTest.java:143)\n" +
+            "    at org.apache.ignite.testframework.junits.GridAbstractTest$5.run(GridAbstractTest.java:2071)\n" +
+            "    at java.lang.Thread.run(Thread.java:748)\n";
+    }
+
+    /**
+     * @param fromId First build ID, inclusive.
+     * @param toId Last build ID, exclusive.
+     */
+    private static List<BuildRef> finishedRefs(int fromId, int toId) {
+        List<BuildRef> refs = new ArrayList<>();
+
+        for (int id = fromId; id < toId; id++) {
+            BuildRef ref = new BuildRef();
+            ref.buildTypeId = "WatermarkBuild";
+            ref.branchName = ITeamcity.REFS_HEADS_MASTER;
+            ref.state = BuildRef.STATE_FINISHED;
+            ref.setId(id);
+            refs.add(ref);
+        }
+
+        return refs;
+    }
+
     public void putOldFashionFakeBuild(IStringCompactor c, FatBuildDao fatBuildDao, int buildId, int srvIdInt) {
         FatBuildCompacted fb = fatBuildDao.getFatBuild(srvIdInt, buildId);
 
@@ -735,6 +1783,7 @@ public class IgnitedTcInMemoryIntegrationTest {
             ITcServerConfig tcCfg = mock(ITcServerConfig.class);
             when(tcCfg.logsDirectory()).thenReturn("logs");
             when(tcCfg.host()).thenReturn("http://ci.ignite.apache.org/");
+            when(tcCfg.fatBuildRequestsPerSecond()).thenReturn(Integer.MAX_VALUE);
             when(cfg.getTeamcityConfig(anyString())).thenReturn(tcCfg);
 
             bind(ITcBotConfig.class).toInstance(cfg);
@@ -37,6 +37,9 @@ public class InMemoryStringCompactor implements IStringCompactor {
     @GuardedBy("this")
     private final AtomicInteger seq = new AtomicInteger();
 
+    /** Identifiers of well-known strings. */
+    private volatile WellKnownStringIds wellKnownIds;
+
     /** {@inheritDoc} */
     @Override public int getStringId(String val) {
         if (val == null)
@@ -77,6 +80,14 @@ public class InMemoryStringCompactor implements IStringCompactor {
         return val;
     }
 
+    /** {@inheritDoc} */
+    @Override public WellKnownStringIds wellKnownIds() {
+        if (wellKnownIds == null)
+            wellKnownIds = new WellKnownStringIds(this::getStringId);
+
+        return wellKnownIds;
+    }
+
     /** {@inheritDoc} */
     @Override public Integer getStringIdIfPresent(String val) {
         if (val == null)
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * Test for memory-mapped strings dictionary snapshot.
+ */
+public class StringsDictionarySnapshotTest {
+    /** Temp folder. */
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testAppendAndReopen() throws IOException {
+        File dir = tmp.newFolder();
+
+        StringsDictionarySnapshot snapshot = new StringsDictionarySnapshot(dir);
+
+        assertEquals(0, snapshot.maxId());
+
+        int cnt = 100000;
+        for (int id = cnt; id > 0; id--)
+            snapshot.append(id, "Test string \u0442\u0435\u0441\u0442 " + id);
+
+        snapshot.append(5, "Ignored, already saved");
+
+        StringsDictionarySnapshot reopened = new StringsDictionarySnapshot(dir);
+
+        assertEquals(cnt, reopened.maxId());
+        assertNull(reopened.get(cnt + 1));
+        assertFalse(reopened.contains(cnt + 1));
+
+        for (int id = 1; id <= cnt; id++) {
+            assertTrue(reopened.contains(id));
+            assertEquals("Test string \u0442\u0435\u0441\u0442 " + id, reopened.get(id));
+        }
+
+        reopened.clear();
+
+        assertEquals(0, reopened.maxId());
+        assertNull(reopened.get(1));
+    }
+
+    @Test
+    public void testReadWhileGrowingAndClose() throws Exception {
+        File dir = tmp.newFolder();
+
+        StringsDictionarySnapshot snapshot = new StringsDictionarySnapshot(dir);
+
+        int cnt = 100000;
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> err = new AtomicReference<>();
+
+        // Reads are not synchronized with appends remapping files.
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                int id = snapshot.maxId();
+                String val = snapshot.get(id);
+
+                if (id > 0 && !("Value " + id).equals(val))
+                    err.set(id + ": " + val);
+            }
+        });
+
+        reader.start();
+
+        for (int id = 1; id <= cnt; id++)
+            snapshot.append(id, "Value " + id);
+
+        done.set(true);
+        reader.join();
+
+        assertNull(err.get());
+
+        snapshot.close();
+
+        assertNull(snapshot.get(1));
+
+        StringsDictionarySnapshot reopened = new StringsDictionarySnapshot(dir);
+
+        assertEquals(cnt, reopened.maxId());
+        assertEquals("Value " + cnt, reopened.get(cnt));
+
+        reopened.close();
+    }
+
+    @Test
+    public void testTornTailDroppedOnOpen() throws IOException {
+        File dir = tmp.newFolder();
+
+        StringsDictionarySnapshot snapshot = new StringsDictionarySnapshot(dir);
+
+        for (int id = 1; id <= 3; id++)
+            snapshot.append(id, "Value " + id);
+
+        snapshot.close();
+
+        // Emulate crash: index of last entry is saved, but its data is lost.
+        int off;
+        try (RandomAccessFile idx = new RandomAccessFile(new File(dir, StringsDictionarySnapshot.IDX_FILE), "r")) {
+            idx.seek(16 + 3 * 4);
+            off = idx.readInt();
+        }
+
+        try (RandomAccessFile data = new RandomAccessFile(new File(dir, StringsDictionarySnapshot.DATA_FILE), "rw")) {
+            data.seek(off + 12);
+            data.write(new byte[] {0, 0, 0});
+        }
+
+        StringsDictionarySnapshot reopened = new StringsDictionarySnapshot(dir);
+
+        assertEquals("Value 1", reopened.get(1));
+        assertEquals("Value 2", reopened.get(2));
+        assertNull(reopened.get(3));
+        assertFalse(reopened.contains(3));
+        assertEquals(2, reopened.maxId());
+
+        reopened.append(3, "Value 3");
+
+        assertEquals("Value 3", reopened.get(3));
+
+        reopened.close();
+    }
+}
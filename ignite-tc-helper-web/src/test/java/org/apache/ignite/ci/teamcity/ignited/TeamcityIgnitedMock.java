@@ -24,6 +24,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import org.apache.ignite.ci.analysis.TestInBranch;
 import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildCompacted;
+import org.apache.ignite.ci.teamcity.ignited.fatbuild.FatBuildProjection;
 import org.apache.ignite.ci.teamcity.ignited.runhist.Invocation;
 import org.apache.ignite.ci.teamcity.ignited.runhist.RunHistCompacted;
 import org.apache.ignite.ci.teamcity.ignited.runhist.RunHistKey;
@@ -51,6 +52,8 @@ public class TeamcityIgnitedMock {
         };
         when(tcIgnited.getFatBuild(anyInt(), any(SyncMode.class))).thenAnswer(buildAnswer);
         when(tcIgnited.getFatBuild(anyInt())).thenAnswer(buildAnswer);
+        when(tcIgnited.getFatBuildProjection(anyInt(), any(SyncMode.class)))
+            .thenAnswer(inv -> new FatBuildProjection((FatBuildCompacted)buildAnswer.answer(inv)));
 
         when(tcIgnited.getAllBuildsCompacted(anyString(), anyString()))
             .thenAnswer(inv -> {
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.ci.teamcity.ignited.runhist;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * Test for run history window of invocations.
+ */
+public class InvocationDataTest {
+    /**
+     * Restores system clock.
+     */
+    @After
+    public void resetClock() {
+        InvocationData.setClock(null);
+    }
+
+    @Test
+    public void testRunHistWindowEvictsOldest() {
+        long now = System.currentTimeMillis();
+        long old = now - TimeUnit.DAYS.toMillis(InvocationData.MAX_DAYS) + TimeUnit.HOURS.toMillis(1);
+
+        RunHistCompacted hist = new RunHistCompacted();
+
+        List<Invocation> batch = new ArrayList<>();
+        batch.add(new Invocation(200).withStatus(InvocationData.CRITICAL_FAILURE).withStartDate(old));
+        batch.add(new Invocation(201).withStatus(InvocationData.MUTED).withStartDate(old));
+
+        for (int i = 0; i < 10; i++)
+            batch.add(new Invocation(210 + i).withStatus(InvocationData.FAILURE).withStartDate(now));
+
+        assertEquals(12, hist.addInvocations(batch));
+        assertEquals(11, hist.getRunsCount());
+        assertEquals(11, hist.getFailuresCount());
+        assertEquals(1, hist.getCriticalFailuresCount());
+
+        // Two hours later first invocations are outside of the window.
+        InvocationData.setClock(() -> now + TimeUnit.HOURS.toMillis(2));
+
+        // Expired invocations are not counted even before eviction.
+        assertEquals(10, hist.getRunsCount());
+        assertEquals(10, hist.getFailuresCount());
+        assertEquals(0, hist.getCriticalFailuresCount());
+        assertEquals(10, hist.getLatestRunResults().size());
+
+        assertTrue(hist.addInvocation(new Invocation(205).withStatus(InvocationData.OK).withStartDate(now)));
+        assertTrue(hist.addInvocation(new Invocation(230).withStatus(InvocationData.OK).withStartDate(now)));
+        assertFalse(hist.addInvocation(new Invocation(240).withStatus(InvocationData.OK).withStartDate(old)));
+
+        assertEquals(12, hist.getRunsCount());
+        assertEquals(10, hist.getFailuresCount());
+        assertEquals(0, hist.getCriticalFailuresCount());
+        assertEquals(14, hist.getRunsAllHist());
+        assertEquals(Integer.valueOf(InvocationData.OK), hist.getLatestRunResults().get(0));
+        assertEquals(Integer.valueOf(InvocationData.OK), hist.getLatestRunResults().get(11));
+    }
+}